@@ -0,0 +1,158 @@
+package Lecture2_adt_specification;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.YearMonth;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * A recurring payment schedule that computes its occurrences on demand instead of building a list.
+ * Occurrence n is derived directly from the start date (start + n * period), so long schedules
+ * never accumulate the day drift of repeatedly calling Calendar.add(MONTH, 1) on the same object,
+ * and any occurrence can be computed without computing the ones before it.
+ * Streams returned by this class are lazy and split evenly when run in parallel.
+ */
+public class PaymentSchedule {
+
+    /**
+     * How monthly occurrences are placed when the start day does not exist in a later month.
+     */
+    public enum EndOfMonthRule {
+        // Keep the start day of month, moving to the last day of shorter months (Jan 31 -> Feb 29 -> Mar 31)
+        SAME_DAY,
+        // If the schedule starts on the last day of a month, every occurrence falls on the last day of its month
+        END_OF_MONTH
+    }
+
+    private final int amount;
+    private final LocalDate start;
+    private final long count;
+    private final long periodMonths;
+    private final long periodDays;
+    private final EndOfMonthRule rule;
+    private final boolean startsAtEndOfMonth;
+
+    /**
+     * PaymentSchedule Constructor
+     * @param amount of every payment, an integer
+     * @param start: Not null, date of the first payment
+     * @param period: Not null, time between payments; must move forward (no negative parts, not zero)
+     * @param count: number of payments, not negative
+     * @param rule: Not null, how to place payments in months shorter than the start day
+     */
+    public PaymentSchedule(int amount, @NotNull LocalDate start, @NotNull Period period, long count,
+                           @NotNull EndOfMonthRule rule) {
+        if (period.isNegative() || period.isZero() || period.getDays() < 0 || period.toTotalMonths() < 0) {
+            throw new IllegalArgumentException("Period must move forward: " + period);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative: " + count);
+        }
+        this.amount = amount;
+        this.start = start;
+        this.count = count;
+        this.periodMonths = period.toTotalMonths();
+        this.periodDays = period.getDays();
+        this.rule = rule;
+        this.startsAtEndOfMonth = start.getDayOfMonth() == start.lengthOfMonth();
+    }
+
+    /**
+     * monthly()
+     * @return a schedule of count monthly payments starting at start, keeping the start day of month
+     */
+    public static PaymentSchedule monthly(int amount, @NotNull LocalDate start, long count) {
+        return new PaymentSchedule(amount, start, Period.ofMonths(1), count, EndOfMonthRule.SAME_DAY);
+    }
+
+    /**
+     * getCount()
+     * @return number of payments in the schedule
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * getAmount()
+     * @return amount of every payment
+     */
+    public int getAmount() {
+        return amount;
+    }
+
+    /**
+     * occurrence()
+     * @param n index of the payment, 0 to getCount() - 1
+     * @return date of payment n, computed directly from the start date
+     */
+    public LocalDate occurrence(long n) {
+        if (n < 0 || n >= count) {
+            throw new IndexOutOfBoundsException("Occurrence " + n + " outside schedule of " + count);
+        }
+        return dateOf(n);
+    }
+
+    /**
+     * dates()
+     * @return a lazy Stream of all payment dates, in order
+     */
+    public Stream<LocalDate> dates() {
+        return LongStream.range(0, count).mapToObj(this::dateOf);
+    }
+
+    /**
+     * payments()
+     * @return a lazy Stream of all payments as Transaction5 objects, in order
+     */
+    public Stream<Transaction5> payments() {
+        return LongStream.range(0, count).mapToObj(n -> new Transaction5(amount, dateOf(n)));
+    }
+
+    /**
+     * countBefore()
+     * @param date: Not null, exclusive upper bound
+     * @return number of payments falling strictly before date, found by binary search without enumerating them
+     */
+    public long countBefore(@NotNull LocalDate date) {
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (dateOf(mid).isBefore(date)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * totalDueBefore()
+     * @param date: Not null, exclusive upper bound
+     * @return sum of all payments falling strictly before date
+     */
+    public long totalDueBefore(@NotNull LocalDate date) {
+        return Math.multiplyExact(countBefore(date), (long) amount);
+    }
+
+    // Date of occurrence n, without bounds checking
+    private LocalDate dateOf(long n) {
+        LocalDate date = start;
+        if (periodMonths != 0) {
+            YearMonth month = YearMonth.from(start).plusMonths(Math.multiplyExact(periodMonths, n));
+            int day = rule == EndOfMonthRule.END_OF_MONTH && startsAtEndOfMonth
+                    ? month.lengthOfMonth()
+                    : Math.min(start.getDayOfMonth(), month.lengthOfMonth());
+            date = month.atDay(day);
+        }
+        if (periodDays != 0) {
+            date = LocalDate.ofEpochDay(date.toEpochDay() + Math.multiplyExact(periodDays, n));
+        }
+        return date;
+    }
+}
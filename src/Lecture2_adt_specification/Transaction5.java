@@ -0,0 +1,76 @@
+package Lecture2_adt_specification;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * In Addition to the Design considerations in Transaction4 class:
+ * This class keeps the date as an immutable java.time.LocalDate instead of a mutable Calendar.
+ * Because a LocalDate can never change, the invariants are preserved without any defensive copying:
+ *              the requires interface stores the caller's object as is,
+ *              and the produces interface returns the stored object as is.
+ * getDate() still hands out a Calendar for client code written against Transaction4.
+ */
+public class Transaction5 {
+    private final int amount;
+    private final LocalDate date;
+
+    /**
+     * Transaction5 Constructor
+     * @param amount in an integer
+     * @param date: Not null, and must be a LocalDate object
+     * Instialises the field, attributes of a transaction
+     * No copy is needed since LocalDate is immutable
+     */
+    public Transaction5(int amount, @NotNull LocalDate date) {
+        this.amount = amount;
+        this.date = date;
+    }
+
+    /**
+     * Transaction5 Constructor for client code that still works with Calendar
+     * @param amount in an integer
+     * @param date: Not null, and must be a Calendar object
+     * Only the calendar day is kept, so later changes to date have no effect
+     */
+    public Transaction5(int amount, @NotNull Calendar date) {
+        this(amount, LocalDate.of(date.get(Calendar.YEAR), date.get(Calendar.MONTH) + 1, date.get(Calendar.DAY_OF_MONTH)));
+    }
+
+    /**
+     * getAmount()
+     * @return integer
+     */
+    public int getAmount() {
+        return amount;
+    }
+
+    /**
+     * getLocalDate()
+     * @return LocalDate Object, shared without copying since it is immutable
+     */
+    public LocalDate getLocalDate() {
+        return date;
+    }
+
+    /**
+     * getEpochDay()
+     * @return the date as a count of days since 1970-01-01
+     */
+    public long getEpochDay() {
+        return date.toEpochDay();
+    }
+
+    /**
+     * getDate()
+     * @return a new Calendar Object at the start of the transaction day in the default time zone
+     * Compatibility adapter for Transaction4 clients; allocates on every call
+     */
+    public Calendar getDate() {
+        return GregorianCalendar.from(date.atStartOfDay(ZoneId.systemDefault()));
+    }
+}
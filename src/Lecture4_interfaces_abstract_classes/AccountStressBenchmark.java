@@ -0,0 +1,93 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.time.Instant;
+import java.util.SplittableRandom;
+
+/**
+ * Multi-threaded stress test of BankAccount: threads post deposits and withdrawals to a small set of
+ * shared accounts, so most operations race with another thread on the same balance. Each thread
+ * counts what it applied; afterwards every balance must equal its opening balance plus the applied
+ * deposits minus the applied withdrawals, and no balance may ever have been seen below zero.
+ * Reports throughput for 1 thread up to N threads (at least 4, or the number of processors).
+ *
+ * Settings (system properties):
+ *   bench.operations operations per thread (default 2,000,000)
+ *   bench.accounts   number of shared accounts (default 8)
+ */
+public class AccountStressBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        int operations = Integer.getInteger("bench.operations", 2_000_000);
+        int accountCount = Integer.getInteger("bench.accounts", 8);
+        int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        long opening = Money.ofMajor(100);
+        Instant date = Instant.parse("2024-01-01T00:00:00Z");
+
+        for (int threadCount = 1; threadCount <= maxThreads; threadCount *= 2) {
+            BankAccount[] accounts = new BankAccount[accountCount];
+            for (int a = 0; a < accountCount; a++) {
+                accounts[a] = BankAccount.withMinorBalance(a, opening);
+            }
+            // Per thread and account: net applied change; per thread: withdrawals refused, negative balances seen
+            long[][] net = new long[threadCount][accountCount];
+            long[] refused = new long[threadCount];
+            long[] negative = new long[threadCount];
+            Thread[] threads = new Thread[threadCount];
+            for (int t = 0; t < threadCount; t++) {
+                int thread = t;
+                threads[t] = new Thread(() -> {
+                    SplittableRandom random = new SplittableRandom(thread);
+                    long[] mine = net[thread];
+                    for (int i = 0; i < operations; i++) {
+                        int a = random.nextInt(accountCount);
+                        long amount = 1 + random.nextInt(5_000);
+                        // Slightly more withdrawals than deposits, so balances keep running into zero
+                        if (random.nextInt(100) < 48) {
+                            if (new DepositTransaction(date, amount).tryApply(accounts[a]) == TransactionStatus.APPLIED) {
+                                mine[a] += amount;
+                            }
+                        } else if (new WithdrawalTransaction(date, amount).tryApply(accounts[a])
+                                == TransactionStatus.APPLIED) {
+                            mine[a] -= amount;
+                        } else {
+                            refused[thread]++;
+                        }
+                        if (accounts[a].getBalanceMinor() < 0) {
+                            negative[thread]++;
+                        }
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long nanos = System.nanoTime() - start;
+
+            long refusedTotal = 0;
+            for (int t = 0; t < threadCount; t++) {
+                refusedTotal += refused[t];
+                if (negative[t] != 0) {
+                    throw new AssertionError("Thread " + t + " saw a negative balance " + negative[t] + " times");
+                }
+            }
+            for (int a = 0; a < accountCount; a++) {
+                long expected = opening;
+                for (int t = 0; t < threadCount; t++) {
+                    expected += net[t][a];
+                }
+                long actual = accounts[a].getBalanceMinor();
+                if (actual != expected || actual < 0) {
+                    throw new AssertionError("Account " + a + " holds " + Money.format(actual) + " but "
+                            + Money.format(expected) + " was applied to it");
+                }
+            }
+            System.out.printf("%2d thread(s): %.1f M ops/s, %,d withdrawals refused, all %d balances conserved%n",
+                    threadCount, (double) operations * threadCount * 1e3 / nanos, refusedTotal, accountCount);
+        }
+    }
+}
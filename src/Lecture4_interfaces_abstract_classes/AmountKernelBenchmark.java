@@ -0,0 +1,206 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the AmountKernels bulk passes with validating and applying the same rows as transaction
+ * objects, and with a plain loop that switches on the type. Every operation covers one block of
+ * BLOCK rows, so ns/op is the cost of screening BLOCK transactions. Checks the kernels against the
+ * plain loops before timing them.
+ *
+ * Each kernel is timed as the scalar loop and, when run with --add-modules jdk.incubator.vector, as
+ * the Vector API pass as well, after checking that both give the same results.
+ *
+ * Settings (system properties):
+ *   bench.rows  rows in the batch (default 1,048,576)
+ */
+public class AmountKernelBenchmark {
+
+    private static final int BLOCK = 1024;
+
+    public static void main(String[] args) {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        int rows = Math.max(BLOCK, Integer.getInteger("bench.rows", 1 << 20) / BLOCK * BLOCK);
+        int blocks = rows / BLOCK;
+        long fromMillis = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+        long toMillis = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+
+        long[] amounts = new long[rows];
+        byte[] types = new byte[rows];
+        long[] epochMillis = new long[rows];
+        BaseTransaction[] objects = new BaseTransaction[rows];
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < rows; i++) {
+            int pick = random.nextInt(100);
+            TransactionType type = pick < 45 ? TransactionType.DEPOSIT
+                    : pick < 95 ? TransactionType.WITHDRAWAL : TransactionType.REVERSAL;
+            amounts[i] = random.nextInt(100) == 0 ? -100 : random.nextLong(100_000);
+            types[i] = type.getCode();
+            epochMillis[i] = random.nextLong(fromMillis, toMillis);
+            Instant date = Instant.ofEpochMilli(epochMillis[i]);
+            objects[i] = type == TransactionType.WITHDRAWAL
+                    ? new WithdrawalTransaction(date, amounts[i]) : new DepositTransaction(date, amounts[i]);
+        }
+        byte[] valid = new byte[rows];
+        long[] trajectory = new long[rows];
+        AmountKernels.Summary summary = new AmountKernels.Summary();
+        long[] totals = new long[TransactionType.values().length];
+        check(amounts, types, epochMillis, fromMillis, toMillis, valid, summary);
+
+        // Per block, the lowest opening balance that never overdraws, so the overdraft check walks every row
+        long[] tightOpenings = new long[blocks];
+        for (int b = 0; b < blocks; b++) {
+            AmountKernels.balances(0, amounts, types, b * BLOCK, (b + 1) * BLOCK, trajectory);
+            long min = 0;
+            for (int r = b * BLOCK; r < (b + 1) * BLOCK; r++) {
+                min = Math.min(min, trajectory[r]);
+            }
+            tightOpenings[b] = -min;
+        }
+
+        Bench.printHeader();
+        BankAccount account = BankAccount.withMinorBalance(1, Long.MAX_VALUE / 4);
+        Bench.run("tryApply loop over objects", blocks, i -> {
+            int applied = 0;
+            for (int r = i * BLOCK, end = r + BLOCK; r < end; r++) {
+                applied += objects[r].tryApply(account) == TransactionStatus.APPLIED ? 1 : 0;
+            }
+            return applied;
+        });
+        Bench.run("switch loop: validate and sum per type", blocks, i -> {
+            long sum = 0;
+            for (int r = i * BLOCK, end = r + BLOCK; r < end; r++) {
+                long amount = amounts[r];
+                if (amount < 0 || amount > 100_000 || epochMillis[r] < fromMillis || epochMillis[r] >= toMillis) {
+                    continue;
+                }
+                switch (TransactionType.fromCode(types[r])) {
+                    case DEPOSIT -> totals[0] += amount;
+                    case WITHDRAWAL -> totals[1] += amount;
+                    case REVERSAL -> totals[2] += amount;
+                }
+                sum += amount;
+            }
+            return sum;
+        });
+        Bench.run("scalar kernel: validate", blocks, i -> AmountKernels.validateScalar(amounts, epochMillis,
+                i * BLOCK, (i + 1) * BLOCK, 100_000, fromMillis, toMillis, valid));
+        Bench.run("scalar kernel: summarize valid rows", blocks, i -> AmountKernels.summarizeScalar(amounts, types,
+                valid, i * BLOCK, (i + 1) * BLOCK, summary).getCount());
+        Bench.run("scalar kernel: balance trajectory", blocks, i -> AmountKernels.balancesScalar(0, amounts, types,
+                i * BLOCK, (i + 1) * BLOCK, trajectory));
+        Bench.run("scalar kernel: first overdraft, funds cover", blocks, i -> AmountKernels.firstOverdraftScalar(
+                Long.MAX_VALUE / 4, amounts, types, i * BLOCK, (i + 1) * BLOCK));
+        Bench.run("scalar kernel: first overdraft, tight balance", blocks, i -> AmountKernels.firstOverdraftScalar(
+                tightOpenings[i], amounts, types, i * BLOCK, (i + 1) * BLOCK));
+        if (!AmountKernels.VECTORIZED) {
+            System.out.println("Vector kernels not run: start with --add-modules jdk.incubator.vector");
+            return;
+        }
+        Bench.run("vector kernel: validate", blocks, i -> VectorAmountKernels.validate(amounts, epochMillis,
+                i * BLOCK, (i + 1) * BLOCK, 100_000, fromMillis, toMillis, valid));
+        Bench.run("vector kernel: summarize valid rows", blocks, i -> VectorAmountKernels.summarize(amounts, types,
+                valid, i * BLOCK, (i + 1) * BLOCK, summary).getCount());
+        Bench.run("vector kernel: balance trajectory", blocks, i -> VectorAmountKernels.balances(0, amounts, types,
+                i * BLOCK, (i + 1) * BLOCK, trajectory));
+        Bench.run("vector kernel: first overdraft, funds cover", blocks, i -> VectorAmountKernels.firstOverdraft(
+                Long.MAX_VALUE / 4, amounts, types, i * BLOCK, (i + 1) * BLOCK));
+        Bench.run("vector kernel: first overdraft, tight balance", blocks, i -> VectorAmountKernels.firstOverdraft(
+                tightOpenings[i], amounts, types, i * BLOCK, (i + 1) * BLOCK));
+    }
+
+    // Compares the kernels with straightforward loops over the whole batch
+    private static void check(long[] amounts, byte[] types, long[] epochMillis, long fromMillis, long toMillis,
+                              byte[] valid, AmountKernels.Summary summary) {
+        int rows = amounts.length;
+        int validCount = AmountKernels.validate(amounts, epochMillis, 0, rows, 100_000, fromMillis, toMillis, valid);
+        AmountKernels.summarize(amounts, types, valid, 0, rows, summary);
+        long[] totals = new long[TransactionType.values().length];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int count = 0;
+        for (int r = 0; r < rows; r++) {
+            if (amounts[r] >= 0 && amounts[r] <= 100_000 && epochMillis[r] >= fromMillis && epochMillis[r] < toMillis) {
+                totals[types[r]] += amounts[r];
+                min = Math.min(min, amounts[r]);
+                max = Math.max(max, amounts[r]);
+                count++;
+            }
+        }
+        for (TransactionType type : TransactionType.values()) {
+            if (summary.getTotal(type) != totals[type.getCode()]) {
+                throw new AssertionError(type + " total " + summary.getTotal(type) + " != " + totals[type.getCode()]);
+            }
+        }
+        if (validCount != count || summary.getCount() != count || summary.getMin() != min || summary.getMax() != max) {
+            throw new AssertionError("Count, min or max differs from the plain loop");
+        }
+
+        // Opening balance one cent short of the deepest point of the batch's balance walk
+        long[] trajectory = new long[rows];
+        AmountKernels.balances(0, amounts, types, 0, rows, trajectory);
+        long lowest = 0;
+        for (long b : trajectory) {
+            lowest = Math.min(lowest, b);
+        }
+        long opening = -lowest - 1;
+        long balance = opening;
+        int expected = -1;
+        for (int r = 0; r < rows && expected < 0; r++) {
+            balance += TransactionType.fromCode(types[r]).balanceDelta(amounts[r]);
+            expected = balance < 0 ? r : -1;
+        }
+        int found = AmountKernels.firstOverdraft(opening, amounts, types, 0, rows);
+        if (found != expected) {
+            throw new AssertionError("First overdraft at " + found + ", expected " + expected);
+        }
+        if (AmountKernels.VECTORIZED) {
+            checkScalar(amounts, types, epochMillis, fromMillis, toMillis, valid, validCount, summary, trajectory);
+        }
+        System.out.printf("Kernels match the plain loops: %d of %d rows valid, first overdraft at row %d%n%n",
+                count, rows, found);
+    }
+
+    // Compares the scalar kernels with the vector kernels' results, over ranges that end mid-vector
+    private static void checkScalar(long[] amounts, byte[] types, long[] epochMillis, long fromMillis, long toMillis,
+                                    byte[] valid, int validCount, AmountKernels.Summary summary, long[] trajectory) {
+        int rows = amounts.length;
+        byte[] scalarValid = new byte[rows];
+        if (AmountKernels.validateScalar(amounts, epochMillis, 0, rows, 100_000, fromMillis, toMillis, scalarValid)
+                != validCount || !Arrays.equals(scalarValid, valid)) {
+            throw new AssertionError("Scalar and vector validate() differ");
+        }
+        AmountKernels.Summary scalar = AmountKernels.summarizeScalar(amounts, types, valid, 0, rows,
+                new AmountKernels.Summary());
+        for (TransactionType type : TransactionType.values()) {
+            if (scalar.getTotal(type) != summary.getTotal(type)) {
+                throw new AssertionError("Scalar and vector summarize() differ on " + type);
+            }
+        }
+        if (scalar.getCount() != summary.getCount() || scalar.getMin() != summary.getMin()
+                || scalar.getMax() != summary.getMax()) {
+            throw new AssertionError("Scalar and vector summarize() differ on count, min or max");
+        }
+        long[] scalarTrajectory = new long[rows];
+        AmountKernels.balancesScalar(0, amounts, types, 0, rows, scalarTrajectory);
+        if (!Arrays.equals(scalarTrajectory, trajectory)) {
+            throw new AssertionError("Scalar and vector balances() differ");
+        }
+        SplittableRandom random = new SplittableRandom(5);
+        for (int n = 0; n < 1_000; n++) {
+            int from = random.nextInt(rows - 1_000);
+            int to = from + random.nextInt(1_000);
+            long opening = random.nextLong(1_000_000);
+            if (AmountKernels.balances(opening, amounts, types, from, to, trajectory)
+                    != AmountKernels.balancesScalar(opening, amounts, types, from, to, scalarTrajectory)
+                    || AmountKernels.firstOverdraft(opening, amounts, types, from, to)
+                    != AmountKernels.firstOverdraftScalar(opening, amounts, types, from, to)) {
+                throw new AssertionError("Scalar and vector kernels differ on rows " + from + " to " + to);
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bulk validation and aggregation over columns of amounts, type codes and dates, such as those of
+ * ImportBatch or TransactionStore, for screening large batches before they are applied one by one.
+ *
+ * Each kernel is a single pass of straight-line arithmetic over primitive arrays: no objects, no
+ * per-element calls and no data-dependent branches. Types are turned into masks with integer
+ * arithmetic instead of being switched on.
+ *
+ * The JIT does not vectorize these loops reliably by itself: validate() and summarize() mix byte and
+ * long columns, and balances() and firstOverdraft() carry a running balance from each row to the next,
+ * a dependency the auto-vectorizer does not handle. When the jdk.incubator.vector module is present
+ * (run with --add-modules jdk.incubator.vector), the kernels therefore run as VectorAmountKernels,
+ * which computes running balances with a prefix sum in each vector; otherwise they run as the scalar
+ * loops here. The choice is made once, when the class is initialized; set amount.kernels.vector=false
+ * to keep the scalar loops.
+ *
+ * Sums are not overflow-checked per element. Validate amounts against a maximum first; with n rows of
+ * at most maxAmount, every sum stays within n * maxAmount.
+ */
+public final class AmountKernels {
+
+    // Rows whose overdraft check is skipped together when the balance covers all their withdrawals
+    static final int OVERDRAFT_BLOCK = 256;
+
+    // Type codes as compile-time constants for the JIT
+    static final int DEPOSIT = TransactionType.DEPOSIT.getCode();
+    static final int WITHDRAWAL = TransactionType.WITHDRAWAL.getCode();
+    static final int REVERSAL = TransactionType.REVERSAL.getCode();
+
+    // Whether the kernels run on the Vector API; the module check comes first so the class is not loaded without it
+    static final boolean VECTORIZED = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && Boolean.parseBoolean(System.getProperty("amount.kernels.vector", "true"))
+            && VectorAmountKernels.isUseful();
+
+    private AmountKernels() {
+    }
+
+    /**
+     * Totals of a range of rows, as computed by summarize().
+     */
+    public static final class Summary {
+
+        private final long[] totals = new long[TransactionType.values().length];
+        private long min;
+        private long max;
+        private int count;
+
+        // Constructor for an empty Summary; reuse it across calls to summarize()
+        public Summary() {
+        }
+
+        /**
+         * Returns the total of one transaction type.
+         *
+         * @param type Transaction type.
+         * @return Sum of the valid amounts of that type, in minor units.
+         */
+        public long getTotal(@NotNull TransactionType type) {
+            return totals[type.getCode()];
+        }
+
+        // Smallest valid amount, or Long.MAX_VALUE if there was none
+        public long getMin() {
+            return min;
+        }
+
+        // Largest valid amount, or Long.MIN_VALUE if there was none
+        public long getMax() {
+            return max;
+        }
+
+        // Number of valid rows
+        public int getCount() {
+            return count;
+        }
+
+        // Adds the partial results of another range of rows
+        void merge(long deposits, long withdrawals, long reversals, long min, long max, int count) {
+            totals[DEPOSIT] += deposits;
+            totals[WITHDRAWAL] += withdrawals;
+            totals[REVERSAL] += reversals;
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+            this.count += count;
+        }
+
+        // Net change the valid rows make to a balance
+        public long getNetChange() {
+            long net = 0;
+            for (TransactionType type : TransactionType.values()) {
+                net += type.balanceDelta(totals[type.getCode()]);
+            }
+            return net;
+        }
+    }
+
+    /**
+     * Marks each row whose amount is in [0, maxAmount] and whose date is in [fromMillis, toMillis).
+     *
+     * @param amounts     Amounts in minor units.
+     * @param epochMillis Dates in epoch milliseconds.
+     * @param from        First row, inclusive.
+     * @param to          Last row, exclusive.
+     * @param maxAmount   Largest amount accepted, e.g. a single-transaction limit.
+     * @param fromMillis  Earliest date accepted, inclusive.
+     * @param toMillis    Latest date accepted, exclusive.
+     * @param valid       Receives 1 for a valid row and 0 otherwise, at the row's index.
+     * @return Number of valid rows.
+     */
+    public static int validate(long[] amounts, long[] epochMillis, int from, int to,
+                               long maxAmount, long fromMillis, long toMillis, byte[] valid) {
+        if (maxAmount < 0) {
+            throw new IllegalArgumentException("Maximum amount must not be negative: " + maxAmount);
+        }
+        return VECTORIZED
+                ? VectorAmountKernels.validate(amounts, epochMillis, from, to, maxAmount, fromMillis, toMillis, valid)
+                : validateScalar(amounts, epochMillis, from, to, maxAmount, fromMillis, toMillis, valid);
+    }
+
+    // Scalar validate(), also used for the rows after the last whole vector
+    static int validateScalar(long[] amounts, long[] epochMillis, int from, int to,
+                              long maxAmount, long fromMillis, long toMillis, byte[] valid) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            long amount = amounts[i];
+            long date = epochMillis[i];
+            // Non-short-circuit & so the four comparisons compile to flag arithmetic, not branches
+            int ok = amount >= 0 & amount <= maxAmount & date >= fromMillis & date < toMillis ? 1 : 0;
+            valid[i] = (byte) ok;
+            count += ok;
+        }
+        return count;
+    }
+
+    /**
+     * Sums the valid rows per type and finds their smallest and largest amount.
+     *
+     * @param amounts Amounts in minor units.
+     * @param types   Type codes, see TransactionType.getCode().
+     * @param valid   Mask from validate(), or null to include every row.
+     * @param from    First row, inclusive.
+     * @param to      Last row, exclusive.
+     * @param into    Summary to overwrite.
+     * @return The summary, for chaining.
+     */
+    public static Summary summarize(long[] amounts, byte[] types, byte[] valid, int from, int to, @NotNull Summary into) {
+        return VECTORIZED
+                ? VectorAmountKernels.summarize(amounts, types, valid, from, to, into)
+                : summarizeScalar(amounts, types, valid, from, to, into);
+    }
+
+    // Scalar summarize(), also used for the rows after the last whole vector
+    static Summary summarizeScalar(long[] amounts, byte[] types, byte[] valid, int from, int to, Summary into) {
+        long deposits = 0;
+        long withdrawals = 0;
+        long reversals = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            long keep = valid == null ? -1 : -(long) valid[i];
+            long amount = amounts[i];
+            long kept = amount & keep;
+            int type = types[i];
+            deposits += kept & typeMask(type, DEPOSIT);
+            withdrawals += kept & typeMask(type, WITHDRAWAL);
+            reversals += kept & typeMask(type, REVERSAL);
+            // Invalid rows are replaced by the identity of each reduction
+            min = Math.min(min, kept | (~keep & Long.MAX_VALUE));
+            max = Math.max(max, kept | (~keep & Long.MIN_VALUE));
+            count -= (int) keep;
+        }
+        into.totals[DEPOSIT] = deposits;
+        into.totals[WITHDRAWAL] = withdrawals;
+        into.totals[REVERSAL] = reversals;
+        into.min = min;
+        into.max = max;
+        into.count = count;
+        return into;
+    }
+
+    /**
+     * Computes the balance after each row, starting from an opening balance.
+     *
+     * @param opening    Balance before the first row, in minor units.
+     * @param amounts    Amounts in minor units.
+     * @param types      Type codes, see TransactionType.getCode().
+     * @param from       First row, inclusive.
+     * @param to         Last row, exclusive.
+     * @param trajectory Receives the balance after each row, at the row's index.
+     * @return The closing balance.
+     */
+    public static long balances(long opening, long[] amounts, byte[] types, int from, int to, long[] trajectory) {
+        return VECTORIZED
+                ? VectorAmountKernels.balances(opening, amounts, types, from, to, trajectory)
+                : balancesScalar(opening, amounts, types, from, to, trajectory);
+    }
+
+    // Scalar balances(), also used for the rows after the last whole vector
+    static long balancesScalar(long opening, long[] amounts, byte[] types, int from, int to, long[] trajectory) {
+        long balance = opening;
+        for (int i = from; i < to; i++) {
+            balance += delta(amounts[i], types[i]);
+            trajectory[i] = balance;
+        }
+        return balance;
+    }
+
+    /**
+     * Finds the first row after which the balance would be negative, i.e. the first withdrawal that
+     * applying the rows in order would reject. Blocks of rows whose withdrawals together are covered by
+     * the balance at the start of the block are skipped after one summing pass.
+     *
+     * @param opening Balance before the first row, in minor units.
+     * @param amounts Amounts in minor units.
+     * @param types   Type codes, see TransactionType.getCode().
+     * @param from    First row, inclusive.
+     * @param to      Last row, exclusive.
+     * @return Index of the first overdrawing row, or -1 if the balance never goes negative.
+     */
+    public static int firstOverdraft(long opening, long[] amounts, byte[] types, int from, int to) {
+        return VECTORIZED
+                ? VectorAmountKernels.firstOverdraft(opening, amounts, types, from, to)
+                : firstOverdraftScalar(opening, amounts, types, from, to);
+    }
+
+    // Scalar firstOverdraft()
+    static int firstOverdraftScalar(long opening, long[] amounts, byte[] types, int from, int to) {
+        long balance = opening;
+        for (int start = from; start < to; start += OVERDRAFT_BLOCK) {
+            int end = Math.min(start + OVERDRAFT_BLOCK, to);
+            long debits = 0;
+            long net = 0;
+            for (int i = start; i < end; i++) {
+                long amount = amounts[i];
+                debits += amount & typeMask(types[i], WITHDRAWAL);
+                net += delta(amount, types[i]);
+            }
+            if (balance - debits < 0) {
+                // Some prefix of this block may overdraw; walk it
+                for (int i = start; i < end; i++) {
+                    balance += delta(amounts[i], types[i]);
+                    if (balance < 0) {
+                        return i;
+                    }
+                }
+            } else {
+                balance += net;
+            }
+        }
+        return -1;
+    }
+
+    // All ones if type equals code, else zero
+    static long typeMask(int type, int code) {
+        return ((type ^ code) - 1) >> 31;
+    }
+
+    // Signed balance change of a row, as TransactionType.balanceDelta() but without a branch
+    static long delta(long amount, int type) {
+        long negate = typeMask(type, WITHDRAWAL);
+        return (amount ^ negate) - negate;
+    }
+}
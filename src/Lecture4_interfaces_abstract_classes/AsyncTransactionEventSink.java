@@ -0,0 +1,178 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event sink backed by a bounded ring buffer and drained by one background thread.
+ * Publishing only claims a preallocated slot and stores three fields in it; the listener
+ * (and so any string formatting or I/O) runs later on the drain thread.
+ * When the ring is full the event is dropped and counted rather than blocking the publisher.
+ * An idle drain thread parks until a publisher hands it an event, so an unused sink costs nothing.
+ * A listener that throws is counted and its first failure goes to the drain thread's
+ * UncaughtExceptionHandler; the drain carries on with the next event.
+ */
+public final class AsyncTransactionEventSink implements TransactionEventSink, AutoCloseable {
+
+    // How long flush() sleeps between checks of the drain thread's progress
+    private static final long FLUSH_PARK_NANOS = 50_000;
+
+    // Times the drain thread checks an empty ring again before parking
+    private static final int IDLE_SPINS = 100;
+
+    // Preallocated ring entry; sequence tells producers and the consumer who owns it
+    private static final class Slot {
+        volatile long sequence;
+        TransactionEventType type;
+        TransactionInterface transaction;
+        long balanceMinor;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final TransactionEventListener listener;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder listenerFailures = new LongAdder();
+    private final Thread drainThread;
+    private volatile long head;
+    private volatile boolean running = true;
+
+    // Set by the drain thread before it parks; publishers that see it unpark the thread
+    private volatile boolean waiting;
+
+    /**
+     * Constructor for AsyncTransactionEventSink. Starts the drain thread.
+     *
+     * @param capacity Ring size, rounded up to a power of two.
+     * @param listener Listener that receives the events on the drain thread.
+     */
+    public AsyncTransactionEventSink(int capacity, @NotNull TransactionEventListener listener) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+        this.mask = size - 1;
+        this.listener = listener;
+        this.drainThread = new Thread(this::drainLoop, "transaction-event-drain");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    @Override
+    public void publish(TransactionEventType type, TransactionInterface transaction, long balanceMinor) {
+        Slot slot;
+        long pos;
+        while (true) {
+            pos = tail.get();
+            slot = slots[(int) (pos & mask)];
+            long diff = slot.sequence - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                dropped.increment(); // Ring is full
+                return;
+            }
+        }
+        slot.type = type;
+        slot.transaction = transaction;
+        slot.balanceMinor = balanceMinor;
+        slot.sequence = pos + 1; // Hands the slot to the drain thread
+        if (waiting) {
+            LockSupport.unpark(drainThread);
+        }
+    }
+
+    /**
+     * Waits until the drain thread has handled every event published before this call.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (head < target && drainThread.isAlive()) {
+            LockSupport.parkNanos(FLUSH_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Returns how many events were discarded because the ring was full.
+     *
+     * @return Number of dropped events.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns how many events the listener threw on.
+     *
+     * @return Number of events whose listener call failed.
+     */
+    public long getListenerFailureCount() {
+        return listenerFailures.sum();
+    }
+
+    /**
+     * Drains the remaining events and stops the drain thread.
+     */
+    @Override
+    public void close() {
+        flush();
+        running = false;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Body of the drain thread: hands ready slots to the listener in publish order
+    private void drainLoop() {
+        long next = head;
+        int spins = 0;
+        while (running) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.sequence != next + 1) {
+                if (spins++ < IDLE_SPINS) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                // Announce the park before checking the slot again: a publisher either sees waiting and
+                // unparks, or its slot is seen here, so no event is left waiting for a wake-up
+                waiting = true;
+                if (running && slot.sequence != next + 1) {
+                    LockSupport.park(this);
+                }
+                waiting = false;
+                continue;
+            }
+            spins = 0;
+            try {
+                listener.onEvent(slot.type, slot.transaction, slot.balanceMinor);
+            } catch (RuntimeException e) {
+                // A failing listener must not stop the drain; report it once, count every failure
+                listenerFailures.increment();
+                if (listenerFailures.sum() == 1) {
+                    drainThread.getUncaughtExceptionHandler().uncaughtException(drainThread, e);
+                }
+            }
+            slot.transaction = null;
+            slot.sequence = next + slots.length; // Frees the slot for the next lap
+            head = ++next;
+        }
+    }
+}
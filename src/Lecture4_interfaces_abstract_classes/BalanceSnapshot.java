@@ -0,0 +1,221 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Compact binary snapshot of account balances, tied to a position in the TransactionJournal.
+ *
+ * A snapshot records startLsn, the last journal LSN when the snapshot began, and for every account
+ * its balance together with the LSN of the last journal record applied to it. Each account is read
+ * under its own monitor, so posting continues while the snapshot is written. Every record up to
+ * startLsn is contained in the snapshot; records after it are contained only up to the account's own LSN.
+ * Recovery therefore replays the journal from startLsn + 1 and skips records at or below each account's LSN.
+ *
+ * Because recovery skips records by LSN, a snapshot must never contain a record that a crash could
+ * still take out of the journal: the journal would then reuse that LSN for a later record, and the
+ * later record would be skipped. A snapshot therefore becomes visible only after every journal record
+ * it contains has been synced, and after the snapshot itself is on disk.
+ *
+ * File layout: magic, version, startLsn, account count, then (accountId, balanceMinor, lsn) per
+ * account, then a CRC32C of everything before it.
+ */
+public final class BalanceSnapshot {
+
+    private static final int MAGIC = 0x534E4150; // "SNAP"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    // Number of newest snapshots kept when a new one is written
+    private static final int SNAPSHOTS_KEPT = 2;
+
+    private final long startLsn;
+    private final Map<Long, BankAccount> accounts;
+
+    private BalanceSnapshot(long startLsn, Map<Long, BankAccount> accounts) {
+        this.startLsn = startLsn;
+        this.accounts = accounts;
+    }
+
+    public long getStartLsn() {
+        return startLsn;
+    }
+
+    /**
+     * Returns the accounts restored from the snapshot, each carrying its journal LSN.
+     *
+     * @return Accounts by account number.
+     */
+    public Map<Long, BankAccount> getAccounts() {
+        return accounts;
+    }
+
+    /**
+     * Writes a snapshot of the given accounts into a directory, then deletes all but the newest snapshots.
+     * The file is written under a temporary name, forced to disk together with every journal record it
+     * contains, and only then renamed, so a crash never leaves a partial snapshot or one ahead of the journal.
+     * If any step up to the rename fails, the temporary file is deleted before the failure is rethrown.
+     *
+     * @param directory Directory for the snapshot files.
+     * @param journal   Journal the accounts' LSNs refer to.
+     * @param accounts  Accounts to include.
+     * @return Path of the new snapshot.
+     * @throws IOException if the snapshot cannot be written, or if interrupted while syncing the journal.
+     */
+    public static Path write(@NotNull Path directory, @NotNull TransactionJournal journal,
+                             @NotNull Collection<BankAccount> accounts) throws IOException {
+        Files.createDirectories(directory);
+        long startLsn = journal.getLastLsn();
+        long lastLsn = startLsn;
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, startLsn, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try {
+            try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 CheckedOutputStream checked = new CheckedOutputStream(
+                         new BufferedOutputStream(Channels.newOutputStream(file), 1 << 16), crc);
+                 DataOutputStream out = new DataOutputStream(checked)) {
+                List<BankAccount> snapshot = new ArrayList<>(accounts);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(startLsn);
+                out.writeInt(snapshot.size());
+                for (BankAccount account : snapshot) {
+                    long balance;
+                    long lsn;
+                    synchronized (account) {
+                        balance = account.getBalanceMinor();
+                        lsn = account.journalLsn;
+                    }
+                    out.writeLong(account.getAccountId());
+                    out.writeLong(balance);
+                    out.writeLong(lsn);
+                    lastLsn = Math.max(lastLsn, lsn); // Posting continues, so an account may be past startLsn
+                }
+                out.writeInt((int) crc.getValue()); // DataOutputStream does not buffer, so crc covers every byte so far
+                out.flush();
+                file.force(true);
+            }
+            try {
+                journal.sync(lastLsn);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while syncing the journal for a snapshot");
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Throwable failure) {
+            deleteAfterFailure(temp, failure); // Whatever went wrong, no partial or unsynced snapshot is left behind
+            throw failure;
+        }
+        forceDirectory(directory); // The rename must be on disk before the snapshots it replaces are deleted
+
+        List<Path> snapshots = list(directory);
+        for (int i = 0; i < snapshots.size() - SNAPSHOTS_KEPT; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        return target;
+    }
+
+    /**
+     * Loads the newest valid snapshot in a directory.
+     *
+     * @param directory Directory holding the snapshot files.
+     * @return The snapshot, or null if there is none.
+     * @throws IOException if a snapshot file cannot be read.
+     */
+    public static BalanceSnapshot loadLatest(@NotNull Path directory) throws IOException {
+        List<Path> snapshots = list(directory);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            BalanceSnapshot snapshot = read(snapshots.get(i));
+            if (snapshot != null) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    // Reads one snapshot, or returns null if it is damaged
+    private static BalanceSnapshot read(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (InputStream raw = Files.newInputStream(file);
+             CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(raw, 1 << 16), crc);
+             DataInputStream in = new DataInputStream(checked)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            long startLsn = in.readLong();
+            int count = in.readInt();
+            Map<Long, BankAccount> accounts = new HashMap<>(Math.max(16, count * 2));
+            for (int i = 0; i < count; i++) {
+                long accountId = in.readLong();
+                BankAccount account = BankAccount.withMinorBalance(accountId, in.readLong());
+                account.journalLsn = in.readLong();
+                accounts.put(accountId, account);
+            }
+            int expected = (int) crc.getValue();
+            return in.readInt() == expected ? new BalanceSnapshot(startLsn, accounts) : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // Forces a directory's entries to disk; some platforms (e.g. Windows) cannot open a directory for this
+    private static void forceDirectory(Path directory) {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Nothing more can be done there; the rename is as durable as the platform makes it
+        }
+    }
+
+    // Deletes the temporary file of a failed write, keeping a failed delete as a suppressed exception
+    private static void deleteAfterFailure(Path temp, Throwable failure) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return snapshots;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().forEach(snapshots::add);
+        }
+        return snapshots;
+    }
+}
@@ -1,16 +1,125 @@
 package Lecture4_interfaces_abstract_classes;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bank account whose balance may be posted to from several threads at once.
+ * The balance is held as a long number of minor units (see Money) and every change is a single
+ * atomic operation, so concurrent deposits and withdrawals never lose an update.
+ */
 public class BankAccount {
-    private double balance;
+
+    // Source of account numbers for accounts created without one
+    private static final AtomicLong NEXT_ACCOUNT_ID = new AtomicLong(1);
+
+    private final long accountId;
+    private final AtomicLong balance;
+
+    // LSN of the last journal record applied to this account; guarded by the account's monitor
+    long journalLsn;
+
     public BankAccount(double balance) {
-        this.balance = balance;
+        this(NEXT_ACCOUNT_ID.getAndIncrement(), balance);
     }
 
+    /**
+     * Constructor for BankAccount.
+     *
+     * @param accountId Number identifying the account.
+     * @param balance   Opening balance in whole currency units.
+     */
+    public BankAccount(long accountId, double balance) {
+        this.accountId = accountId;
+        this.balance = new AtomicLong(Money.fromDouble(balance));
+    }
+
+    /**
+     * Creates an account with an exact opening balance.
+     *
+     * @param accountId    Number identifying the account.
+     * @param balanceMinor Opening balance in minor units.
+     * @return The new account.
+     */
+    public static BankAccount withMinorBalance(long accountId, long balanceMinor) {
+        BankAccount account = new BankAccount(accountId, 0);
+        account.balance.set(balanceMinor);
+        return account;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    // Balance in major units as a double, for display; use getBalanceMinor() for arithmetic
     public double getBalance() {
-        return balance;
+        return Money.toDouble(balance.get());
     }
 
+    // Sets the balance from major units, rounded to the nearest minor unit
     public void setBalance(double balance) {
-        this.balance = balance;
+        this.balance.set(Money.fromDouble(balance));
+    }
+
+    /**
+     * Returns the balance in minor units.
+     *
+     * @return Current balance in cents.
+     */
+    public long getBalanceMinor() {
+        return balance.get();
+    }
+
+    /**
+     * Atomically adds an amount to the balance.
+     *
+     * @param amountMinor Amount in minor units, must be non-negative.
+     * @return The balance in minor units after the credit.
+     * @throws ArithmeticException if the balance would overflow; the balance is then unchanged.
+     */
+    public long credit(long amountMinor) {
+        long current;
+        long updated;
+        do {
+            current = balance.get();
+            updated = Money.add(current, amountMinor);
+        } while (!balance.compareAndSet(current, updated));
+        return updated;
+    }
+
+    /**
+     * Atomically subtracts an amount from the balance if the funds are available.
+     * The funds check and the update happen in one compare-and-set, so two racing
+     * withdrawals can never both succeed against the same funds.
+     *
+     * @param amountMinor Amount in minor units, must be non-negative.
+     * @return The balance in minor units after the debit, or -1 if the funds were insufficient.
+     * @throws IllegalArgumentException if the amount is negative, which would credit the account.
+     */
+    public long tryDebit(long amountMinor) {
+        if (!Money.isValidAmount(amountMinor)) {
+            throw new IllegalArgumentException("Debit amount must be non-negative: " + amountMinor);
+        }
+        long current;
+        long updated;
+        do {
+            current = balance.get();
+            if (current < amountMinor) {
+                return -1;
+            }
+            updated = current - amountMinor;
+        } while (!balance.compareAndSet(current, updated));
+        return updated;
+    }
+
+    /**
+     * Atomically replaces the balance if it still holds the expected value.
+     * Used by the batch engine to commit the net change of a whole batch at once.
+     *
+     * @param expectedMinor Balance in minor units the caller computed against.
+     * @param updatedMinor  New balance in minor units.
+     * @return true if the balance was replaced, false if another thread changed it first.
+     */
+    boolean compareAndSetBalanceMinor(long expectedMinor, long updatedMinor) {
+        return balance.compareAndSet(expectedMinor, updatedMinor);
     }
 }
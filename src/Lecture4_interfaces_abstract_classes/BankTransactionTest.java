@@ -0,0 +1,24 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.util.Calendar;
+
+// Test class to demonstrate transactions and exception handling
+public class BankTransactionTest {
+    public static void main(String[] args) {
+        BankAccount account = new BankAccount(500.0); // Initial balance is 500
+        
+        // Create and apply Deposit Transaction
+        DepositTransaction deposit = new DepositTransaction(200, Calendar.getInstance());
+        deposit.apply(account);
+        deposit.printTransactionDetails();
+
+        // Create and apply Withdrawal Transaction
+        WithdrawalTransaction withdrawal = new WithdrawalTransaction(600, Calendar.getInstance());
+        try {
+            withdrawal.applyOrThrow(account);
+        } catch (InsufficientFundsException e) {
+            System.out.println("Error during withdrawal: " + e.getMessage());
+        }
+        withdrawal.printTransactionDetails();
+    }
+}
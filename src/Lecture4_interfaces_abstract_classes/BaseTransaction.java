@@ -1,95 +1,156 @@
 package Lecture4_interfaces_abstract_classes;
 
 import org.jetbrains.annotations.NotNull;
+import java.time.Instant;
 import java.util.Calendar;
+import java.util.GregorianCalendar;
 
 /**
  * Abstract class representing a base transaction.
- * Implements TransactionInterface.
+ * Implements TransactionInterface. The hierarchy is sealed, so a switch over the subclasses is
+ * checked for exhaustiveness by the compiler.
  */
-public abstract class BaseTransaction implements TransactionInterface {
+public abstract sealed class BaseTransaction implements TransactionInterface
+        permits DepositTransaction, WithdrawalTransaction, TransferTransaction {
 
     // Fields for transaction details
-    private final int amount;
-    private final Calendar date;
-    private final String transactionID;
+    private final long amount; // In minor units, see Money.
+    private final Instant date; // Immutable, so it can be shared without copying.
+    private final long transactionID;
 
     /**
      * Constructor for BaseTransaction
      *
-     * @param amount Transaction amount as an integer.
-     * @param date   Transaction date, must not be null and should be a Calendar object.
+     * @param amount Transaction amount in whole currency units.
+     * @param date   Transaction date, must not be null and should be a Calendar object. Only its instant is
+     *               kept: later changes to date have no effect and its time zone is not preserved.
      */
     public BaseTransaction(int amount, @NotNull Calendar date) {
-        this.amount = amount;
-        this.date = (Calendar) date.clone(); // Clone to avoid reference issues.
-        int uniq = (int) (Math.random() * 10000); // Generate a random unique ID component.
-        this.transactionID = date.toString() + uniq;
+        this(amount, date.toInstant());
+    }
+
+    /**
+     * Constructor for BaseTransaction
+     *
+     * @param amount Transaction amount in whole currency units.
+     * @param date   Transaction date, must not be null.
+     */
+    public BaseTransaction(int amount, @NotNull Instant date) {
+        this(date, Money.ofMajor(amount));
+    }
+
+    /**
+     * Constructor for BaseTransaction with an exact amount.
+     *
+     * @param date        Transaction date, must not be null.
+     * @param amountMinor Transaction amount in minor units.
+     */
+    protected BaseTransaction(@NotNull Instant date, long amountMinor) {
+        this(date, amountMinor, TransactionIdGenerator.getDefault().nextId()); // Unique, time-ordered 64-bit ID.
+    }
+
+    /**
+     * Constructor for BaseTransaction that keeps an existing ID, for transactions read back from storage.
+     *
+     * @param date          Transaction date, must not be null.
+     * @param amountMinor   Transaction amount in minor units.
+     * @param transactionID Numeric ID the transaction was created with.
+     */
+    BaseTransaction(@NotNull Instant date, long amountMinor, long transactionID) {
+        this.amount = amountMinor;
+        this.date = date;
+        this.transactionID = transactionID;
     }
 
     /**
      * Returns the transaction amount.
      *
-     * @return Transaction amount as an integer.
+     * @return Transaction amount in minor units.
      */
     @Override
-    public int getAmount() {
+    public long getAmount() {
         return amount;
     }
 
     /**
-     * Returns the transaction date.
+     * Returns the transaction date as a Calendar, for callers written against the Calendar API.
+     * Zone-lossy: only the instant is stored, so a new Calendar in the JVM default time zone is built on every
+     * call, whatever zone the Calendar passed to the constructor had. Fields such as HOUR_OF_DAY or DAY_OF_MONTH
+     * can therefore differ from the original. getInstant() and getEpochMillis() are the canonical accessors.
      *
-     * @return A clone of the transaction date as a Calendar object.
+     * @return A new Calendar set to the transaction date.
      */
     @Override
     public Calendar getDate() {
-        return (Calendar) date.clone(); // Defensive copying.
+        Calendar calendar = new GregorianCalendar();
+        calendar.setTimeInMillis(date.toEpochMilli());
+        return calendar;
+    }
+
+    /**
+     * Returns the transaction date. Instant is immutable, so no copy is made.
+     *
+     * @return The transaction date as an Instant.
+     */
+    @Override
+    public Instant getInstant() {
+        return date;
+    }
+
+    /**
+     * Returns the transaction date as milliseconds since the epoch.
+     *
+     * @return The transaction date in epoch milliseconds.
+     */
+    @Override
+    public long getEpochMillis() {
+        return date.toEpochMilli();
     }
 
     /**
      * Returns the unique transaction ID.
      *
-     * @return Transaction ID as a String.
+     * @return Transaction ID as a 13-character String.
      */
     @Override
     public String getTransactionID() {
-        return transactionID;
+        return TransactionIdGenerator.encode(transactionID);
     }
 
     /**
-     * Abstract method to print transaction details.
-     * Must be implemented by subclasses.
+     * Returns the unique transaction ID as a number.
+     *
+     * @return Transaction ID as produced by TransactionIdGenerator.
      */
-    public abstract void printTransactionDetails();
+    public long getNumericID() {
+        return transactionID;
+    }
 
     /**
-     * Abstract method to apply the transaction to a BankAccount.
-     * Must be implemented by subclasses.
+     * Applies the transaction to a BankAccount and reports the outcome.
+     * Every subclass delegates to the rule for its kind in TransactionRules, which TransactionRecord.apply()
+     * uses too.
      *
      * @param ba BankAccount instance to apply the transaction on.
+     * @return The outcome of the transaction.
      */
-    public abstract void apply(BankAccount ba);
+    public abstract TransactionStatus tryApply(BankAccount ba);
 
     /**
-     * Concrete implementation to print transaction details.
+     * Prints transaction details.
+     * Can be overridden by subclasses.
      */
-    @Override
     public void printTransactionDetails() {
-        System.out.println("Transaction ID: " + transactionID);
-        System.out.println("Amount: " + amount);
-        System.out.println("Date: " + date.getTime());
+        TransactionEvents.getSink().publish(TransactionEventType.TRANSACTION_DETAILS, this, 0);
     }
 
     /**
-     * Base implementation of the apply method.
-     * Can be overridden by subclasses.
+     * Applies the transaction to a BankAccount, for callers that only need the events.
+     * No exception or message string is built here; the event sink formats the output later.
      *
      * @param ba BankAccount instance to apply the transaction on.
      */
-    @Override
-    public void apply(BankAccount ba) {
-        System.out.println("BaseTransaction applied on BankAccount.");
-        // Placeholder logic for applying a transaction.
+    public final void apply(BankAccount ba) {
+        tryApply(ba);
     }
 }
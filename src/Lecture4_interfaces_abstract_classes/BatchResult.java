@@ -0,0 +1,69 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Result of applying a batch of transactions with the BatchTransactionEngine, or of reversing one with the ReversalEngine.
+ * Holds one status per transaction, in the same order as the batch.
+ */
+public class BatchResult {
+
+    private final TransactionStatus[] statuses;
+    private final int appliedCount;
+    private final long netChangeMinor;
+    private final long finalBalanceMinor;
+
+    /**
+     * Constructor for BatchResult.
+     *
+     * @param statuses          Status of each transaction, indexed like the batch. Not copied.
+     * @param appliedCount      Number of transactions with status APPLIED.
+     * @param netChangeMinor    Net balance change committed for the batch, in minor units.
+     * @param finalBalanceMinor Balance right after the commit, in minor units.
+     */
+    BatchResult(TransactionStatus[] statuses, int appliedCount, long netChangeMinor, long finalBalanceMinor) {
+        this.statuses = statuses;
+        this.appliedCount = appliedCount;
+        this.netChangeMinor = netChangeMinor;
+        this.finalBalanceMinor = finalBalanceMinor;
+    }
+
+    /**
+     * Returns the status of one transaction.
+     *
+     * @param index Position of the transaction in the batch.
+     * @return Status of that transaction.
+     */
+    public TransactionStatus getStatus(int index) {
+        return statuses[index];
+    }
+
+    /**
+     * Returns whether one transaction was applied.
+     *
+     * @param index Position of the transaction in the batch.
+     * @return true if the transaction changed the balance.
+     */
+    public boolean isApplied(int index) {
+        return statuses[index] == TransactionStatus.APPLIED;
+    }
+
+    // Number of transactions in the batch
+    public int size() {
+        return statuses.length;
+    }
+
+    public int getAppliedCount() {
+        return appliedCount;
+    }
+
+    public int getFailedCount() {
+        return statuses.length - appliedCount;
+    }
+
+    public long getNetChangeMinor() {
+        return netChangeMinor;
+    }
+
+    public long getFinalBalanceMinor() {
+        return finalBalanceMinor;
+    }
+}
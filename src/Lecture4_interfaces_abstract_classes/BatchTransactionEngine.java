@@ -0,0 +1,77 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Applies many transactions to one bank account per call.
+ * The batch is validated and its net balance change computed in a single pass,
+ * then committed to the account with one atomic update instead of one update per transaction.
+ * Nothing is printed on this path.
+ */
+public final class BatchTransactionEngine {
+
+    private BatchTransactionEngine() {
+    }
+
+    /**
+     * Applies a batch of deposits and withdrawals to a bank account.
+     * Transactions are evaluated in list order: a withdrawal is rejected with INSUFFICIENT_FUNDS
+     * if the running balance at its position is too small, exactly as if it were applied alone.
+     * A negative amount, deposit or withdrawal, is rejected with INVALID_AMOUNT.
+     * If another thread changes the balance before the commit, the pass is repeated against the new balance.
+     * Transfers are reported as UNSUPPORTED and left unapplied.
+     *
+     * @param batch Transactions to apply, must not be null.
+     * @param ba    BankAccount the batch is applied on, must not be null.
+     * @return A BatchResult with one status per transaction.
+     */
+    public static BatchResult applyAll(@NotNull List<? extends BaseTransaction> batch, @NotNull BankAccount ba) {
+        TransactionStatus[] statuses = new TransactionStatus[batch.size()];
+        while (true) {
+            long startBalance = ba.getBalanceMinor();
+            long running = startBalance;
+            int applied = 0;
+
+            for (int i = 0; i < statuses.length; i++) {
+                BaseTransaction t = batch.get(i);
+                long amountMinor = t.getAmount();
+                TransactionStatus status;
+
+                switch (t) {
+                    case DepositTransaction d -> {
+                        if (!DepositTransaction.checkDepositAmount(amountMinor)) {
+                            status = TransactionStatus.INVALID_AMOUNT;
+                        } else {
+                            running = Money.add(running, amountMinor);
+                            status = TransactionStatus.APPLIED;
+                        }
+                    }
+                    case WithdrawalTransaction w -> {
+                        if (!Money.isValidAmount(amountMinor)) {
+                            status = TransactionStatus.INVALID_AMOUNT;
+                        } else if (running < amountMinor) {
+                            status = TransactionStatus.INSUFFICIENT_FUNDS;
+                        } else {
+                            running -= amountMinor;
+                            status = TransactionStatus.APPLIED;
+                        }
+                    }
+                    // A transfer also changes another account, so it cannot be folded into this account's commit
+                    case TransferTransaction x -> status = TransactionStatus.UNSUPPORTED;
+                }
+
+                if (status == TransactionStatus.APPLIED) {
+                    applied++;
+                }
+                statuses[i] = status;
+            }
+
+            // Commit the whole batch at once; retry if another thread posted in the meantime
+            if (ba.compareAndSetBalanceMinor(startBalance, running)) {
+                return new BatchResult(statuses, applied, running - startBalance, running);
+            }
+        }
+    }
+}
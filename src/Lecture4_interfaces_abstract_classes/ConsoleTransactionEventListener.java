@@ -0,0 +1,72 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Listener that prints events to standard output in the same wording the transactions used to print inline.
+ */
+public class ConsoleTransactionEventListener implements TransactionEventListener {
+
+    @Override
+    public void onEvent(TransactionEventType type, TransactionInterface t, long balanceMinor) {
+        String balance = Money.format(balanceMinor);
+        switch (type) {
+            case DEPOSIT_APPLIED:
+                System.out.println("Deposit of " + Money.format(t.getAmount()) + " applied. New Balance: " + balance);
+                break;
+            case DEPOSIT_INVALID_AMOUNT:
+                System.out.println("Invalid deposit amount: " + Money.format(t.getAmount()) + ". Deposit not applied.");
+                break;
+            case WITHDRAWAL_APPLIED:
+                System.out.println("Withdrawal of " + Money.format(t.getAmount()) + " applied. New Balance: " + balance);
+                break;
+            case WITHDRAWAL_INVALID_AMOUNT:
+                System.out.println("Invalid withdrawal amount: " + Money.format(t.getAmount()) + ". Withdrawal not applied.");
+                break;
+            case WITHDRAWAL_INSUFFICIENT_FUNDS:
+                System.out.println("Insufficient funds for withdrawal of " + Money.format(t.getAmount()));
+                break;
+            case WITHDRAWAL_REVERSED:
+                System.out.println("Reversed Withdrawal: Restored " + Money.format(t.getAmount()) + " to account.");
+                break;
+            case DEPOSIT_REVERSED:
+                System.out.println("Reversed Deposit: Removed " + Money.format(t.getAmount()) + " from account.");
+                break;
+            case DUPLICATE_REJECTED:
+                System.out.println("Duplicate transaction " + t.getTransactionID() + " rejected.");
+                break;
+            case TRANSFER_APPLIED:
+                System.out.println("Transfer of " + Money.format(t.getAmount()) + " applied. New Balance: " + balance);
+                break;
+            case TRANSFER_INVALID_AMOUNT:
+                System.out.println("Invalid transfer amount: " + Money.format(t.getAmount()) + ". Transfer not applied.");
+                break;
+            case TRANSFER_INSUFFICIENT_FUNDS:
+                System.out.println("Insufficient funds for transfer of " + Money.format(t.getAmount()));
+                break;
+            case PROCESSING_COMPLETE:
+                System.out.println("Transaction processing complete.");
+                break;
+            case DEPOSIT_DETAILS:
+                System.out.println("Deposit Transaction Details:");
+                printDetails(t);
+                break;
+            case WITHDRAWAL_DETAILS:
+                System.out.println("Withdrawal Transaction Details:");
+                printDetails(t);
+                break;
+            case TRANSFER_DETAILS:
+                System.out.println("Transfer Transaction Details:");
+                printDetails(t);
+                break;
+            case TRANSACTION_DETAILS:
+                printDetails(t);
+                break;
+        }
+    }
+
+    // Prints the ID, amount and date lines shared by all detail events
+    private static void printDetails(TransactionInterface t) {
+        System.out.println("Transaction ID: " + t.getTransactionID());
+        System.out.println("Amount: " + Money.format(t.getAmount()));
+        System.out.println("Date: " + t.getDate().getTime());
+    }
+}
@@ -0,0 +1,82 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+import java.time.Instant;
+import java.util.Calendar;
+
+/**
+ * Class representing a deposit transaction.
+ * Extends the BaseTransaction class.
+ */
+public final class DepositTransaction extends BaseTransaction {
+
+    /**
+     * Constructor for DepositTransaction.
+     *
+     * @param amount Transaction amount (must be non-negative).
+     * @param date   Transaction date, must not be null and should be a Calendar object.
+     */
+    public DepositTransaction(int amount, @NotNull Calendar date) {
+        super(amount, date);
+    }
+
+    /**
+     * Constructor for DepositTransaction.
+     *
+     * @param amount Transaction amount (must be non-negative).
+     * @param date   Transaction date, must not be null.
+     */
+    public DepositTransaction(int amount, @NotNull Instant date) {
+        super(amount, date);
+    }
+
+    /**
+     * Constructor for DepositTransaction with an exact amount.
+     *
+     * @param date        Transaction date, must not be null.
+     * @param amountMinor Transaction amount in minor units (must be non-negative).
+     */
+    public DepositTransaction(@NotNull Instant date, long amountMinor) {
+        super(date, amountMinor);
+    }
+
+    // Constructor keeping an existing ID, used by TransactionCodec
+    DepositTransaction(@NotNull Instant date, long amountMinor, long transactionID) {
+        super(date, amountMinor, transactionID);
+    }
+
+    /**
+     * Checks if the deposit amount is valid.
+     *
+     * @param amt Amount to be deposited, in minor units.
+     * @return true if the amount is valid (non-negative), false otherwise.
+     */
+    static boolean checkDepositAmount(long amt) {
+        return Money.isValidAmount(amt);
+    }
+
+    /**
+     * Applies the deposit transaction to a bank account and reports the outcome.
+     *
+     * @param ba The BankAccount instance where the deposit will be applied.
+     * @return APPLIED, or INVALID_AMOUNT if the amount is negative.
+     */
+    @Override
+    public TransactionStatus tryApply(BankAccount ba) {
+        return TransactionRules.deposit(this, getAmount(), ba);
+
+        /**
+         * **Irreversibility Factor**:
+         * This implementation satisfies the assignment constraint by not providing a reverse() method.
+         * Once applied, the deposit transaction cannot be undone.
+         */
+    }
+
+    /**
+     * Prints the details of the deposit transaction.
+     */
+    @Override
+    public void printTransactionDetails() {
+        TransactionEvents.getSink().publish(TransactionEventType.DEPOSIT_DETAILS, this, 0);
+    }
+}
@@ -0,0 +1,59 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.time.Instant;
+
+/**
+ * Compares the virtual BaseTransaction.tryApply() call with TransactionRecord.apply() when one call
+ * site sees several kinds of transaction. With two receiver classes the JIT can still inline both
+ * targets (bimorphic); with three it falls back to a virtual call it cannot inline (megamorphic).
+ * The record path has one target at every call site and dispatches in a switch over a sealed type.
+ * Each stream is 45% deposits, 45% withdrawals and 10% transfers, or deposits and withdrawals only.
+ * Events go to TransactionEventSink.NO_OP and metrics are off, so dispatch and the balance updates
+ * are what is measured.
+ *
+ * Every variant is its own Bench.run(), so it is measured through its own copy of the loop and, unless
+ * bench.fork is false, in a JVM of its own: no variant inherits the type profiles another one left.
+ * Measured that way on JDK 21 the switch is within a few percent of the virtual call, bimorphic
+ * (about 16 ns) and megamorphic (about 21 ns) alike; the record path is not faster, only equally fast.
+ */
+public class DispatchBenchmark {
+
+    private static final int STREAM_LENGTH = 1 << 12;
+
+    public static void main(String[] args) {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        TransactionMetrics.disable();
+        Instant date = Instant.parse("2024-01-03T00:00:00Z");
+        BankAccount account = BankAccount.withMinorBalance(1, Long.MAX_VALUE / 4);
+        BankAccount other = BankAccount.withMinorBalance(2, 0);
+
+        BaseTransaction[] twoKinds = new BaseTransaction[STREAM_LENGTH];
+        BaseTransaction[] threeKinds = new BaseTransaction[STREAM_LENGTH];
+        for (int i = 0; i < STREAM_LENGTH; i++) {
+            int kind = (i * 7919) % 100; // Spread the kinds so the branch pattern is not trivially predictable
+            twoKinds[i] = kind < 50 ? new DepositTransaction(date, 100) : new WithdrawalTransaction(date, 100);
+            if (kind < 45) {
+                threeKinds[i] = new DepositTransaction(date, 100);
+            } else if (kind < 90) {
+                threeKinds[i] = new WithdrawalTransaction(date, 100);
+            } else {
+                threeKinds[i] = new TransferTransaction(date, 100, other);
+            }
+        }
+        TransactionRecord[] twoRecords = new TransactionRecord[STREAM_LENGTH];
+        TransactionRecord[] threeRecords = new TransactionRecord[STREAM_LENGTH];
+        for (int i = 0; i < STREAM_LENGTH; i++) {
+            twoRecords[i] = TransactionRecord.of(twoKinds[i]);
+            threeRecords[i] = TransactionRecord.of(threeKinds[i]);
+        }
+        int mask = STREAM_LENGTH - 1;
+
+        Bench.printHeader();
+        Bench.run("virtual tryApply, 2 classes (bimorphic)", i -> twoKinds[i & mask].tryApply(account).ordinal());
+        Bench.run("TransactionRecord.apply, 2 records", i -> TransactionRecord.apply(twoRecords[i & mask], account).ordinal());
+        Bench.run("virtual tryApply, 3 classes (megamorphic)", i -> threeKinds[i & mask].tryApply(account).ordinal());
+        Bench.run("TransactionRecord.apply, 3 records", i -> TransactionRecord.apply(threeRecords[i & mask], account).ordinal());
+    }
+}
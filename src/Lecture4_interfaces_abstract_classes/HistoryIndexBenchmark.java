@@ -0,0 +1,71 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Compares TransactionHistoryIndex point and range queries with a full scan of the store.
+ *
+ * Settings (system properties):
+ *   bench.rows      transactions in the history (default 10,000,000)
+ *   bench.accounts  number of accounts (default 100,000)
+ */
+public class HistoryIndexBenchmark {
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    public static void main(String[] args) {
+        int rowCount = Integer.getInteger("bench.rows", 10_000_000);
+        int accountCount = Integer.getInteger("bench.accounts", 100_000);
+        long start = TransactionIdGenerator.EPOCH_MILLIS;
+        long span = 365 * DAY_MILLIS;
+
+        TransactionStore store = new TransactionStore(rowCount);
+        TransactionHistoryIndex index = new TransactionHistoryIndex(store);
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < rowCount; i++) {
+            // Mostly increasing dates with some jitter, as in a daily feed
+            long date = start + span * i / rowCount + random.nextLong(DAY_MILLIS);
+            index.add(random.nextInt(accountCount), TransactionType.DEPOSIT, 100, date, 1_000_000L + i);
+        }
+        TransactionHistoryIndex.Cursor cursor = index.newCursor();
+        TransactionStore.View view = store.view();
+        long monthFrom = start + 120 * DAY_MILLIS;
+        long monthTo = monthFrom + 30 * DAY_MILLIS;
+
+        Bench.printHeader();
+        Bench.run("Point lookup by ID (hash index)", i -> index.findById(1_000_000L + random.nextInt(rowCount)));
+        Bench.run("Range query, one account, 30 days (index)", i -> {
+            long sum = 0;
+            index.range(random.nextInt(accountCount), monthFrom, monthTo, cursor);
+            while (cursor.next()) {
+                sum += cursor.current().getAmount();
+            }
+            return sum;
+        });
+
+        int scans = Math.max(1, Bench.defaultOps() / rowCount);
+        Bench.run("Point lookup by ID (full scan)", scans, i -> {
+            long id = 1_000_000L + random.nextInt(rowCount);
+            for (int row = 0; row < store.size(); row++) {
+                if (view.moveTo(row).getId() == id) {
+                    return row;
+                }
+            }
+            return -1;
+        });
+        Bench.run("Range query, one account, 30 days (full scan)", scans, i -> {
+            long accountId = random.nextInt(accountCount);
+            long sum = 0;
+            for (int row = 0; row < store.size(); row++) {
+                view.moveTo(row);
+                long date = view.getEpochMillis();
+                if (view.getAccountId() == accountId && date >= monthFrom && date < monthTo) {
+                    sum += view.getAmount();
+                }
+            }
+            return sum;
+        });
+    }
+}
@@ -0,0 +1,278 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, concurrent record of what has happened to each transaction ID, used to reject
+ * duplicate applies and reversals.
+ *
+ * Entries are spread over independently locked stripes, each a primitive hash table, so lookups cost
+ * the same however many transactions have been seen, nothing is allocated per call, and threads
+ * retrying different IDs rarely wait for each other.
+ * An entry is evicted once it is older than the time to live, or when its stripe is full, oldest
+ * first. Expired entries are only dropped when their stripe next adds an ID, so lookups never read
+ * the clock and an ID is remembered for at least the time to live. After eviction an ID is unknown
+ * again, so the time to live should cover the longest window in which upstream systems may retry.
+ */
+public class IdempotencyCache {
+
+    /**
+     * Lifecycle of a transaction ID.
+     */
+    public enum State {
+        // Being applied right now
+        PENDING,
+        // Applied, and may be reversed
+        APPLIED,
+        // Being reversed right now
+        REVERSING,
+        // Reversed; neither apply nor reverse is allowed again
+        REVERSED
+    }
+
+    private static final int STRIPE_COUNT = 64;
+
+    // Marks a free table slot; a used slot holds State.ordinal() + 1
+    private static final byte FREE = 0;
+
+    private static final State[] STATES = State.values();
+
+    /**
+     * One stripe of the cache: an open-addressing table of IDs (linear probing, backward-shift
+     * deletion, no boxing), plus a FIFO ring recording insertion order for eviction.
+     * Each table entry remembers the FIFO sequence it was inserted at, so a ring position left
+     * behind by remove() is recognised as stale and skipped.
+     */
+    private static final class Stripe {
+        final long[] keys;
+        final long[] sequences;
+        final byte[] states;
+        final int mask;
+        final long[] fifoIds;
+        final long[] fifoCreatedMillis;
+        long head; // Sequence of the oldest ring position
+        long tail; // Sequence the next insertion gets
+        int size;
+
+        Stripe(int capacity) {
+            int tableSize = Integer.highestOneBit(Math.max(16, capacity * 2) - 1) << 1;
+            keys = new long[tableSize];
+            sequences = new long[tableSize];
+            states = new byte[tableSize];
+            mask = tableSize - 1;
+            fifoIds = new long[capacity];
+            fifoCreatedMillis = new long[capacity];
+        }
+
+        int find(long id) {
+            for (int slot = homeOf(id); states[slot] != FREE; slot = (slot + 1) & mask) {
+                if (keys[slot] == id) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        int homeOf(long id) {
+            return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+
+        // Adds an ID known to be absent; the caller makes room in the ring first
+        void insert(long id, State state, long now) {
+            int slot = homeOf(id);
+            while (states[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = id;
+            states[slot] = (byte) (state.ordinal() + 1);
+            sequences[slot] = tail;
+            int ring = (int) (tail % fifoIds.length);
+            fifoIds[ring] = id;
+            fifoCreatedMillis[ring] = now;
+            tail++;
+            size++;
+        }
+
+        // Removes the entry in a slot, shifting later entries of the probe run back into the gap
+        void delete(int slot) {
+            int hole = slot;
+            for (int i = (slot + 1) & mask; states[i] != FREE; i = (i + 1) & mask) {
+                // The entry at i may fill the hole unless its home lies cyclically in (hole, i]
+                if (((i - homeOf(keys[i])) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    sequences[hole] = sequences[i];
+                    states[hole] = states[i];
+                    hole = i;
+                }
+            }
+            states[hole] = FREE;
+            size--;
+        }
+
+        // Drops the oldest ring position; returns true if it still named a live entry, which is then deleted
+        boolean evictHead() {
+            long sequence = head++;
+            int slot = find(fifoIds[(int) (sequence % fifoIds.length)]);
+            if (slot >= 0 && sequences[slot] == sequence) {
+                delete(slot);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final long timeToLiveMillis;
+    private final LongSupplier clock;
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor for IdempotencyCache using the system clock.
+     *
+     * @param maxEntries       Upper bound on the number of IDs remembered.
+     * @param timeToLiveMillis How long an ID is remembered after it was first seen.
+     */
+    public IdempotencyCache(int maxEntries, long timeToLiveMillis) {
+        this(maxEntries, timeToLiveMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor for IdempotencyCache.
+     *
+     * @param maxEntries       Upper bound on the number of IDs remembered; must be positive.
+     * @param timeToLiveMillis How long an ID is remembered after it was first seen; must be positive.
+     * @param clock            Source of the current time in milliseconds.
+     */
+    public IdempotencyCache(int maxEntries, long timeToLiveMillis, @NotNull LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum entries must be positive: " + maxEntries);
+        }
+        if (timeToLiveMillis <= 0) {
+            throw new IllegalArgumentException("Time to live must be positive: " + timeToLiveMillis);
+        }
+        int perStripe = Math.max(1, maxEntries / STRIPE_COUNT);
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the state of a transaction ID.
+     *
+     * @param id Transaction ID.
+     * @return The state, or null if the ID is unknown or has been evicted.
+     */
+    public State get(long id) {
+        Stripe stripe = stripeOf(id);
+        synchronized (stripe) {
+            int slot = stripe.find(id);
+            return slot < 0 ? null : STATES[stripe.states[slot] - 1];
+        }
+    }
+
+    /**
+     * Atomically moves an ID from one state to another.
+     *
+     * @param id       Transaction ID.
+     * @param expected State the ID must be in, or null if it must be unknown.
+     * @param updated  New state; must not be null.
+     * @return true if the ID was in the expected state and has been moved, false otherwise.
+     */
+    public boolean transition(long id, State expected, @NotNull State updated) {
+        Stripe stripe = stripeOf(id);
+        synchronized (stripe) {
+            int slot = stripe.find(id);
+            if (slot < 0) {
+                if (expected != null) {
+                    return false;
+                }
+                insert(stripe, id, updated);
+                return true;
+            }
+            if (expected == null || stripe.states[slot] != expected.ordinal() + 1) {
+                return false;
+            }
+            stripe.states[slot] = (byte) (updated.ordinal() + 1);
+            return true;
+        }
+    }
+
+    /**
+     * Sets the state of an ID, whatever it was before. Used to finish a transition, which must
+     * succeed even if the entry was evicted meanwhile.
+     *
+     * @param id    Transaction ID.
+     * @param state New state.
+     */
+    public void put(long id, @NotNull State state) {
+        Stripe stripe = stripeOf(id);
+        synchronized (stripe) {
+            int slot = stripe.find(id);
+            if (slot < 0) {
+                insert(stripe, id, state);
+            } else {
+                stripe.states[slot] = (byte) (state.ordinal() + 1);
+            }
+        }
+    }
+
+    /**
+     * Forgets an ID, e.g. after an apply that did not go through.
+     *
+     * @param id Transaction ID.
+     */
+    public void remove(long id) {
+        Stripe stripe = stripeOf(id);
+        synchronized (stripe) {
+            int slot = stripe.find(id);
+            if (slot >= 0) {
+                stripe.delete(slot);
+            }
+        }
+    }
+
+    // Number of IDs currently remembered
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size;
+            }
+        }
+        return size;
+    }
+
+    // Number of IDs evicted for age or space since the cache was created
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Stripe stripeOf(long id) {
+        // IDs share their high bits, so mix them all into the stripe index
+        return stripes[(int) ((id * 0x9E3779B97F4A7C15L) >>> 58)];
+    }
+
+    // Evicts what has expired, then adds an absent ID; the clock is only read here
+    private void insert(Stripe stripe, long id, State state) {
+        long now = clock.getAsLong();
+        evictExpired(stripe, now);
+        if (stripe.tail - stripe.head == stripe.fifoIds.length && stripe.evictHead()) {
+            evictions.increment(); // Stripe full: the oldest entry makes room
+        }
+        stripe.insert(id, state, now);
+    }
+
+    private void evictExpired(Stripe stripe, long now) {
+        while (stripe.head < stripe.tail
+                && now - stripe.fifoCreatedMillis[(int) (stripe.head % stripe.fifoIds.length)] >= timeToLiveMillis) {
+            if (stripe.evictHead()) {
+                evictions.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * A reusable batch of imported transactions in columnar form.
+ * The importer fills the columns straight from the input bytes, so parsing creates no transaction, String
+ * or date object per record; only the apply stage turns each record into a small immutable TransactionRecord.
+ * Batches are recycled once the apply stage is done with them.
+ */
+public class ImportBatch {
+
+    private final long[] accountIds;
+    private final byte[] types;
+    private final long[] amounts;
+    private final long[] epochMillis;
+    private final long[] lineNumbers;
+    private final TransactionStatus[] statuses;
+    private int size;
+
+    ImportBatch(int capacity) {
+        accountIds = new long[capacity];
+        types = new byte[capacity];
+        amounts = new long[capacity];
+        epochMillis = new long[capacity];
+        lineNumbers = new long[capacity];
+        statuses = new TransactionStatus[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    int capacity() {
+        return accountIds.length;
+    }
+
+    boolean isFull() {
+        return size == accountIds.length;
+    }
+
+    void clear() {
+        Arrays.fill(statuses, 0, size, null);
+        size = 0;
+    }
+
+    void add(long accountId, byte type, long amount, long millis, long lineNumber) {
+        accountIds[size] = accountId;
+        types[size] = type;
+        amounts[size] = amount;
+        epochMillis[size] = millis;
+        lineNumbers[size] = lineNumber;
+        size++;
+    }
+
+    public long getAccountId(int i) {
+        return accountIds[i];
+    }
+
+    public TransactionType getType(int i) {
+        return TransactionType.fromCode(types[i]);
+    }
+
+    public long getAmount(int i) {
+        return amounts[i];
+    }
+
+    public long getEpochMillis(int i) {
+        return epochMillis[i];
+    }
+
+    public long getLineNumber(int i) {
+        return lineNumbers[i];
+    }
+
+    /**
+     * Returns the status of a record: INVALID_AMOUNT if validation rejected it, the apply outcome once
+     * applied, or null while it is still pending.
+     *
+     * @param i Index of the record in the batch.
+     * @return Status of the record.
+     */
+    public TransactionStatus getStatus(int i) {
+        return statuses[i];
+    }
+
+    void setStatus(int i, TransactionStatus status) {
+        statuses[i] = status;
+    }
+
+    /**
+     * Validation stage: rejects negative amounts, as DepositTransaction.checkDepositAmount does for deposits.
+     */
+    void validate() {
+        for (int i = 0; i < size; i++) {
+            if (!DepositTransaction.checkDepositAmount(amounts[i])) {
+                statuses[i] = TransactionStatus.INVALID_AMOUNT;
+            }
+        }
+    }
+
+    /**
+     * Apply stage: posts every record of the batch to its account, in order, through TransactionRecord.apply(),
+     * so the rules, events and metrics are those of every other apply path. Each record gets a new transaction
+     * ID. Records rejected by validate() are passed on too, so that their INVALID_AMOUNT is published and counted.
+     *
+     * @param accounts Looks up the account for an account number.
+     * @return Number of records applied.
+     */
+    public int applyTo(@NotNull LongFunction<BankAccount> accounts) {
+        TransactionIdGenerator ids = TransactionIdGenerator.getDefault();
+        int applied = 0;
+        for (int i = 0; i < size; i++) {
+            long id = ids.nextId();
+            TransactionRecord record = switch (TransactionType.fromCode(types[i])) {
+                case DEPOSIT -> new TransactionRecord.Deposit(amounts[i], epochMillis[i], id);
+                case WITHDRAWAL -> new TransactionRecord.Withdrawal(amounts[i], epochMillis[i], id);
+                case REVERSAL -> new TransactionRecord.Reversal(amounts[i], epochMillis[i], id);
+            };
+            statuses[i] = TransactionRecord.apply(record, accounts.apply(accountIds[i]));
+            if (statuses[i] == TransactionStatus.APPLIED) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,67 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Measures TransactionImporter throughput on a generated CSV file, once with an apply stage that does
+ * nothing (parse and validate only) and once applying every batch to the accounts.
+ * The file contains a malformed line every 100,000 lines to exercise the error channel.
+ *
+ * Settings (system properties):
+ *   bench.records  lines in the generated file (default 10,000,000)
+ *   bench.accounts number of accounts the records are spread over (default 100,000)
+ */
+public class ImportBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        int records = Integer.getInteger("bench.records", 10_000_000);
+        int accounts = Integer.getInteger("bench.accounts", 100_000);
+
+        Path file = Files.createTempFile("import-bench", ".csv");
+        try {
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+                out.write("# accountId,type,amount,date\n");
+                for (int i = 0; i < records; i++) {
+                    if (i % 100_000 == 99_999) {
+                        out.write("not,a,transaction\n");
+                        continue;
+                    }
+                    char type = i % 3 == 2 ? 'W' : 'D';
+                    out.write((i % accounts) + "," + type + "," + (i % 1000) + "." + (i % 90 + 10)
+                            + ",2024-0" + (i % 9 + 1) + "-" + (i % 18 + 10) + "\n");
+                }
+            }
+            System.out.printf("Input: %d lines, %.1f MB%n", records, Files.size(file) / 1e6);
+
+            long[] malformed = new long[1];
+            TransactionImporter importer = new TransactionImporter((line, text, reason) -> malformed[0]++);
+            run("parse + validate", importer, file, batch -> { });
+
+            BankAccount[] ledger = new BankAccount[accounts];
+            for (int i = 0; i < accounts; i++) {
+                ledger[i] = new BankAccount(i, 0);
+            }
+            run("parse + validate + apply", importer, file, batch -> batch.applyTo(id -> ledger[(int) id]));
+            System.out.println("Malformed lines reported: " + malformed[0]);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void run(String name, TransactionImporter importer, Path file,
+                            Consumer<ImportBatch> applyStage) throws IOException {
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            long count = importer.importFile(file, applyStage);
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%-26s round %d: %d records in %.1f ms, %.2f M records/s%n",
+                    name, round, count, nanos / 1e6, count * 1e3 / nanos);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Receives the lines a TransactionImporter could not parse. Called on the parsing thread.
+ */
+public interface ImportErrorListener {
+
+    // Listener that ignores malformed lines
+    ImportErrorListener IGNORE = (lineNumber, line, reason) -> { };
+
+    /**
+     * Handles one malformed line.
+     *
+     * @param lineNumber 1-based number of the line in the input.
+     * @param line       The line as read, without its line terminator.
+     * @param reason     Why the line was rejected.
+     */
+    void onMalformedLine(long lineNumber, String line, String reason);
+}
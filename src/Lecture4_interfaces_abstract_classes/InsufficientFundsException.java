@@ -0,0 +1,11 @@
+package Lecture4_interfaces_abstract_classes;
+
+// Exception class for handling insufficient funds during withdrawal
+public class InsufficientFundsException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public InsufficientFundsException(String message) {
+        super(message);
+    }
+}
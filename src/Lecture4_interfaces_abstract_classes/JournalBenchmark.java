@@ -0,0 +1,55 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Measures TransactionJournal append throughput with group commit, and the time to rebuild
+ * balances from the journal after a restart. Runs in a temporary directory that is deleted afterwards.
+ *
+ * Settings (system properties):
+ *   bench.records   records to append and recover (default 20,000,000)
+ *   bench.accounts  number of accounts the records are spread over (default 100,000)
+ *   bench.syncEvery records appended between sync() calls (default 1,000)
+ */
+public class JournalBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int records = Integer.getInteger("bench.records", 20_000_000);
+        int accounts = Integer.getInteger("bench.accounts", 100_000);
+        int syncEvery = Integer.getInteger("bench.syncEvery", 1_000);
+        Path directory = Files.createTempDirectory("journal-bench");
+        try {
+            long start = System.nanoTime();
+            try (TransactionJournal journal = new TransactionJournal(directory)) {
+                long epochMillis = System.currentTimeMillis();
+                long lsn = 0;
+                for (int i = 0; i < records; i++) {
+                    TransactionType type = i % 3 == 2 ? TransactionType.WITHDRAWAL : TransactionType.DEPOSIT;
+                    lsn = journal.append(i % accounts, type, 10_000, epochMillis, i);
+                    if (i % syncEvery == syncEvery - 1) {
+                        journal.sync(lsn);
+                    }
+                }
+                journal.sync(lsn);
+            }
+            long appendNanos = System.nanoTime() - start;
+            System.out.printf("Appended %d records in %.1f ms: %.0f durable appends/s%n",
+                    records, appendNanos / 1e6, records * 1e9 / appendNanos);
+
+            start = System.nanoTime();
+            Map<Long, BankAccount> recovered = TransactionJournal.recoverBalances(directory);
+            long recoverNanos = System.nanoTime() - start;
+            System.out.printf("Recovered %d accounts from %d records in %.1f ms: %.0f records/s%n",
+                    recovered.size(), records, recoverNanos / 1e6, records * 1e9 / recoverNanos);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
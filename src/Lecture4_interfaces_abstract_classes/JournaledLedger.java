@@ -0,0 +1,162 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A set of accounts whose postings are journaled, with periodic balance snapshots for fast startup.
+ *
+ * post() applies a transaction and, if it changed the balance, appends it to the TransactionJournal,
+ * both under the account's monitor so the account's balance and its last journal LSN always match.
+ * Snapshots are written in the background (see BalanceSnapshot) while posting continues.
+ * open() loads the newest snapshot and replays only the journal records written after it, so startup
+ * time depends on the records since the last snapshot rather than on the whole history.
+ */
+public class JournaledLedger implements AutoCloseable {
+
+    private final Path directory;
+    private final TransactionJournal journal;
+    private final Map<Long, BankAccount> accounts;
+    private ScheduledExecutorService snapshotter;
+
+    private JournaledLedger(Path directory, TransactionJournal journal, Map<Long, BankAccount> accounts) {
+        this.directory = directory;
+        this.journal = journal;
+        this.accounts = accounts;
+    }
+
+    /**
+     * Opens a ledger, restoring balances from the newest snapshot and the journal records after it.
+     *
+     * @param directory Directory holding the journal segments and snapshots.
+     * @return The recovered ledger.
+     * @throws IOException if the journal or a snapshot cannot be read.
+     */
+    public static JournaledLedger open(@NotNull Path directory) throws IOException {
+        BalanceSnapshot snapshot = BalanceSnapshot.loadLatest(directory);
+        Map<Long, BankAccount> accounts = new ConcurrentHashMap<>();
+        long fromLsn = 1;
+        if (snapshot != null) {
+            accounts.putAll(snapshot.getAccounts());
+            fromLsn = snapshot.getStartLsn() + 1;
+        }
+        TransactionJournal.replay(directory, fromLsn, (lsn, accountId, type, amountMinor, epochMillis, transactionId) -> {
+            BankAccount account = accounts.computeIfAbsent(accountId, id -> BankAccount.withMinorBalance(id, 0));
+            if (lsn > account.journalLsn) { // Records at or below the account's LSN are already in the snapshot
+                account.credit(type.balanceDelta(amountMinor)); // Signed delta: withdrawals are negative
+                account.journalLsn = lsn;
+            }
+        });
+        return new JournaledLedger(directory, new TransactionJournal(directory), accounts);
+    }
+
+    /**
+     * Returns an account, creating it with a zero balance if it does not exist.
+     * Opening balances should be posted as deposits so they are journaled.
+     *
+     * @param accountId Account number.
+     * @return The account.
+     */
+    public BankAccount account(long accountId) {
+        return accounts.computeIfAbsent(accountId, id -> BankAccount.withMinorBalance(id, 0));
+    }
+
+    public int getAccountCount() {
+        return accounts.size();
+    }
+
+    /**
+     * Applies a transaction to an account and journals it if it was applied.
+     * The record is not yet durable when this returns; call sync() before acknowledging it.
+     *
+     * @param accountId   Account number.
+     * @param transaction Deposit or withdrawal to apply.
+     * @return The outcome of the transaction.
+     * @throws IOException if the journal cannot be written.
+     * @throws IllegalArgumentException if the transaction is neither a deposit nor a withdrawal; nothing is applied.
+     */
+    public TransactionStatus post(long accountId, @NotNull BaseTransaction transaction) throws IOException {
+        TransactionType type = TransactionType.of(transaction); // Before applying, as only these types can be journaled
+        BankAccount account = account(accountId);
+        synchronized (account) {
+            TransactionStatus status = transaction.tryApply(account);
+            if (status == TransactionStatus.APPLIED) {
+                account.journalLsn = journal.append(accountId, type, transaction.getAmount(),
+                        transaction.getEpochMillis(), transaction.getNumericID());
+            }
+            return status;
+        }
+    }
+
+    /**
+     * Blocks until every record journaled so far is on disk.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws java.io.UncheckedIOException if the journal could not be forced to disk.
+     */
+    public void sync() throws InterruptedException {
+        journal.sync(journal.getLastLsn());
+    }
+
+    /**
+     * Writes a snapshot of all balances now. Posting continues while it is written.
+     * Every journal record the snapshot contains is synced before the snapshot is published.
+     *
+     * @return Path of the new snapshot.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public Path snapshot() throws IOException {
+        return BalanceSnapshot.write(directory, journal, accounts.values());
+    }
+
+    /**
+     * Starts writing snapshots in the background at a fixed interval.
+     *
+     * @param intervalMillis Time between snapshots.
+     */
+    public synchronized void startSnapshots(long intervalMillis) {
+        if (snapshotter != null) {
+            throw new IllegalStateException("Snapshots already started");
+        }
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "balance-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException e) {
+                // Keep the schedule running; the next snapshot may succeed
+                System.err.println("Balance snapshot failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops background snapshots and closes the journal.
+     *
+     * @throws IOException if the journal cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (snapshotter != null) {
+                snapshotter.shutdown();
+                try {
+                    snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        journal.close();
+    }
+}
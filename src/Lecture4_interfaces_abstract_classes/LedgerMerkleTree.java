@@ -0,0 +1,339 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Merkle tree over a TransactionStore, for checking that two copies of a history agree and finding
+ * where they differ without comparing them row by row.
+ *
+ * The history is partitioned into leaves by account group (a hash of the account number) and day.
+ * A leaf's hash is the sum of the 64-bit hashes of its rows, so it does not depend on the order the
+ * rows were stored in, and each inner node hashes its two children. Two trees with the same layout
+ * are compared from the root down, descending only into nodes whose hashes differ, so k divergent
+ * leaves are found in O(k log leaves) comparisons. Only the rows of those leaves are then compared.
+ *
+ * Building hashes the rows on all cores: each task sums the hashes of a slice of rows into its own
+ * leaf array, the arrays are added together, and the inner levels are hashed level by level. Rows
+ * appended to the store later are taken in by catchUp(), which rehashes only the path from each new
+ * row's leaf to the root. Rows dated before the first day or after the last fall into the first or
+ * last day of their account group.
+ * Not thread-safe: do not append to the store or call catchUp() while the tree is being read.
+ */
+public final class LedgerMerkleTree {
+
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    // Rows hashed per task while building; leaves are summed per task, so fewer, larger tasks use less memory
+    private static final int MIN_ROWS_PER_TASK = 1 << 20;
+
+    // Each build task holds a long per leaf, so the leaf count bounds the memory a build needs
+    private static final int MAX_LEAVES = 1 << 24;
+
+    private final TransactionStore store;
+    private final int accountGroupBits;
+    private final long firstDay;
+    private final int dayCount;
+    private final int leafCount; // A power of two; leaves past accountGroups * dayCount stay empty
+    private final long[] nodes; // Heap order: root at 1, children of i at 2i and 2i + 1, leaves from leafCount
+    private int indexedRows;
+
+    /**
+     * Constructor for LedgerMerkleTree. Hashes every row already in the store, in parallel.
+     * Trees can only be compared if they were built with the same account groups, first day and day count.
+     *
+     * @param store         History to hash; rows appended later are added by catchUp().
+     * @param accountGroups Number of account partitions; a power of two.
+     * @param fromMillis    Start of the first day, in epoch milliseconds.
+     * @param dayCount      Number of days partitioned; must be positive.
+     */
+    public LedgerMerkleTree(@NotNull TransactionStore store, int accountGroups, long fromMillis, int dayCount) {
+        if (accountGroups <= 0 || Integer.bitCount(accountGroups) != 1) {
+            throw new IllegalArgumentException("Account groups must be a power of two: " + accountGroups);
+        }
+        if (dayCount <= 0 || (long) accountGroups * dayCount > MAX_LEAVES) {
+            throw new IllegalArgumentException("Day count must be positive and the tree at most " + MAX_LEAVES + " leaves: " + dayCount);
+        }
+        this.store = store;
+        this.accountGroupBits = Integer.numberOfTrailingZeros(accountGroups);
+        this.firstDay = Math.floorDiv(fromMillis, DAY_MILLIS);
+        this.dayCount = dayCount;
+        this.leafCount = Integer.highestOneBit(accountGroups * dayCount - 1 | 1) << 1;
+        this.nodes = new long[2 * leafCount];
+        build();
+    }
+
+    /**
+     * Adds the rows appended to the store since the tree was built or last caught up.
+     *
+     * @return Number of rows added.
+     */
+    public int catchUp() {
+        int end = store.size();
+        int added = end - indexedRows;
+        // Rehashing one path per row is cheaper until the paths add up to more than the whole tree
+        boolean perPath = (long) added * Integer.numberOfTrailingZeros(leafCount) < leafCount;
+        for (int row = indexedRows; row < end; row++) {
+            int node = leafCount + leafOf(store.getAccountId(row), store.getEpochMillis(row));
+            nodes[node] += rowHash(row);
+            for (node >>>= 1; perPath && node > 0; node >>>= 1) {
+                nodes[node] = combine(nodes[2 * node], nodes[2 * node + 1]);
+            }
+        }
+        if (!perPath) {
+            hashInnerNodes();
+        }
+        indexedRows = end;
+        return added;
+    }
+
+    public TransactionStore getStore() {
+        return store;
+    }
+
+    // Hash of the whole history; equal roots mean, barring a 64-bit collision, equal histories
+    public long getRootHash() {
+        return nodes[1];
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * Returns the hash of one node, for comparing with a tree held elsewhere.
+     *
+     * @param node Node index: 1 for the root, 2i and 2i + 1 for the children of i.
+     * @return The node's hash; 0 for a subtree without rows.
+     */
+    public long getNodeHash(int node) {
+        return nodes[node];
+    }
+
+    // Account group of a leaf, for reporting where two histories diverge
+    public int getAccountGroup(int leaf) {
+        return leaf / dayCount;
+    }
+
+    // Start of the day of a leaf, in epoch milliseconds
+    public long getDayMillis(int leaf) {
+        return (firstDay + leaf % dayCount) * DAY_MILLIS;
+    }
+
+    /**
+     * Returns the leaf a transaction belongs to.
+     *
+     * @param accountId   Account number.
+     * @param epochMillis Transaction date in epoch milliseconds.
+     * @return Leaf index, from 0.
+     */
+    public int leafOf(long accountId, long epochMillis) {
+        int group = accountGroupBits == 0 ? 0 : (int) (mix(accountId) >>> (64 - accountGroupBits));
+        long day = Math.floorDiv(epochMillis, DAY_MILLIS) - firstDay;
+        return group * dayCount + Math.clamp(day, 0, dayCount - 1);
+    }
+
+    /**
+     * Finds the leaves whose hashes differ from another tree's, descending only into differing nodes.
+     *
+     * @param other Tree built with the same layout.
+     * @return The divergent leaves and the number of node comparisons made.
+     */
+    public Reconciliation diff(@NotNull LedgerMerkleTree other) {
+        checkSameLayout(other);
+        int[] stack = new int[64];
+        int depth = 0;
+        int[] leaves = new int[16];
+        int leafTotal = 0;
+        long comparisons = 0;
+        stack[depth++] = 1;
+        while (depth > 0) {
+            int node = stack[--depth];
+            comparisons++;
+            if (nodes[node] == other.nodes[node]) {
+                continue;
+            }
+            if (node >= leafCount) {
+                if (leafTotal == leaves.length) {
+                    leaves = Arrays.copyOf(leaves, leafTotal * 2);
+                }
+                leaves[leafTotal++] = node - leafCount;
+            } else {
+                stack[depth++] = 2 * node + 1; // Right first, so leaves come out in ascending order
+                stack[depth++] = 2 * node;
+            }
+        }
+        return new Reconciliation(comparisons, Arrays.copyOf(leaves, leafTotal), new int[0], new int[0]);
+    }
+
+    /**
+     * Finds the rows present in one history but not the other. Compares the trees, then matches the rows
+     * of the divergent leaves only, by row hash. Costs one parallel filtering pass over each store.
+     *
+     * @param other Tree built with the same layout.
+     * @return The divergent leaves and the rows found only in this history or only in the other.
+     */
+    public Reconciliation reconcile(@NotNull LedgerMerkleTree other) {
+        Reconciliation tree = diff(other);
+        int[] leaves = tree.getDivergentLeaves();
+        if (leaves.length == 0) {
+            return tree;
+        }
+        long[] mine = hashedRowsIn(leaves);
+        long[] theirs = other.hashedRowsIn(leaves);
+        int[] onlyMine = new int[mine.length / 2];
+        int[] onlyTheirs = new int[theirs.length / 2];
+        int mineCount = 0;
+        int theirsCount = 0;
+        int i = 0;
+        int j = 0;
+        // Both arrays hold (hash, row) pairs sorted by hash: a merge leaves the unmatched rows of each side
+        while (i < mine.length || j < theirs.length) {
+            if (j == theirs.length || (i < mine.length && mine[i] < theirs[j])) {
+                onlyMine[mineCount++] = (int) mine[i + 1];
+                i += 2;
+            } else if (i == mine.length || theirs[j] < mine[i]) {
+                onlyTheirs[theirsCount++] = (int) theirs[j + 1];
+                j += 2;
+            } else {
+                i += 2;
+                j += 2;
+            }
+        }
+        return new Reconciliation(tree.getComparisons(), leaves,
+                Arrays.copyOf(onlyMine, mineCount), Arrays.copyOf(onlyTheirs, theirsCount));
+    }
+
+    /**
+     * Returns the hash of one row: the account number, type, amount, date and ID all contribute.
+     *
+     * @param row Row of the store.
+     * @return 64-bit hash of the row.
+     */
+    public long rowHash(int row) {
+        long h = mix(store.getAccountId(row) + 0x632BE59BD9B4E019L);
+        h = mix(h ^ store.getAmount(row));
+        h = mix(h ^ store.getEpochMillis(row));
+        return mix(h ^ store.getId(row) ^ ((long) store.getType(row).getCode() << 56));
+    }
+
+    // Collects (hash, row) pairs of every row in the given leaves, sorted by hash
+    private long[] hashedRowsIn(int[] leaves) {
+        long[] wanted = new long[(leafCount + 63) >>> 6];
+        for (int leaf : leaves) {
+            wanted[leaf >>> 6] |= 1L << leaf;
+        }
+        int rows = indexedRows;
+        int tasks = taskCount(rows);
+        long[][] found = new long[tasks][];
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            long[] pairs = new long[16];
+            int size = 0;
+            for (int row = sliceStart(t, tasks, rows), end = sliceStart(t + 1, tasks, rows); row < end; row++) {
+                int leaf = leafOf(store.getAccountId(row), store.getEpochMillis(row));
+                if ((wanted[leaf >>> 6] & 1L << leaf) != 0) {
+                    if (size == pairs.length) {
+                        pairs = Arrays.copyOf(pairs, size * 2);
+                    }
+                    pairs[size++] = rowHash(row);
+                    pairs[size++] = row;
+                }
+            }
+            found[t] = Arrays.copyOf(pairs, size);
+        });
+        int total = 0;
+        for (long[] pairs : found) {
+            total += pairs.length / 2;
+        }
+        long[] hashes = new long[total];
+        int[] rowsOf = new int[total];
+        int k = 0;
+        for (long[] pairs : found) {
+            for (int p = 0; p < pairs.length; p += 2) {
+                hashes[k] = pairs[p];
+                rowsOf[k++] = (int) pairs[p + 1];
+            }
+        }
+        // Sort rows by hash, carrying the row along through an index permutation
+        Integer[] order = new Integer[total];
+        for (int r = 0; r < total; r++) {
+            order[r] = r;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        long[] sorted = new long[total * 2];
+        for (int r = 0; r < total; r++) {
+            sorted[2 * r] = hashes[order[r]];
+            sorted[2 * r + 1] = rowsOf[order[r]];
+        }
+        return sorted;
+    }
+
+    private void build() {
+        int rows = store.size();
+        int tasks = taskCount(rows);
+        long[][] partial = new long[tasks][];
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            long[] leaves = new long[leafCount];
+            for (int row = sliceStart(t, tasks, rows), end = sliceStart(t + 1, tasks, rows); row < end; row++) {
+                leaves[leafOf(store.getAccountId(row), store.getEpochMillis(row))] += rowHash(row);
+            }
+            partial[t] = leaves;
+        });
+        int mergeTasks = taskCount(leafCount);
+        IntStream.range(0, mergeTasks).parallel().forEach(t -> {
+            for (int leaf = sliceStart(t, mergeTasks, leafCount), end = sliceStart(t + 1, mergeTasks, leafCount); leaf < end; leaf++) {
+                long sum = 0;
+                for (long[] leaves : partial) {
+                    sum += leaves[leaf];
+                }
+                nodes[leafCount + leaf] = sum;
+            }
+        });
+        hashInnerNodes();
+        indexedRows = rows;
+    }
+
+    // Recomputes every inner node from the leaves, one level at a time, each level in parallel
+    private void hashInnerNodes() {
+        for (int level = leafCount / 2; level >= 1; level /= 2) {
+            int first = level;
+            int levelTasks = taskCount(level);
+            IntStream.range(0, levelTasks).parallel().forEach(t -> {
+                for (int node = first + sliceStart(t, levelTasks, first), end = first + sliceStart(t + 1, levelTasks, first); node < end; node++) {
+                    nodes[node] = combine(nodes[2 * node], nodes[2 * node + 1]);
+                }
+            });
+        }
+    }
+
+    private void checkSameLayout(LedgerMerkleTree other) {
+        if (accountGroupBits != other.accountGroupBits || firstDay != other.firstDay || dayCount != other.dayCount) {
+            throw new IllegalArgumentException("Trees have different account groups or days and cannot be compared");
+        }
+    }
+
+    // Number of parallel tasks for n items: one per core, but none smaller than MIN_ROWS_PER_TASK
+    private static int taskCount(int n) {
+        return Math.clamp(n / MIN_ROWS_PER_TASK, 1, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static int sliceStart(int task, int tasks, int n) {
+        return (int) ((long) n * task / tasks);
+    }
+
+    // Hash of an inner node; two empty children give an empty (0) parent
+    private static long combine(long left, long right) {
+        return mix(left * 0x9E3779B97F4A7C15L + Long.rotateLeft(right, 29));
+    }
+
+    // Finalizer of MurmurHash3: every input bit affects every output bit
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xFF51AFD7ED558CCDL;
+        x ^= x >>> 33;
+        x *= 0xC4CEB9FE1A85EC53L;
+        return x ^ (x >>> 33);
+    }
+}
@@ -0,0 +1,77 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport that runs every shard in this process, each on its own thread, standing in for a
+ * network transport on one machine. Requests and responses are passed in their encoded binary form,
+ * as they would be on the wire, so anything that works over the loopback also survives serialisation.
+ */
+public class LoopbackTransport implements ShardTransport {
+
+    private final ShardNode[] nodes;
+    private final ExecutorService[] executors;
+
+    /**
+     * Constructor for LoopbackTransport. Starts one thread per shard.
+     *
+     * @param shardCount Number of shards, must be positive.
+     */
+    public LoopbackTransport(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        nodes = new ShardNode[shardCount];
+        executors = new ExecutorService[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            nodes[i] = new ShardNode(i);
+            executors[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "shard-" + shard);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @Override
+    public int getShardCount() {
+        return nodes.length;
+    }
+
+    // The node behind a shard, for inspection; its accounts must only be read once the transport is closed
+    public ShardNode getNode(int shard) {
+        return nodes[shard];
+    }
+
+    @Override
+    public CompletableFuture<ShardResponse> send(int shard, ShardRequest request) {
+        ByteBuffer message = ByteBuffer.allocate(ShardRequest.ENCODED_BYTES);
+        request.encode(message);
+        message.flip();
+        ShardNode node = nodes[shard];
+        return CompletableFuture.supplyAsync(() -> {
+            ByteBuffer reply = ByteBuffer.allocate(ShardResponse.ENCODED_BYTES);
+            node.handle(ShardRequest.decode(message)).encode(reply);
+            return reply.flip();
+        }, executors[shard]).thenApply(ShardResponse::decode);
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+        try {
+            for (ExecutorService executor : executors) {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
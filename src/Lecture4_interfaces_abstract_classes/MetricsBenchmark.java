@@ -0,0 +1,61 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Measures the cost of TransactionMetrics on the apply and reverse paths: each operation is run
+ * with metrics off, on with the default sampling, and on timing every operation. B/op should stay at 0.
+ * Then records one pass of every operation with every op timed, prints those metrics and writes them as
+ * JSON to the path in bench.metricsFile, if set. The pass runs on its own, since Bench measures each
+ * benchmark in a JVM of its own.
+ */
+public class MetricsBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        Instant date = Instant.parse("2024-01-03T00:00:00Z");
+        BankAccount account = new BankAccount(0);
+        DepositTransaction deposit = new DepositTransaction(100, date);
+        WithdrawalTransaction withdrawal = new WithdrawalTransaction(100, date);
+        WithdrawalTransaction overdraft = new WithdrawalTransaction(Integer.MAX_VALUE, date);
+
+        Bench.printHeader();
+        String[] modes = {" (metrics off)", " (metrics on)", " (metrics on, every op timed)"};
+        for (int mode = 0; mode < modes.length; mode++) {
+            if (mode == 0) {
+                TransactionMetrics.disable();
+            } else if (mode == 1) {
+                TransactionMetrics.enable();
+            } else {
+                TransactionMetrics.enable(1);
+            }
+            String suffix = modes[mode];
+            Bench.run("DepositTransaction.tryApply" + suffix, i -> deposit.tryApply(account).ordinal());
+            Bench.run("WithdrawalTransaction.tryApply" + suffix, i -> withdrawal.tryApply(account).ordinal());
+            Bench.run("WithdrawalTransaction.tryApply insufficient" + suffix, i -> overdraft.tryApply(account).ordinal());
+            Bench.run("WithdrawalTransaction.reverse" + suffix, i -> withdrawal.reverse(account) ? 1 : 0);
+        }
+
+        TransactionMetrics metrics = TransactionMetrics.enable(1);
+        for (int i = 0; i < Bench.defaultOps(); i++) {
+            deposit.tryApply(account);
+            withdrawal.tryApply(account);
+            overdraft.tryApply(account);
+            withdrawal.reverse(account);
+        }
+        TransactionMetrics.disable();
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        System.out.println();
+        System.out.print(snapshot.toText());
+        String file = System.getProperty("bench.metricsFile");
+        if (file != null) {
+            snapshot.writeTo(Path.of(file));
+            System.out.println("Wrote " + Files.size(Path.of(file)) + " bytes to " + file);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Point-in-time copy of TransactionMetrics, exportable as plain text or JSON.
+ */
+public class MetricsSnapshot {
+
+    /**
+     * Summary of one latency histogram, in nanoseconds.
+     */
+    public static class Latency {
+
+        private final long count;
+        private final long p50Nanos;
+        private final long p90Nanos;
+        private final long p99Nanos;
+        private final long p999Nanos;
+        private final long maxNanos;
+
+        Latency(long count, long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+            this.count = count;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.p999Nanos = p999Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        static Latency of(StripedLatencyHistogram histogram) {
+            return new Latency(histogram.getCount(), histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(99),
+                    histogram.getValueAtPercentile(99.9), histogram.getMax());
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP90Nanos() {
+            return p90Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getP999Nanos() {
+            return p999Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        private String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"count\": %d, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"p999\": %d, \"max\": %d}",
+                    count, p50Nanos, p90Nanos, p99Nanos, p999Nanos, maxNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "count %d, p50 %d ns, p90 %d ns, p99 %d ns, p99.9 %d ns, max %d ns",
+                    count, p50Nanos, p90Nanos, p99Nanos, p999Nanos, maxNanos);
+        }
+    }
+
+    private final long epochMillis;
+    private final long[][] counts; // [type code][outcome ordinal]
+    private final Latency apply;
+    private final Latency reverse;
+
+    MetricsSnapshot(long epochMillis, long[][] counts, Latency apply, Latency reverse) {
+        this.epochMillis = epochMillis;
+        this.counts = counts;
+        this.apply = apply;
+        this.reverse = reverse;
+    }
+
+    // Time the snapshot was taken, in epoch milliseconds
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public long getCount(@NotNull TransactionType type, @NotNull TransactionMetrics.Outcome outcome) {
+        return counts[type.getCode()][outcome.ordinal()];
+    }
+
+    public Latency getApplyLatency() {
+        return apply;
+    }
+
+    public Latency getReverseLatency() {
+        return reverse;
+    }
+
+    /**
+     * Formats the snapshot as a JSON object, with counters keyed by type and outcome in lower case.
+     *
+     * @return The snapshot as JSON.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\n  \"timestamp\": ").append(epochMillis).append(",\n  \"counters\": {");
+        TransactionType[] types = TransactionType.values();
+        TransactionMetrics.Outcome[] outcomes = TransactionMetrics.Outcome.values();
+        for (TransactionType type : types) {
+            json.append(type.getCode() == 0 ? "\n" : ",\n")
+                    .append("    \"").append(type.name().toLowerCase(Locale.ROOT)).append("\": {");
+            for (TransactionMetrics.Outcome outcome : outcomes) {
+                json.append(outcome.ordinal() == 0 ? "" : ", ")
+                        .append('"').append(outcome.name().toLowerCase(Locale.ROOT)).append("\": ")
+                        .append(counts[type.getCode()][outcome.ordinal()]);
+            }
+            json.append('}');
+        }
+        json.append("\n  },\n  \"latencyNanos\": {\n    \"apply\": ").append(apply.toJson())
+                .append(",\n    \"reverse\": ").append(reverse.toJson()).append("\n  }\n}\n");
+        return json.toString();
+    }
+
+    /**
+     * Formats the snapshot as one line per counter and histogram, e.g. "deposit.applied 1042".
+     *
+     * @return The snapshot as text.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder(512);
+        for (TransactionType type : TransactionType.values()) {
+            for (TransactionMetrics.Outcome outcome : TransactionMetrics.Outcome.values()) {
+                text.append(type.name().toLowerCase(Locale.ROOT)).append('.')
+                        .append(outcome.name().toLowerCase(Locale.ROOT)).append(' ')
+                        .append(counts[type.getCode()][outcome.ordinal()]).append('\n');
+            }
+        }
+        text.append("latency.apply ").append(apply).append('\n');
+        text.append("latency.reverse ").append(reverse).append('\n');
+        return text.toString();
+    }
+
+    /**
+     * Writes the snapshot to a file as JSON, or as text if the file name does not end in ".json".
+     * The file is written under a temporary name and renamed, so readers never see a partial file.
+     *
+     * @param file File to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeTo(@NotNull Path file) throws IOException {
+        String content = file.getFileName().toString().endsWith(".json") ? toJson() : toText();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
@@ -0,0 +1,116 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Exact fixed-point money arithmetic on primitive longs.
+ * An amount is a long count of minor units (cents), so sums are exact and nothing is allocated.
+ * Every operation that could overflow throws ArithmeticException instead of wrapping around.
+ */
+public final class Money {
+
+    // Number of decimal places of the ledger currency
+    public static final int SCALE = 2;
+
+    // Number of minor units in one major unit (10^SCALE)
+    public static final long MINOR_PER_MAJOR = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Converts a whole-unit amount to minor units.
+     *
+     * @param major Amount in major units.
+     * @return The amount in minor units.
+     * @throws ArithmeticException if the result does not fit in a long.
+     */
+    public static long ofMajor(long major) {
+        return Math.multiplyExact(major, MINOR_PER_MAJOR);
+    }
+
+    /**
+     * Converts a decimal amount to minor units, rounding half up (away from zero) to the nearest minor unit.
+     * The amount is rounded as the decimal it prints as, so 1.005 becomes 1.01 although the double is
+     * slightly below it. Only for inputs that arrive as doubles; ledger arithmetic never goes through double.
+     *
+     * @param amount Amount in major units.
+     * @return The amount in minor units.
+     * @throws ArithmeticException if the amount is not finite or the result does not fit in a long.
+     */
+    public static long fromDouble(double amount) {
+        double scaled = amount * MINOR_PER_MAJOR;
+        if (scaled == Math.rint(scaled) && Math.abs(scaled) < 0x1p53) {
+            return (long) scaled; // Already a whole number of minor units: nothing to round, nothing allocated
+        }
+        if (!Double.isFinite(amount)) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+        try {
+            return BigDecimal.valueOf(amount).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Amount out of range: " + amount);
+        }
+    }
+
+    /**
+     * Converts minor units to a double, for display or legacy APIs only.
+     *
+     * @param minor Amount in minor units.
+     * @return The amount in major units as a double.
+     */
+    public static double toDouble(long minor) {
+        return (double) minor / MINOR_PER_MAJOR;
+    }
+
+    /**
+     * Checks a transaction amount. Every kind of transaction takes a non-negative amount; the kind
+     * decides the direction, so a negative withdrawal can never turn into a credit.
+     *
+     * @param amountMinor Amount in minor units.
+     * @return true if the amount is valid (non-negative), false otherwise.
+     */
+    public static boolean isValidAmount(long amountMinor) {
+        return amountMinor >= 0;
+    }
+
+    /**
+     * Adds two amounts.
+     *
+     * @throws ArithmeticException on overflow.
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Subtracts one amount from another.
+     *
+     * @throws ArithmeticException on overflow.
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Formats an amount with SCALE decimal places, e.g. 70050 as "700.50".
+     *
+     * @param minor Amount in minor units.
+     * @return The formatted amount.
+     */
+    public static String format(long minor) {
+        long major = minor / MINOR_PER_MAJOR;
+        long fraction = Math.abs(minor % MINOR_PER_MAJOR);
+        StringBuilder sb = new StringBuilder(24);
+        if (minor < 0 && major == 0) {
+            sb.append('-');
+        }
+        sb.append(major).append('.');
+        String digits = Long.toString(fraction);
+        for (int i = digits.length(); i < SCALE; i++) {
+            sb.append('0');
+        }
+        return sb.append(digits).toString();
+    }
+}
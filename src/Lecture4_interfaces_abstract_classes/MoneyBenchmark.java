@@ -0,0 +1,59 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+
+/**
+ * Compares summing postings with Money (long minor units), double and BigDecimal,
+ * and checks how far each result ends up from the exact total.
+ *
+ * Settings (system properties):
+ *   bench.postings  number of random postings in the exactness check (default 100,000,000)
+ */
+public class MoneyBenchmark {
+
+    public static void main(String[] args) {
+        int postings = Integer.getInteger("bench.postings", 100_000_000);
+        SplittableRandom random = new SplittableRandom(42);
+
+        // Exactness: credit and debit random amounts of up to 10,000.00 and compare the totals
+        long exact = 0;
+        double asDouble = 0;
+        BigDecimal reference = BigDecimal.ZERO;
+        for (int i = 0; i < postings; i++) {
+            long minor = random.nextLong(-1_000_000, 1_000_001);
+            exact = Money.add(exact, minor);
+            asDouble += Money.toDouble(minor);
+            reference = reference.add(BigDecimal.valueOf(minor, Money.SCALE));
+        }
+        System.out.println(postings + " postings");
+        System.out.println("  Money total:      " + Money.format(exact)
+                + (reference.compareTo(BigDecimal.valueOf(exact, Money.SCALE)) == 0 ? " (exact)" : " (MISMATCH)"));
+        System.out.println("  double total:     " + asDouble
+                + " (off by " + BigDecimal.valueOf(asDouble).subtract(reference).abs() + ")");
+        System.out.println("  BigDecimal total: " + reference);
+
+        // Throughput of one posting in each representation
+        long[] amounts = new long[1 << 16];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = random.nextLong(-1_000_000, 1_000_001);
+        }
+        int mask = amounts.length - 1;
+        long[] moneyTotal = {0};
+        double[] doubleTotal = {0};
+        BigDecimal[] bigTotal = {BigDecimal.ZERO};
+
+        Bench.printHeader();
+        Bench.run("Money.add (long minor units)", i -> moneyTotal[0] = Money.add(moneyTotal[0], amounts[i & mask]));
+        Bench.run("double +=", i -> {
+            doubleTotal[0] += Money.toDouble(amounts[i & mask]);
+            return (long) doubleTotal[0];
+        });
+        Bench.run("BigDecimal.add", i -> {
+            bigTotal[0] = bigTotal[0].add(BigDecimal.valueOf(amounts[i & mask], Money.SCALE));
+            return bigTotal[0].signum();
+        });
+    }
+}
@@ -0,0 +1,127 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Mutable, reusable carrier for one transaction, for ingestion paths that must not allocate.
+ * A TransactionRing preallocates these and refills them in place; BaseTransaction and its subclasses
+ * remain the immutable API for everything else.
+ *
+ * A carrier is overwritten as soon as its slot is reused, so it is never published to the
+ * TransactionEventSink (which reads transactions later, on another thread). Outcomes are recorded
+ * in TransactionMetrics and kept in the carrier until it is reset.
+ */
+public class MutableTransaction implements TransactionInterface {
+
+    private long accountId;
+    private TransactionType type;
+    private long amount; // In minor units, see Money.
+    private long epochMillis;
+    private long transactionID;
+    private TransactionStatus status;
+
+    /**
+     * Fills the carrier with a new transaction, replacing whatever it held.
+     *
+     * @param accountId   Account to post to.
+     * @param type        Kind of transaction.
+     * @param amountMinor Amount in minor units.
+     * @param epochMillis Transaction date in epoch milliseconds.
+     * @param id          Transaction ID, e.g. from TransactionIdGenerator.nextId().
+     * @return This carrier.
+     */
+    public MutableTransaction set(long accountId, TransactionType type, long amountMinor, long epochMillis, long id) {
+        this.accountId = accountId;
+        this.type = type;
+        this.amount = amountMinor;
+        this.epochMillis = epochMillis;
+        this.transactionID = id;
+        this.status = null;
+        return this;
+    }
+
+    // Clears the carrier so it holds no transaction
+    public void reset() {
+        set(0, null, 0, 0, 0);
+    }
+
+    /**
+     * Applies the transaction to an account, with the rules every apply path shares: an amount that
+     * fails Money.isValidAmount (a negative one, of any type) is rejected with INVALID_AMOUNT, a
+     * withdrawal needs sufficient funds, and deposits and reversals credit the amount. Metrics are
+     * recorded as for the transaction classes, but no event is published (see the class comment).
+     *
+     * @param ba Account to apply the transaction to.
+     * @return The outcome, also available from getStatus().
+     * @throws IllegalStateException if the carrier holds no transaction (never set, or reset).
+     */
+    public TransactionStatus applyTo(BankAccount ba) {
+        if (type == null) {
+            throw new IllegalStateException("Carrier holds no transaction; set() it before applying");
+        }
+        TransactionMetrics metrics = TransactionMetrics.get();
+        long start = metrics.startTimer();
+        if (!Money.isValidAmount(amount)) {
+            status = TransactionStatus.INVALID_AMOUNT;
+        } else if (type == TransactionType.WITHDRAWAL) {
+            status = ba.tryDebit(amount) < 0 ? TransactionStatus.INSUFFICIENT_FUNDS : TransactionStatus.APPLIED;
+        } else {
+            ba.credit(amount);
+            status = TransactionStatus.APPLIED;
+        }
+        metrics.recordApply(type, status, start);
+        return status;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    // Outcome of the last applyTo(), or null if the transaction has not been applied
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    @Override
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Returns the transaction date as a new Calendar in the JVM default time zone; zone-lossy, so prefer the
+     * canonical getEpochMillis() or getInstant(), especially on the ingestion path.
+     *
+     * @return A new Calendar set to the transaction date.
+     */
+    @Override
+    public Calendar getDate() {
+        Calendar calendar = new GregorianCalendar();
+        calendar.setTimeInMillis(epochMillis);
+        return calendar;
+    }
+
+    @Override
+    public Instant getInstant() {
+        return Instant.ofEpochMilli(epochMillis);
+    }
+
+    @Override
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public long getNumericID() {
+        return transactionID;
+    }
+
+    @Override
+    public String getTransactionID() {
+        return TransactionIdGenerator.encode(transactionID);
+    }
+}
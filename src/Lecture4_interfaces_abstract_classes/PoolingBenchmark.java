@@ -0,0 +1,126 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Compares ingestion with a new immutable transaction object per record against ingestion through
+ * a TransactionRing of reusable carriers.
+ * First reports allocation per operation on one thread, where escape analysis may remove the
+ * allocation altogether. Then runs each path under sustained load, with records handed from a
+ * producer thread to a consumer thread so the objects do escape, and reports throughput, collector
+ * activity, and the producer's per-record latency, where collector pauses show up as the tail.
+ *
+ * Settings (system properties):
+ *   bench.records  records per sustained run (default 20,000,000)
+ *   bench.accounts number of accounts (default 10,000)
+ */
+public class PoolingBenchmark {
+
+    private static final int QUEUE_CAPACITY = 4096;
+
+    public static void main(String[] args) throws InterruptedException {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        int records = Integer.getInteger("bench.records", 20_000_000);
+        int accounts = Integer.getInteger("bench.accounts", 10_000);
+        BankAccount[] ledger = new BankAccount[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ledger[i] = new BankAccount(i, 1_000_000);
+        }
+        long epochMillis = Instant.parse("2024-01-03T00:00:00Z").toEpochMilli();
+
+        Bench.printHeader();
+        Bench.run("new DepositTransaction + tryApply", i ->
+                new DepositTransaction(Instant.ofEpochMilli(epochMillis), i & 1023).tryApply(ledger[i % accounts]).ordinal());
+        MutableTransaction carrier = new MutableTransaction();
+        TransactionIdGenerator ids = TransactionIdGenerator.getDefault();
+        Bench.run("MutableTransaction.set + applyTo", i ->
+                carrier.set(i % accounts, TransactionType.DEPOSIT, i & 1023, epochMillis, ids.nextId())
+                        .applyTo(ledger[i % accounts]).ordinal());
+        System.out.println();
+
+        for (int round = 0; round < 2; round++) {
+            runAllocating(records, ledger, epochMillis);
+            runRing(records, ledger, epochMillis);
+        }
+    }
+
+    // One new DepositTransaction or WithdrawalTransaction per record, handed over through a queue
+    private static void runAllocating(int records, BankAccount[] ledger, long epochMillis) throws InterruptedException {
+        BlockingQueue<BaseTransaction> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BaseTransaction stop = new DepositTransaction(Instant.EPOCH, 0);
+        Thread consumer = new Thread(() -> {
+            try {
+                int n = 0;
+                for (BaseTransaction t = queue.take(); t != stop; t = queue.take()) {
+                    t.tryApply(ledger[n++ % ledger.length]); // Same account sequence as the producer's i
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        LatencyHistogram latency = new LatencyHistogram();
+        GcCounts before = GcCounts.now();
+        long start = System.nanoTime();
+        for (int i = 0; i < records; i++) {
+            long t0 = System.nanoTime();
+            Instant date = Instant.ofEpochMilli(epochMillis + i);
+            BaseTransaction t = i % 3 == 2 ? new WithdrawalTransaction(date, 100) : new DepositTransaction(date, 100);
+            queue.put(t);
+            latency.record(System.nanoTime() - t0);
+        }
+        queue.put(stop);
+        consumer.join();
+        report("allocating objects", records, System.nanoTime() - start, before, latency);
+    }
+
+    // Reusable carriers in a preallocated ring
+    private static void runRing(int records, BankAccount[] ledger, long epochMillis) {
+        LatencyHistogram latency = new LatencyHistogram();
+        GcCounts before = GcCounts.now();
+        long start = System.nanoTime();
+        try (TransactionRing ring = new TransactionRing(QUEUE_CAPACITY, TransactionRing.applyingTo(id -> ledger[(int) id]))) {
+            for (int i = 0; i < records; i++) {
+                long t0 = System.nanoTime();
+                TransactionType type = i % 3 == 2 ? TransactionType.WITHDRAWAL : TransactionType.DEPOSIT;
+                ring.publish(i % ledger.length, type, 100, epochMillis + i);
+                latency.record(System.nanoTime() - t0);
+            }
+        }
+        report("TransactionRing carriers", records, System.nanoTime() - start, before, latency);
+    }
+
+    private static void report(String name, int records, long nanos, GcCounts before, LatencyHistogram latency) {
+        GcCounts after = GcCounts.now();
+        System.out.printf("%-26s %.2f M records/s, %d GCs, %d ms in GC, per-record p99 %d ns, p99.99 %d ns, max %.2f ms%n",
+                name, records * 1e3 / nanos, after.collections - before.collections, after.millis - before.millis,
+                latency.getValueAtPercentile(99), latency.getValueAtPercentile(99.99), latency.getMax() / 1e6);
+    }
+
+    // Collections and collection time summed over all collectors
+    private static final class GcCounts {
+        final long collections;
+        final long millis;
+
+        private GcCounts(long collections, long millis) {
+            this.collections = collections;
+            this.millis = millis;
+        }
+
+        static GcCounts now() {
+            long collections = 0;
+            long millis = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collections += Math.max(gc.getCollectionCount(), 0);
+                millis += Math.max(gc.getCollectionTime(), 0);
+            }
+            return new GcCounts(collections, millis);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Result of comparing two LedgerMerkleTrees: the leaves whose hashes differ, how many node
+ * comparisons it took to find them, and, after reconcile(), the rows found on one side only.
+ * A row changed between the two histories shows up once on each side.
+ */
+public class Reconciliation {
+
+    private final long comparisons;
+    private final int[] divergentLeaves;
+    private final int[] onlyInThis;
+    private final int[] onlyInOther;
+
+    Reconciliation(long comparisons, int[] divergentLeaves, int[] onlyInThis, int[] onlyInOther) {
+        this.comparisons = comparisons;
+        this.divergentLeaves = divergentLeaves;
+        this.onlyInThis = onlyInThis;
+        this.onlyInOther = onlyInOther;
+    }
+
+    // true if the two histories hold the same rows
+    public boolean isInSync() {
+        return divergentLeaves.length == 0;
+    }
+
+    // Number of node hashes compared between the two trees
+    public long getComparisons() {
+        return comparisons;
+    }
+
+    // Leaves whose hashes differ, in ascending order; see LedgerMerkleTree.getAccountGroup() and getDayMillis()
+    public int[] getDivergentLeaves() {
+        return divergentLeaves.clone();
+    }
+
+    // Rows of the tree reconcile() was called on that the other history lacks
+    public int[] getOnlyInThis() {
+        return onlyInThis.clone();
+    }
+
+    // Rows of the other history that the tree reconcile() was called on lacks
+    public int[] getOnlyInOther() {
+        return onlyInOther.clone();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d divergent leaves found in %d comparisons; %d rows only here, %d only in the other history",
+                divergentLeaves.length, comparisons, onlyInThis.length, onlyInOther.length);
+    }
+}
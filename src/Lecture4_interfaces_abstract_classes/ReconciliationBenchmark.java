@@ -0,0 +1,118 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Reconciles two copies of a large history that differ by a handful of rows, with LedgerMerkleTree:
+ * the time to hash each side, to find the divergent leaves, to drill down to the differing rows, and
+ * to take in appended rows incrementally. For reference, also times a row-by-row comparison of the two
+ * stores, which only works at all when both sides hold their rows in the same order.
+ * Two 100M-row stores take about 7 GB of heap (-Xmx8g); pass a smaller bench.records on smaller machines.
+ *
+ * Settings (system properties):
+ *   bench.records      rows in each history (default 100,000,000)
+ *   bench.accounts     number of accounts (default 1,000,000)
+ *   bench.differences  rows changed, dropped or added on the replica (default 6)
+ */
+public class ReconciliationBenchmark {
+
+    private static final int DAYS = 366;
+    private static final int ACCOUNT_GROUPS = 1024;
+
+    public static void main(String[] args) {
+        int records = Integer.getInteger("bench.records", 100_000_000);
+        int accounts = Integer.getInteger("bench.accounts", 1_000_000);
+        int differences = Integer.getInteger("bench.differences", 6);
+        long from = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+        long span = DAYS * 86_400_000L;
+
+        // The replica changes the amount of some rows, drops others and has a few extra ones
+        int[] touched = new SplittableRandom(5).ints(differences, 0, records).sorted().toArray();
+        TransactionStore primary = new TransactionStore(records);
+        TransactionStore replica = new TransactionStore(records);
+        SplittableRandom random = new SplittableRandom(1);
+        int changed = 0;
+        int dropped = 0;
+        for (int i = 0; i < records; i++) {
+            long accountId = random.nextInt(accounts);
+            TransactionType type = i % 3 == 2 ? TransactionType.WITHDRAWAL : TransactionType.DEPOSIT;
+            long amount = random.nextLong(1, 100_000);
+            long date = from + span * i / records;
+            primary.add(accountId, type, amount, date, i);
+            int difference = Arrays.binarySearch(touched, i);
+            if (difference < 0) {
+                replica.add(accountId, type, amount, date, i);
+            } else if (difference % 3 == 0) {
+                replica.add(accountId, type, amount + 1, date, i);
+                changed++;
+            } else if (difference % 3 == 1) {
+                dropped++;
+            } else {
+                replica.add(accountId, type, amount, date, i);
+                replica.add(accountId, type, amount, date, records + i); // Extra row on the replica
+            }
+        }
+        int added = replica.size() - records + dropped;
+        System.out.printf("%,d rows per side; replica has %d changed, %d dropped and %d extra rows; %d cores%n%n",
+                records, changed, dropped, added, Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        LedgerMerkleTree primaryTree = new LedgerMerkleTree(primary, ACCOUNT_GROUPS, from, DAYS);
+        long buildNanos = System.nanoTime() - start;
+        System.out.printf("Build tree:           %10.1f ms (%.0f M rows/s, %,d leaves)%n",
+                buildNanos / 1e6, records * 1e3 / buildNanos, primaryTree.getLeafCount());
+        LedgerMerkleTree replicaTree = new LedgerMerkleTree(replica, ACCOUNT_GROUPS, from, DAYS);
+
+        start = System.nanoTime();
+        Reconciliation leaves = primaryTree.diff(replicaTree);
+        long diffNanos = System.nanoTime() - start;
+        System.out.printf("Find divergent leaves:%10.3f ms (%d leaves, %d node comparisons)%n",
+                diffNanos / 1e6, leaves.getDivergentLeaves().length, leaves.getComparisons());
+
+        start = System.nanoTime();
+        Reconciliation rows = primaryTree.reconcile(replicaTree);
+        long reconcileNanos = System.nanoTime() - start;
+        System.out.printf("Reconcile to rows:    %10.1f ms (%s)%n", reconcileNanos / 1e6, rows);
+        if (rows.getOnlyInThis().length != changed + dropped || rows.getOnlyInOther().length != changed + added) {
+            throw new AssertionError("Reconciliation missed injected differences: " + rows);
+        }
+        for (int row : rows.getOnlyInThis()) {
+            System.out.printf("    only in primary: account %d, %s %s, id %d%n", primary.getAccountId(row),
+                    primary.getType(row), Money.format(primary.getAmount(row)), primary.getId(row));
+        }
+        for (int row : rows.getOnlyInOther()) {
+            System.out.printf("    only in replica: account %d, %s %s, id %d%n", replica.getAccountId(row),
+                    replica.getType(row), Money.format(replica.getAmount(row)), replica.getId(row));
+        }
+
+        start = System.nanoTime();
+        int mismatches = 0;
+        for (int row = 0; row < Math.min(primary.size(), replica.size()); row++) {
+            if (primary.getId(row) != replica.getId(row) || primary.getAmount(row) != replica.getAmount(row)
+                    || primary.getEpochMillis(row) != replica.getEpochMillis(row)
+                    || primary.getAccountId(row) != replica.getAccountId(row)) {
+                mismatches++;
+            }
+        }
+        long scanNanos = System.nanoTime() - start;
+        System.out.printf("Row-by-row compare:   %10.1f ms (%,d positions differ once rows shift)%n",
+                scanNanos / 1e6, mismatches);
+
+        // Incremental: the replica catches up on the rows the primary appends next
+        int appended = 100_000;
+        for (int i = 0; i < appended; i++) {
+            long date = from + span - 1;
+            primary.add(i % accounts, TransactionType.DEPOSIT, 100, date, 2L * records + i);
+            replica.add(i % accounts, TransactionType.DEPOSIT, 100, date, 2L * records + i);
+        }
+        start = System.nanoTime();
+        primaryTree.catchUp();
+        long catchUpNanos = System.nanoTime() - start;
+        replicaTree.catchUp();
+        System.out.printf("Catch up:             %10.1f ms (%d rows, %.0f ns/row); still %d divergent leaves%n",
+                catchUpNanos / 1e6, appended, (double) catchUpNanos / appended,
+                primaryTree.diff(replicaTree).getDivergentLeaves().length);
+    }
+}
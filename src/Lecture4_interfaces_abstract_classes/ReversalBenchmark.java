@@ -0,0 +1,86 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the ReversalEngine: the cost of rejecting a duplicate as the number of remembered IDs
+ * grows, and throughput when several threads retry the same transactions at once.
+ *
+ * Settings (system properties):
+ *   bench.transactions transactions in the retry run (default 1,000,000)
+ *   bench.retries      times each thread submits every transaction (default 3)
+ */
+public class ReversalBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        Instant date = Instant.parse("2024-01-03T00:00:00Z");
+
+        // Duplicate rejection with 10^3 to 10^6 IDs remembered; the cost should not grow
+        Bench.printHeader();
+        for (int history = 1_000; history <= 1_000_000; history *= 10) {
+            ReversalEngine engine = new ReversalEngine(new IdempotencyCache(history, 3_600_000));
+            BankAccount account = new BankAccount(0);
+            DepositTransaction[] seen = new DepositTransaction[history];
+            for (int i = 0; i < history; i++) {
+                seen[i] = new DepositTransaction(date, 100);
+                engine.apply(account, seen[i]);
+            }
+            Bench.run("duplicate apply rejected, " + history + " IDs",
+                    i -> engine.apply(account, seen[i % seen.length]).ordinal());
+            Bench.run("duplicate reverse rejected, " + history + " IDs", i -> {
+                DepositTransaction t = seen[i % seen.length];
+                engine.reverse(account, t);
+                return engine.reverse(account, t).ordinal();
+            });
+        }
+        System.out.println();
+
+        // Concurrent retries: every thread submits every transaction, then reverses every one
+        int transactions = Integer.getInteger("bench.transactions", 1_000_000);
+        int retries = Integer.getInteger("bench.retries", 3);
+        List<BaseTransaction> batch = new ArrayList<>(transactions);
+        for (int i = 0; i < transactions; i++) {
+            batch.add(i % 2 == 0 ? new DepositTransaction(date, 100) : new WithdrawalTransaction(date, 50));
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(4, cores); threads *= 2) {
+            ReversalEngine engine = new ReversalEngine(new IdempotencyCache(transactions * 2, 3_600_000));
+            BankAccount account = new BankAccount(0);
+            AtomicLong applied = new AtomicLong();
+            AtomicLong reversed = new AtomicLong();
+            CountDownLatch done = new CountDownLatch(threads);
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                Thread.ofPlatform().start(() -> {
+                    long a = 0;
+                    long r = 0;
+                    for (int round = 0; round < retries; round++) {
+                        for (BaseTransaction tx : batch) {
+                            a += engine.apply(account, tx) == TransactionStatus.APPLIED ? 1 : 0;
+                        }
+                    }
+                    for (int round = 0; round < retries; round++) {
+                        for (BaseTransaction tx : batch) {
+                            r += engine.reverse(account, tx) == TransactionStatus.APPLIED ? 1 : 0;
+                        }
+                    }
+                    applied.addAndGet(a);
+                    reversed.addAndGet(r);
+                    done.countDown();
+                });
+            }
+            done.await();
+            long nanos = System.nanoTime() - start;
+            long calls = 2L * threads * retries * transactions;
+            System.out.printf("%d thread(s): %.2f M calls/s, %d applied, %d reversed, final balance %s%n",
+                    threads, calls * 1e3 / nanos, applied.get(), reversed.get(), Money.format(account.getBalanceMinor()));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Applies and reverses transactions at most once each, by transaction ID.
+ * Every ID moves through the states of an IdempotencyCache: an apply is only attempted for an ID
+ * the cache does not know, and a reversal only for an ID that was applied and not yet reversed.
+ * Retries of either, including retries racing on several threads, get DUPLICATE instead of
+ * changing the balance a second time.
+ *
+ * A withdrawal is reversed by crediting the amount back; a deposit is compensated by debiting it,
+ * which fails with INSUFFICIENT_FUNDS if the money has already been spent.
+ */
+public class ReversalEngine {
+
+    private final IdempotencyCache cache;
+
+    /**
+     * Constructor for ReversalEngine.
+     *
+     * @param cache Cache that records the state of each transaction ID.
+     */
+    public ReversalEngine(@NotNull IdempotencyCache cache) {
+        this.cache = cache;
+    }
+
+    public IdempotencyCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Applies a transaction unless its ID has been seen before.
+     *
+     * @param ba Account to apply the transaction to.
+     * @param t  Transaction to apply.
+     * @return DUPLICATE if the ID is known, otherwise the outcome of tryApply().
+     */
+    public TransactionStatus apply(@NotNull BankAccount ba, @NotNull BaseTransaction t) {
+        long id = t.getNumericID();
+        if (!cache.transition(id, null, IdempotencyCache.State.PENDING)) {
+            TransactionEvents.getSink().publish(TransactionEventType.DUPLICATE_REJECTED, t, ba.getBalanceMinor());
+            return TransactionStatus.DUPLICATE;
+        }
+        TransactionStatus status = null;
+        try {
+            status = t.tryApply(ba);
+        } finally {
+            if (status == TransactionStatus.APPLIED) {
+                cache.put(id, IdempotencyCache.State.APPLIED);
+            } else {
+                cache.remove(id); // Nothing changed, so a later retry may try again
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Reverses an applied transaction, once.
+     *
+     * @param ba Account the transaction was applied to.
+     * @param t  Transaction to reverse.
+     * @return APPLIED if the reversal changed the balance; DUPLICATE if the transaction is already
+     *         reversed or being processed; NOT_APPLIED if it was never applied (or has been evicted);
+     *         INSUFFICIENT_FUNDS if a deposit cannot be compensated.
+     */
+    public TransactionStatus reverse(@NotNull BankAccount ba, @NotNull BaseTransaction t) {
+        long id = t.getNumericID();
+        if (!cache.transition(id, IdempotencyCache.State.APPLIED, IdempotencyCache.State.REVERSING)) {
+            if (cache.get(id) == null) {
+                return TransactionStatus.NOT_APPLIED;
+            }
+            TransactionEvents.getSink().publish(TransactionEventType.DUPLICATE_REJECTED, t, ba.getBalanceMinor());
+            return TransactionStatus.DUPLICATE;
+        }
+        boolean reversed = false;
+        try {
+            reversed = compensate(ba, t);
+        } finally {
+            cache.put(id, reversed ? IdempotencyCache.State.REVERSED : IdempotencyCache.State.APPLIED);
+        }
+        return reversed ? TransactionStatus.APPLIED : TransactionStatus.INSUFFICIENT_FUNDS;
+    }
+
+    /**
+     * Reverses every transaction of a batch that was applied to one account, in order.
+     *
+     * @param batch Transactions to reverse.
+     * @param ba    Account the transactions were applied to.
+     * @return One status per transaction, as returned by reverse(), and the net balance change.
+     */
+    public BatchResult reverseAll(@NotNull List<? extends BaseTransaction> batch, @NotNull BankAccount ba) {
+        TransactionStatus[] statuses = new TransactionStatus[batch.size()];
+        int reversedCount = 0;
+        long netChange = 0;
+        for (int i = 0; i < statuses.length; i++) {
+            BaseTransaction t = batch.get(i);
+            statuses[i] = reverse(ba, t);
+            if (statuses[i] == TransactionStatus.APPLIED) {
+                reversedCount++;
+                netChange -= TransactionType.of(t).balanceDelta(t.getAmount());
+            }
+        }
+        return new BatchResult(statuses, reversedCount, netChange, ba.getBalanceMinor());
+    }
+
+    // Undoes the balance change of an applied transaction; returns false if a deposit cannot be taken back
+    private static boolean compensate(BankAccount ba, BaseTransaction t) {
+        if (t instanceof WithdrawalTransaction withdrawal) {
+            return withdrawal.reverse(ba);
+        }
+        if (t instanceof DepositTransaction) {
+            TransactionMetrics metrics = TransactionMetrics.get();
+            long start = metrics.startTimer();
+            long newBalanceMinor = ba.tryDebit(t.getAmount());
+            if (newBalanceMinor < 0) {
+                return false;
+            }
+            TransactionEvents.getSink().publish(TransactionEventType.DEPOSIT_REVERSED, t, newBalanceMinor);
+            metrics.recordReverse(TransactionType.DEPOSIT, start);
+            return true;
+        }
+        throw new IllegalArgumentException("Unsupported transaction type: " + t.getClass().getName());
+    }
+}
@@ -0,0 +1,251 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Live per-account aggregates over sliding time windows, such as the sum of withdrawals in the last
+ * 24 hours, for risk checks on every apply.
+ *
+ * Each window of each account is a ring of fixed-width time buckets plus a running total. An event adds
+ * its value to the bucket of its date and to the total; when time moves past the newest bucket, the
+ * buckets that fall out of the window are subtracted from the total and cleared. Each bucket is cleared
+ * at most once per bucket width, so both recording and querying are O(1) amortized, and an account costs
+ * the same fixed number of bytes however many events it sees. A window covers its current bucket and the
+ * bucketCount - 1 buckets before it, so its edge moves in steps of one bucket width.
+ *
+ * Events are placed by their transaction date. An event older than the window of its account is
+ * ignored. Accounts are spread over independently locked stripes, each a primitive hash table with
+ * columnar bucket arrays, so nothing is allocated per event and threads posting to different accounts
+ * rarely wait for each other. The windows of one account are stored side by side, so an event costs
+ * a few adjacent cache lines rather than one per window.
+ */
+public class RollingAggregates {
+
+    /**
+     * Windows kept for every account.
+     */
+    public enum Window {
+        // Number of transactions of any type in the last hour, in 5-minute buckets
+        TRANSACTIONS_1H(3_600_000L, 12, null),
+        // Sum of withdrawals in the last 24 hours, in 1-hour buckets
+        WITHDRAWALS_24H(86_400_000L, 24, TransactionType.WITHDRAWAL),
+        // Sum of withdrawals in the last 7 days, in 12-hour buckets
+        WITHDRAWALS_7D(604_800_000L, 14, TransactionType.WITHDRAWAL);
+
+        private final long lengthMillis;
+        private final int bucketCount;
+        private final long bucketMillis;
+        private final TransactionType summed; // null to count transactions
+
+        Window(long lengthMillis, int bucketCount, TransactionType summed) {
+            this.lengthMillis = lengthMillis;
+            this.bucketCount = bucketCount;
+            this.bucketMillis = lengthMillis / bucketCount;
+            this.summed = summed;
+        }
+
+        public long getLengthMillis() {
+            return lengthMillis;
+        }
+
+        public int getBucketCount() {
+            return bucketCount;
+        }
+
+        // Value an event adds to this window: its amount, 1 for a count, or 0 if the window ignores it
+        long valueOf(TransactionType type, long amount) {
+            return summed == null ? 1 : type == summed ? amount : 0;
+        }
+    }
+
+    private static final Window[] WINDOWS = Window.values();
+    private static final int STRIPE_COUNT = 64;
+    private static final int STRIPE_SHIFT = Long.numberOfLeadingZeros(STRIPE_COUNT - 1);
+    private static final int INITIAL_ACCOUNTS_PER_STRIPE = 64;
+
+    // Head of an account that has not seen any event yet; far enough back that every bucket is stale
+    private static final long NO_BUCKET = Long.MIN_VALUE / 2;
+
+    // Each account is one row of longs; per window, in order: newest bucket index, running total, buckets
+    private static final int[] OFFSETS = new int[WINDOWS.length];
+    private static final int STRIDE;
+
+    static {
+        int offset = 0;
+        for (Window w : WINDOWS) {
+            OFFSETS[w.ordinal()] = offset;
+            offset += 2 + w.bucketCount;
+        }
+        STRIDE = offset;
+    }
+
+    /**
+     * One stripe: a hash table from account number to slot, and the rows of its accounts in one array
+     * (slot * STRIDE onwards), so an event touches a few adjacent cache lines.
+     */
+    private static final class Stripe {
+        final LongIntHashMap slots = new LongIntHashMap(INITIAL_ACCOUNTS_PER_STRIPE);
+        long[] rows = new long[INITIAL_ACCOUNTS_PER_STRIPE * STRIDE];
+        int size;
+
+        int slotOf(long accountId) {
+            int slot = slots.get(accountId);
+            if (slot != LongIntHashMap.MISSING) {
+                return slot;
+            }
+            slot = size++;
+            if ((slot + 1) * STRIDE > rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            for (int offset : OFFSETS) {
+                rows[slot * STRIDE + offset] = NO_BUCKET;
+            }
+            slots.put(accountId, slot);
+            return slot;
+        }
+
+        void add(Window w, int slot, long bucket, long value) {
+            int at = slot * STRIDE + OFFSETS[w.ordinal()];
+            long head = rows[at];
+            if (bucket > head) {
+                advance(w, slot, bucket);
+            } else if (bucket <= head - w.bucketCount) {
+                return; // Older than the window
+            }
+            rows[at + 2 + Math.floorMod(bucket, w.bucketCount)] += value;
+            rows[at + 1] += value;
+        }
+
+        // Makes bucket the newest one, dropping the buckets that leave the window
+        void advance(Window w, int slot, long bucket) {
+            int at = slot * STRIDE + OFFSETS[w.ordinal()];
+            long head = rows[at];
+            if (bucket <= head) {
+                return;
+            }
+            long total = rows[at + 1];
+            for (long b = Math.max(head + 1, bucket - w.bucketCount + 1); b <= bucket; b++) {
+                int i = at + 2 + Math.floorMod(b, w.bucketCount);
+                total -= rows[i];
+                rows[i] = 0;
+            }
+            rows[at + 1] = total;
+            rows[at] = bucket;
+        }
+
+        long total(Window w, int slot) {
+            return rows[slot * STRIDE + OFFSETS[w.ordinal()] + 1];
+        }
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+    // Constructor for RollingAggregates with no accounts yet
+    public RollingAggregates() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Applies a transaction to an account and, if it was applied, records it. A transfer is recorded as a
+     * withdrawal from the source account and a deposit to the destination.
+     *
+     * @param account     Account to post to; its account number keys the aggregates.
+     * @param transaction Transaction to apply.
+     * @return The outcome of the transaction.
+     */
+    public TransactionStatus apply(@NotNull BankAccount account, @NotNull BaseTransaction transaction) {
+        TransactionStatus status = transaction.tryApply(account);
+        if (status != TransactionStatus.APPLIED) {
+            return status;
+        }
+        long amount = transaction.getAmount();
+        long millis = transaction.getEpochMillis();
+        switch (transaction) {
+            case DepositTransaction d -> record(account.getAccountId(), TransactionType.DEPOSIT, amount, millis);
+            case WithdrawalTransaction w -> record(account.getAccountId(), TransactionType.WITHDRAWAL, amount, millis);
+            case TransferTransaction t -> {
+                record(account.getAccountId(), TransactionType.WITHDRAWAL, amount, millis);
+                record(t.getDestination().getAccountId(), TransactionType.DEPOSIT, amount, millis);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Records one applied transaction in every window of its account.
+     *
+     * @param accountId   Account the transaction belongs to.
+     * @param type        Transaction type.
+     * @param amount      Transaction amount in minor units.
+     * @param epochMillis Transaction date in epoch milliseconds.
+     */
+    public void record(long accountId, @NotNull TransactionType type, long amount, long epochMillis) {
+        Stripe stripe = stripeOf(accountId);
+        synchronized (stripe) {
+            int slot = stripe.slotOf(accountId);
+            for (Window w : WINDOWS) {
+                long value = w.valueOf(type, amount);
+                if (value != 0) {
+                    stripe.add(w, slot, Math.floorDiv(epochMillis, w.bucketMillis), value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the current value of a window of an account.
+     *
+     * @param accountId Account number.
+     * @param window    Window to read.
+     * @return The sum or count over the window ending now.
+     */
+    public long get(long accountId, @NotNull Window window) {
+        return get(accountId, window, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the value of a window of an account as of a point in time. Time only moves forward:
+     * asking for a time before an event already recorded returns the window ending at that event.
+     *
+     * @param accountId Account number.
+     * @param window    Window to read.
+     * @param nowMillis End of the window in epoch milliseconds.
+     * @return The sum in minor units, or the count, over the window; 0 for an account never recorded.
+     */
+    public long get(long accountId, @NotNull Window window, long nowMillis) {
+        Stripe stripe = stripeOf(accountId);
+        synchronized (stripe) {
+            int slot = stripe.slots.get(accountId);
+            if (slot == LongIntHashMap.MISSING) {
+                return 0;
+            }
+            stripe.advance(window, slot, Math.floorDiv(nowMillis, window.bucketMillis));
+            return stripe.total(window, slot);
+        }
+    }
+
+    // Number of accounts with at least one recorded event
+    public int accountCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                count += stripe.size;
+            }
+        }
+        return count;
+    }
+
+    // Bytes of buckets, heads and totals held for one account, excluding its hash table entry and spare capacity
+    public static int bytesPerAccount() {
+        return STRIDE * Long.BYTES;
+    }
+
+    private Stripe stripeOf(long accountId) {
+        // Top bits of a multiplicative hash, so sequential account numbers spread over all stripes
+        return stripes[(int) ((accountId * 0x9E3779B97F4A7C15L) >>> STRIPE_SHIFT)];
+    }
+}
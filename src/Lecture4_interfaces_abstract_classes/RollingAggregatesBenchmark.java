@@ -0,0 +1,117 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Measures RollingAggregates with millions of accounts and a skewed event rate: accounts post with
+ * Zipf-distributed frequency while simulated time moves forward, so hot accounts fill their rings and
+ * cold accounts come back after their buckets have expired. Reports the cost of recording an event,
+ * of a window query, of the apply path with and without aggregates, and the heap used per account.
+ *
+ * Settings (system properties):
+ *   bench.accounts   number of accounts (default 2,000,000)
+ *   bench.zipf       Zipf exponent of the per-account event rate (default 1.0)
+ *   bench.stepMillis simulated milliseconds between two events (default 20, about two days per 10M events)
+ */
+public class RollingAggregatesBenchmark {
+
+    private static final int TRACE_LENGTH = 1 << 22;
+
+    public static void main(String[] args) {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        int accountCount = Integer.getInteger("bench.accounts", 2_000_000);
+        double exponent = Double.parseDouble(System.getProperty("bench.zipf", "1.0"));
+        long stepMillis = Long.getLong("bench.stepMillis", 20);
+        long start = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+        int[] trace = zipfTrace(accountCount, exponent, new SplittableRandom(13));
+        long[] amounts = new long[TRACE_LENGTH];
+        SplittableRandom random = new SplittableRandom(17);
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            amounts[i] = random.nextLong(1, 100_000);
+        }
+
+        // Touch every account once, then measure the heap the aggregates hold
+        System.gc();
+        long heapBefore = usedHeap();
+        RollingAggregates aggregates = new RollingAggregates();
+        for (int a = 0; a < accountCount; a++) {
+            aggregates.record(a, TransactionType.DEPOSIT, 100, start);
+        }
+        System.gc();
+        long heapAfter = usedHeap();
+        System.out.printf("%,d accounts: %d bytes of buckets per account, %.0f bytes of heap per account in total%n%n",
+                aggregates.accountCount(), RollingAggregates.bytesPerAccount(),
+                (double) (heapAfter - heapBefore) / accountCount);
+
+        // Replay the trace once, so that every benchmark, each run in a JVM of its own, finds busy rings
+        long[] clock = {start};
+        for (int t = 0; t < TRACE_LENGTH; t++) {
+            record(aggregates, trace, amounts, t, clock[0] += stepMillis);
+        }
+
+        // Time keeps moving across rounds, so windows keep expiring as they would in production
+        Bench.printHeader();
+        Bench.run("record, Zipf accounts", i -> {
+            int t = i & (TRACE_LENGTH - 1);
+            long now = clock[0] += stepMillis;
+            record(aggregates, trace, amounts, t, now);
+            return now;
+        });
+        Bench.run("query 24h withdrawals, Zipf accounts", i -> aggregates.get(
+                trace[(i * 7) & (TRACE_LENGTH - 1)], RollingAggregates.Window.WITHDRAWALS_24H, clock[0]));
+        Bench.run("query 1h count, uniform accounts", i -> aggregates.get(
+                random.nextInt(accountCount), RollingAggregates.Window.TRANSACTIONS_1H, clock[0]));
+        Bench.run("query 7d withdrawals, after a day idle", i -> aggregates.get(
+                random.nextInt(accountCount), RollingAggregates.Window.WITHDRAWALS_7D, clock[0] + 86_400_000L));
+
+        // Apply path: a pool of accounts and transactions, applied directly and through the aggregates
+        int pool = 4096;
+        BankAccount[] accounts = new BankAccount[pool];
+        BaseTransaction[] transactions = new BaseTransaction[pool];
+        for (int i = 0; i < pool; i++) {
+            accounts[i] = BankAccount.withMinorBalance(trace[i], Long.MAX_VALUE / 4);
+            Instant date = Instant.ofEpochMilli(clock[0] + i);
+            transactions[i] = i % 2 == 0 ? new WithdrawalTransaction(date, amounts[i]) : new DepositTransaction(date, amounts[i]);
+        }
+        Bench.run("tryApply only", i -> transactions[i & (pool - 1)].tryApply(accounts[i & (pool - 1)]).ordinal());
+        Bench.run("tryApply and record", i -> aggregates.apply(accounts[i & (pool - 1)], transactions[i & (pool - 1)]).ordinal());
+
+        long sample = trace[0];
+        System.out.printf("%nSample account %d: %d transactions in the last hour, withdrawals %s (24h) and %s (7d)%n",
+                sample, aggregates.get(sample, RollingAggregates.Window.TRANSACTIONS_1H, clock[0]),
+                Money.format(aggregates.get(sample, RollingAggregates.Window.WITHDRAWALS_24H, clock[0])),
+                Money.format(aggregates.get(sample, RollingAggregates.Window.WITHDRAWALS_7D, clock[0])));
+    }
+
+    // Records event t of the trace; even events are withdrawals, odd ones deposits
+    private static void record(RollingAggregates aggregates, int[] trace, long[] amounts, int t, long now) {
+        TransactionType type = (t & 1) == 0 ? TransactionType.WITHDRAWAL : TransactionType.DEPOSIT;
+        aggregates.record(trace[t], type, amounts[t], now);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Draws TRACE_LENGTH account numbers; account a is drawn with weight 1 / (a + 1)^exponent
+    private static int[] zipfTrace(int accountCount, double exponent, SplittableRandom random) {
+        double[] cumulative = new double[accountCount];
+        double sum = 0;
+        for (int a = 0; a < accountCount; a++) {
+            sum += 1 / Math.pow(a + 1, exponent);
+            cumulative[a] = sum;
+        }
+        int[] trace = new int[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            int a = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = a < 0 ? -a - 1 : a;
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,39 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.time.Instant;
+
+/**
+ * Measures SettlementExecutor throughput and latency as the number of partitions grows.
+ * Transactions are spread evenly over the accounts and created before timing starts.
+ *
+ * Settings (system properties):
+ *   bench.accounts      number of accounts (default 10,000)
+ *   bench.transactions  transactions per run (default 2,000,000)
+ */
+public class SettlementBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        int accountCount = Integer.getInteger("bench.accounts", 10_000);
+        int transactionCount = Integer.getInteger("bench.transactions", 2_000_000);
+
+        Instant date = Instant.now();
+        BaseTransaction[] transactions = new BaseTransaction[transactionCount];
+        for (int i = 0; i < transactionCount; i++) {
+            transactions[i] = i % 3 == 2 ? new WithdrawalTransaction(50, date) : new DepositTransaction(100, date);
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int partitions = 1; partitions <= cores; partitions *= 2) {
+            BankAccount[] accounts = new BankAccount[accountCount];
+            for (int a = 0; a < accountCount; a++) {
+                accounts[a] = new BankAccount(a, 0);
+            }
+            SettlementExecutor executor = new SettlementExecutor(partitions, 4096);
+            for (int i = 0; i < transactionCount; i++) {
+                executor.submit(accounts[i % accountCount], transactions[i]);
+            }
+            System.out.println(partitions + " partitions: " + executor.awaitCompletion());
+        }
+    }
+}
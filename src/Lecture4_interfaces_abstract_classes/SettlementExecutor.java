@@ -0,0 +1,180 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Applies transactions for many accounts concurrently.
+ * Transactions are partitioned by account number: every account maps to one partition, and each
+ * partition is drained in submission order by its own worker, so the transactions of one account are
+ * applied in the order they were submitted while different accounts settle in parallel.
+ * Each partition has a bounded queue; submit() blocks when it is full, which slows producers down
+ * to the rate the workers can sustain.
+ * Workers run on virtual threads unless another ThreadFactory is given.
+ * A transaction that throws (e.g. an ArithmeticException when a credit would overflow) is counted
+ * as failed in the report, and its worker carries on with the next one.
+ */
+public class SettlementExecutor implements AutoCloseable {
+
+    // One queued transaction and the time it was submitted
+    private static final class Settlement {
+        final BankAccount account;
+        final BaseTransaction transaction;
+        final long submittedNanos;
+
+        Settlement(BankAccount account, BaseTransaction transaction, long submittedNanos) {
+            this.account = account;
+            this.transaction = transaction;
+            this.submittedNanos = submittedNanos;
+        }
+    }
+
+    // Queued after the last transaction of a partition to stop its worker
+    private static final Settlement STOP = new Settlement(null, null, 0);
+
+    private final List<BlockingQueue<Settlement>> partitions;
+    private final Thread[] workers;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicReference<RuntimeException> firstFailure = new AtomicReference<>();
+    private final long startNanos = System.nanoTime();
+
+    // Submitters hold the read lock while queueing, so no transaction can be queued behind STOP
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+    private SettlementReport report;
+
+    /**
+     * Constructor for SettlementExecutor. Starts one virtual-thread worker per partition.
+     *
+     * @param partitionCount Number of partitions.
+     * @param queueCapacity  Capacity of each partition's queue.
+     */
+    public SettlementExecutor(int partitionCount, int queueCapacity) {
+        this(partitionCount, queueCapacity, Thread.ofVirtual().name("settlement-", 0).factory());
+    }
+
+    /**
+     * Constructor for SettlementExecutor. Starts one worker per partition.
+     *
+     * @param partitionCount Number of partitions.
+     * @param queueCapacity  Capacity of each partition's queue.
+     * @param threadFactory  Factory for the worker threads.
+     */
+    public SettlementExecutor(int partitionCount, int queueCapacity, @NotNull ThreadFactory threadFactory) {
+        if (partitionCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Partition count and queue capacity must be positive");
+        }
+        partitions = new ArrayList<>(partitionCount);
+        workers = new Thread[partitionCount];
+        for (int p = 0; p < partitionCount; p++) {
+            BlockingQueue<Settlement> queue = new ArrayBlockingQueue<>(queueCapacity);
+            partitions.add(queue);
+            workers[p] = threadFactory.newThread(() -> drain(queue));
+            workers[p].start();
+        }
+    }
+
+    /**
+     * Queues a transaction for an account, blocking while the account's partition is full.
+     *
+     * @param account     Account to apply the transaction on.
+     * @param transaction Transaction to apply.
+     * @throws InterruptedException if interrupted while waiting for queue space.
+     * @throws IllegalStateException if awaitCompletion() has been called; the transaction is not queued.
+     */
+    public void submit(@NotNull BankAccount account, @NotNull BaseTransaction transaction) throws InterruptedException {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("SettlementExecutor is closed");
+            }
+            partitions.get(partitionOf(account.getAccountId()))
+                    .put(new Settlement(account, transaction, System.nanoTime()));
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for every submitted transaction to be applied, stops the workers and reports on the run.
+     * Submissions still in progress are queued first; later ones are rejected. Further calls return
+     * the same report.
+     *
+     * @return Throughput and latency of the run.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public synchronized SettlementReport awaitCompletion() throws InterruptedException {
+        if (report == null) {
+            closeLock.writeLock().lock();
+            try {
+                closed = true;
+            } finally {
+                closeLock.writeLock().unlock();
+            }
+            for (BlockingQueue<Settlement> queue : partitions) {
+                queue.put(STOP);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            report = new SettlementReport(applied.sum(), failed.sum(), firstFailure.get(),
+                    System.nanoTime() - startNanos, latency.getValueAtPercentile(50),
+                    latency.getValueAtPercentile(99), latency.getMax());
+        }
+        return report;
+    }
+
+    /**
+     * Waits for every submitted transaction to be applied and stops the workers.
+     * If interrupted, returns early with the thread's interrupt flag set; call awaitCompletion() to
+     * handle the interruption instead.
+     */
+    @Override
+    public void close() {
+        try {
+            awaitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Spreads account numbers over the partitions
+    private int partitionOf(long accountId) {
+        long h = accountId * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % partitions.size());
+    }
+
+    // Worker body: applies one partition's transactions in order until STOP
+    private void drain(BlockingQueue<Settlement> queue) {
+        try {
+            while (true) {
+                Settlement s = queue.take();
+                if (s == STOP) {
+                    return;
+                }
+                try {
+                    s.transaction.apply(s.account);
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    firstFailure.compareAndSet(null, e);
+                    continue;
+                }
+                latency.record(System.nanoTime() - s.submittedNanos);
+                applied.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Summary of a settlement run: how many transactions were applied or failed, how fast, and
+ * the latency from submission until each transaction was applied.
+ */
+public class SettlementReport {
+
+    private final long transactionCount;
+    private final long failedCount;
+    private final RuntimeException firstFailure;
+    private final long elapsedNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    SettlementReport(long transactionCount, long failedCount, RuntimeException firstFailure, long elapsedNanos,
+                     long p50Nanos, long p99Nanos, long maxNanos) {
+        this.transactionCount = transactionCount;
+        this.failedCount = failedCount;
+        this.firstFailure = firstFailure;
+        this.elapsedNanos = elapsedNanos;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    // Number of transactions that threw instead of being applied
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    // Exception thrown by the first failed transaction, or null if none failed
+    public RuntimeException getFirstFailure() {
+        return firstFailure;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the throughput of the run.
+     *
+     * @return Transactions applied per second.
+     */
+    public double getThroughputPerSecond() {
+        return elapsedNanos == 0 ? 0 : transactionCount * 1e9 / elapsedNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format(
+                "%d transactions in %.1f ms, %.0f tx/s, latency p50 %.1f us, p99 %.1f us, max %.1f us",
+                transactionCount, elapsedNanos / 1e6, getThroughputPerSecond(),
+                p50Nanos / 1e3, p99Nanos / 1e3, maxNanos / 1e3);
+        return failedCount == 0 ? summary : summary + ", " + failedCount + " failed (first: " + firstFailure + ")";
+    }
+}
@@ -0,0 +1,177 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures aggregate throughput of a ShardedLedger over a LoopbackTransport as the number of shards
+ * grows from 1 to N (at least 4, or the number of processors). The load is 45% deposits,
+ * 45% withdrawals and 10% transfers between random accounts, with a bounded number of requests in
+ * flight. After each run the balances are summed to check that transfers neither created nor lost money.
+ * A last run sends transfers through a transport that fails some deposits, half of them after the
+ * shard applied them as a timed-out reply would, and into an account whose balance would overflow,
+ * and checks that every transfer moved the money exactly once or gave it back.
+ *
+ * Settings (system properties):
+ *   bench.operations operations per run (default 2,000,000)
+ *   bench.accounts   number of accounts (default 100,000)
+ *   bench.inFlight   requests in flight at once (default 4,096)
+ */
+public class ShardBenchmark {
+
+    public static void main(String[] args) {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        int operations = Integer.getInteger("bench.operations", 2_000_000);
+        int accounts = Integer.getInteger("bench.accounts", 100_000);
+        int inFlight = Integer.getInteger("bench.inFlight", 4_096);
+        long opening = Money.ofMajor(1_000);
+        int maxShards = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+        for (int shards = 1; shards <= maxShards; shards *= 2) {
+            try (LoopbackTransport transport = new LoopbackTransport(shards)) {
+                ShardedLedger ledger = new ShardedLedger(transport);
+                CompletableFuture<?>[] opened = new CompletableFuture<?>[accounts];
+                for (int i = 0; i < accounts; i++) {
+                    opened[i] = ledger.open(i, opening);
+                }
+                CompletableFuture.allOf(opened).join();
+
+                Semaphore window = new Semaphore(inFlight);
+                LongAdder netChange = new LongAdder();
+                LongAdder transfersApplied = new LongAdder();
+                SplittableRandom random = new SplittableRandom(42);
+                long epochMillis = System.currentTimeMillis();
+                long start = System.nanoTime();
+                for (int i = 0; i < operations; i++) {
+                    window.acquireUninterruptibly();
+                    long account = random.nextInt(accounts);
+                    long amount = Money.ofMajor(1 + random.nextInt(100));
+                    int choice = random.nextInt(100);
+                    CompletableFuture<TransactionStatus> result;
+                    if (choice < 45) {
+                        result = ledger.post(account, TransactionType.DEPOSIT, amount, epochMillis);
+                        result.thenAccept(s -> netChange.add(s == TransactionStatus.APPLIED ? amount : 0));
+                    } else if (choice < 90) {
+                        result = ledger.post(account, TransactionType.WITHDRAWAL, amount, epochMillis);
+                        result.thenAccept(s -> netChange.add(s == TransactionStatus.APPLIED ? -amount : 0));
+                    } else {
+                        result = ledger.transfer(account, random.nextInt(accounts), amount, epochMillis);
+                        result.thenAccept(s -> transfersApplied.add(s == TransactionStatus.APPLIED ? 1 : 0));
+                    }
+                    result.whenComplete((s, e) -> window.release());
+                }
+                window.acquireUninterruptibly(inFlight);
+                long nanos = System.nanoTime() - start;
+
+                long total = 0;
+                for (int i = 0; i < accounts; i++) {
+                    total += ledger.balance(i).join();
+                }
+                long expected = opening * accounts + netChange.sum();
+                System.out.printf("%2d shard(s): %.0f ops/s, %d transfers applied, balances %s%n",
+                        shards, operations * 1e9 / nanos, transfersApplied.sum(),
+                        total == expected ? "conserved" : "WRONG by " + Money.format(total - expected));
+            }
+        }
+        checkFailedDeposits(Math.min(accounts, 10_000), opening);
+    }
+
+    // Transfers whose deposit fails, exceptionally or by overflow, must move the money once or leave every
+    // balance as it was; a resent post must not apply twice
+    private static void checkFailedDeposits(int accounts, long opening) {
+        long overflowing = accounts; // Its balance is so high that any deposit overflows in the shard
+        long overflowOpening = Long.MAX_VALUE - 1;
+        try (FailingTransport transport = new FailingTransport(new LoopbackTransport(4), 7)) {
+            ShardedLedger ledger = new ShardedLedger(transport);
+            CompletableFuture<?>[] opened = new CompletableFuture<?>[accounts + 1];
+            for (int i = 0; i < accounts; i++) {
+                opened[i] = ledger.open(i, opening);
+            }
+            opened[accounts] = ledger.open(overflowing, overflowOpening);
+            CompletableFuture.allOf(opened).join();
+
+            SplittableRandom random = new SplittableRandom(7);
+            long epochMillis = System.currentTimeMillis();
+            CompletableFuture<?>[] transfers = new CompletableFuture<?>[50_000];
+            LongAdder failed = new LongAdder();
+            for (int i = 0; i < transfers.length; i++) {
+                long from = random.nextInt(accounts);
+                long to = i % 10 == 0 ? overflowing : random.nextInt(accounts);
+                long amount = Money.ofMajor(1 + random.nextInt(100));
+                transfers[i] = ledger.transfer(from, to, amount, epochMillis).whenComplete((s, e) -> {
+                    if (e != null) {
+                        failed.increment();
+                    }
+                });
+            }
+            for (CompletableFuture<?> transfer : transfers) {
+                transfer.exceptionally(e -> null).join();
+            }
+            long total = 0;
+            for (int i = 0; i < accounts; i++) {
+                total += ledger.balance(i).join();
+            }
+            long overflowBalance = ledger.balance(overflowing).join();
+            boolean conserved = total == opening * accounts && overflowBalance == overflowOpening;
+            System.out.printf("%nFailing deposits: %,d of %,d transfers failed, %,d deposits injected to fail, balances %s%n",
+                    failed.sum(), transfers.length, transport.getFailures(), conserved ? "conserved" : "WRONG");
+            if (!conserved) {
+                throw new AssertionError("A failed transfer created or lost money");
+            }
+
+            long key = TransactionIdGenerator.getDefault().nextId();
+            TransactionStatus first = ledger.post(0, TransactionType.WITHDRAWAL, 1, epochMillis, key).join();
+            TransactionStatus resent = ledger.post(0, TransactionType.WITHDRAWAL, 1, epochMillis, key).join();
+            if (first != TransactionStatus.APPLIED || resent != TransactionStatus.DUPLICATE || !ledger.check(0, key).join()) {
+                throw new AssertionError("A resent post was " + resent + " after " + first);
+            }
+        }
+    }
+
+    // Passes requests on, but fails every n-th deposit: alternately before sending it, as an unreachable
+    // shard would, and after the shard applied it, as a lost reply would
+    private static final class FailingTransport implements ShardTransport {
+
+        private final ShardTransport transport;
+        private final int every;
+        private final LongAdder failures = new LongAdder();
+        private final AtomicLong deposits = new AtomicLong();
+
+        FailingTransport(ShardTransport transport, int every) {
+            this.transport = transport;
+            this.every = every;
+        }
+
+        long getFailures() {
+            return failures.sum();
+        }
+
+        @Override
+        public int getShardCount() {
+            return transport.getShardCount();
+        }
+
+        @Override
+        public CompletableFuture<ShardResponse> send(int shard, ShardRequest request) {
+            long deposit = request.getKind() == ShardRequest.Kind.APPLY
+                    && request.getType() == TransactionType.DEPOSIT ? deposits.incrementAndGet() : 1;
+            if (deposit % every != 0) {
+                return transport.send(shard, request);
+            }
+            failures.increment();
+            if (deposit % (2L * every) == 0) {
+                return transport.send(shard, request).thenCompose(applied -> CompletableFuture.failedFuture(
+                        new IllegalStateException("Reply from shard " + shard + " lost")));
+            }
+            return CompletableFuture.failedFuture(new IllegalStateException("Shard " + shard + " unreachable"));
+        }
+
+        @Override
+        public void close() {
+            transport.close();
+        }
+    }
+}
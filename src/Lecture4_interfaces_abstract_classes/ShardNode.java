@@ -0,0 +1,157 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The accounts owned by one shard, and the logic that applies requests to them.
+ * In a deployment each shard is a separate process; a transport hands it one request at a time,
+ * so the accounts are only ever touched by one thread and a local transfer is atomic.
+ *
+ * The node remembers the idempotency key of every APPLY and TRANSFER_LOCAL request it applied, so a
+ * resent request is answered DUPLICATE instead of being applied twice, and a CHECK can tell a client
+ * whose request timed out whether it went through. Keys are remembered for DEDUPE_MILLIS, which must
+ * cover the time a client may take to resend or check a request.
+ */
+public class ShardNode {
+
+    // Idempotency keys remembered per node, and for how long
+    public static final int DEDUPE_ENTRIES = 1 << 18;
+    public static final long DEDUPE_MILLIS = 10 * 60 * 1000;
+
+    private final int shardId;
+    private final Map<Long, BankAccount> accounts = new HashMap<>();
+    private final IdempotencyCache applied;
+
+    /**
+     * Constructor for ShardNode, remembering DEDUPE_ENTRIES keys for DEDUPE_MILLIS.
+     *
+     * @param shardId Number of the shard.
+     */
+    public ShardNode(int shardId) {
+        this(shardId, new IdempotencyCache(DEDUPE_ENTRIES, DEDUPE_MILLIS));
+    }
+
+    /**
+     * Constructor for ShardNode.
+     *
+     * @param shardId Number of the shard.
+     * @param applied Cache recording the idempotency keys of the requests this node has applied.
+     */
+    public ShardNode(int shardId, @NotNull IdempotencyCache applied) {
+        this.shardId = shardId;
+        this.applied = applied;
+    }
+
+    public int getShardId() {
+        return shardId;
+    }
+
+    // Number of accounts owned by this shard
+    public int getAccountCount() {
+        return accounts.size();
+    }
+
+    /**
+     * Handles one request. Deposits and withdrawals are applied as DepositTransaction and
+     * WithdrawalTransaction objects, so the usual validation and events apply; REVERSAL credits back a
+     * withdrawal made earlier, as the compensation step of a transfer.
+     *
+     * @param request Request to handle.
+     * @return The outcome; NOT_APPLIED if an account is unknown; DUPLICATE if OPEN names an existing
+     *         account, or if the idempotency key of an APPLY or TRANSFER_LOCAL was applied or refused by
+     *         a CHECK before. A CHECK returns APPLIED if its key was applied and NOT_APPLIED otherwise.
+     */
+    public ShardResponse handle(@NotNull ShardRequest request) {
+        ShardRequest.Kind kind = request.getKind();
+        if (kind == ShardRequest.Kind.CHECK) {
+            return check(request);
+        }
+        if (kind != ShardRequest.Kind.APPLY && kind != ShardRequest.Kind.TRANSFER_LOCAL) {
+            return handleOnce(request); // OPEN and BALANCE change nothing when repeated
+        }
+        // Requests are handled one at a time, so a known key was applied before or fenced by a CHECK
+        long key = request.getRequestId();
+        if (!applied.transition(key, null, IdempotencyCache.State.PENDING)) {
+            return new ShardResponse(TransactionStatus.DUPLICATE, balanceOf(request.getAccountId()));
+        }
+        ShardResponse response = null;
+        try {
+            response = handleOnce(request);
+        } finally {
+            if (response != null && response.getStatus() == TransactionStatus.APPLIED) {
+                applied.put(key, IdempotencyCache.State.APPLIED);
+            } else {
+                applied.remove(key); // Nothing changed, so a resent copy may try again
+            }
+        }
+        return response;
+    }
+
+    // Answers whether a key was applied; an unknown key is fenced, so its request can no longer be applied
+    private ShardResponse check(ShardRequest request) {
+        long key = request.getRequestId();
+        IdempotencyCache.State state = applied.get(key);
+        if (state == null) {
+            applied.put(key, IdempotencyCache.State.REVERSED);
+        }
+        TransactionStatus status = state == IdempotencyCache.State.APPLIED
+                ? TransactionStatus.APPLIED : TransactionStatus.NOT_APPLIED;
+        return new ShardResponse(status, balanceOf(request.getAccountId()));
+    }
+
+    // Balance of an account in minor units, 0 if it is unknown
+    private long balanceOf(long accountId) {
+        BankAccount account = accounts.get(accountId);
+        return account == null ? 0 : account.getBalanceMinor();
+    }
+
+    // Handles a request whose idempotency key, if it has one, has been claimed
+    private ShardResponse handleOnce(ShardRequest request) {
+        BankAccount account = accounts.get(request.getAccountId());
+        if (request.getKind() == ShardRequest.Kind.OPEN) {
+            if (account != null) {
+                return new ShardResponse(TransactionStatus.DUPLICATE, account.getBalanceMinor());
+            }
+            account = BankAccount.withMinorBalance(request.getAccountId(), request.getAmountMinor());
+            accounts.put(account.getAccountId(), account);
+            return new ShardResponse(TransactionStatus.APPLIED, account.getBalanceMinor());
+        }
+        if (account == null) {
+            return new ShardResponse(TransactionStatus.NOT_APPLIED, 0);
+        }
+        Instant date = Instant.ofEpochMilli(request.getEpochMillis());
+        TransactionStatus status;
+        switch (request.getKind()) {
+            case APPLY -> status = apply(account, request.getType(), request.getAmountMinor(), date);
+            case TRANSFER_LOCAL -> {
+                BankAccount to = accounts.get(request.getToAccountId());
+                if (to == null) {
+                    status = TransactionStatus.NOT_APPLIED;
+                } else {
+                    status = new TransferTransaction(date, request.getAmountMinor(), to).tryApply(account);
+                }
+            }
+            case BALANCE -> status = TransactionStatus.APPLIED;
+            default -> throw new IllegalStateException("Unhandled request kind: " + request.getKind());
+        }
+        return new ShardResponse(status, account.getBalanceMinor());
+    }
+
+    private static TransactionStatus apply(BankAccount account, TransactionType type, long amountMinor, Instant date) {
+        return switch (type) {
+            case DEPOSIT -> new DepositTransaction(date, amountMinor).tryApply(account);
+            case WITHDRAWAL -> new WithdrawalTransaction(date, amountMinor).tryApply(account);
+            case REVERSAL -> {
+                if (!Money.isValidAmount(amountMinor)) {
+                    yield TransactionStatus.INVALID_AMOUNT;
+                }
+                account.credit(amountMinor); // An overflow throws and leaves the balance unchanged
+                yield TransactionStatus.APPLIED;
+            }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Message sent to the shard that owns an account. Requests hold only primitive fields and have a
+ * fixed binary form, so a transport can carry them between processes.
+ * APPLY and TRANSFER_LOCAL requests carry an idempotency key, a transaction ID unique to the request:
+ * the shard applies each key at most once, and CHECK asks it afterwards whether a key was applied.
+ */
+public class ShardRequest {
+
+    /**
+     * What the shard is asked to do.
+     */
+    public enum Kind {
+        // Create the account with an opening balance of amountMinor
+        OPEN,
+        // Apply a transaction of the given type to the account
+        APPLY,
+        // Move amountMinor from the account to toAccountId, both owned by this shard
+        TRANSFER_LOCAL,
+        // Report the balance of the account
+        BALANCE,
+        // Report whether the request with this idempotency key was applied; an unknown key is refused from
+        // then on, so a delayed copy of the request cannot be applied after the answer
+        CHECK
+    }
+
+    // Size of the binary form: kind, account, destination account, type, amount, date, idempotency key
+    public static final int ENCODED_BYTES = 1 + 8 + 8 + 1 + 8 + 8 + 8;
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final Kind kind;
+    private final long accountId;
+    private final long toAccountId;
+    private final TransactionType type;
+    private final long amountMinor;
+    private final long epochMillis;
+    private final long requestId;
+
+    private ShardRequest(Kind kind, long accountId, long toAccountId, TransactionType type, long amountMinor,
+                         long epochMillis, long requestId) {
+        this.kind = kind;
+        this.accountId = accountId;
+        this.toAccountId = toAccountId;
+        this.type = type;
+        this.amountMinor = amountMinor;
+        this.epochMillis = epochMillis;
+        this.requestId = requestId;
+    }
+
+    public static ShardRequest open(long accountId, long openingBalanceMinor) {
+        return new ShardRequest(Kind.OPEN, accountId, 0, TransactionType.DEPOSIT, openingBalanceMinor, 0, 0);
+    }
+
+    // A transaction on one account; requestId is its idempotency key, so a resent copy is not applied twice
+    public static ShardRequest apply(long accountId, @NotNull TransactionType type, long amountMinor, long epochMillis,
+                                     long requestId) {
+        return new ShardRequest(Kind.APPLY, accountId, 0, type, amountMinor, epochMillis, requestId);
+    }
+
+    public static ShardRequest transferLocal(long fromAccountId, long toAccountId, long amountMinor, long epochMillis,
+                                             long requestId) {
+        return new ShardRequest(Kind.TRANSFER_LOCAL, fromAccountId, toAccountId, TransactionType.WITHDRAWAL,
+                amountMinor, epochMillis, requestId);
+    }
+
+    public static ShardRequest balance(long accountId) {
+        return new ShardRequest(Kind.BALANCE, accountId, 0, TransactionType.DEPOSIT, 0, 0, 0);
+    }
+
+    // Asks the shard of accountId whether the request with idempotency key requestId was applied
+    public static ShardRequest check(long accountId, long requestId) {
+        return new ShardRequest(Kind.CHECK, accountId, 0, TransactionType.DEPOSIT, 0, 0, requestId);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public long getToAccountId() {
+        return toAccountId;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public long getAmountMinor() {
+        return amountMinor;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    // Idempotency key of an APPLY, TRANSFER_LOCAL or CHECK request; 0 for the other kinds
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Writes the request in its binary form at the buffer's position.
+     *
+     * @param out Buffer with at least ENCODED_BYTES remaining.
+     */
+    public void encode(@NotNull ByteBuffer out) {
+        out.put((byte) kind.ordinal())
+                .putLong(accountId)
+                .putLong(toAccountId)
+                .put(type.getCode())
+                .putLong(amountMinor)
+                .putLong(epochMillis)
+                .putLong(requestId);
+    }
+
+    /**
+     * Reads a request written by encode() from the buffer's position.
+     *
+     * @param in Buffer holding an encoded request.
+     * @return The decoded request.
+     */
+    public static ShardRequest decode(@NotNull ByteBuffer in) {
+        byte kind = in.get();
+        if (kind < 0 || kind >= KINDS.length) {
+            throw new IllegalArgumentException("Unknown shard request kind: " + kind);
+        }
+        long accountId = in.getLong();
+        long toAccountId = in.getLong();
+        TransactionType type = TransactionType.fromCode(in.get());
+        long amountMinor = in.getLong();
+        long epochMillis = in.getLong();
+        long requestId = in.getLong();
+        return new ShardRequest(KINDS[kind], accountId, toAccountId, type, amountMinor, epochMillis, requestId);
+    }
+}
@@ -0,0 +1,56 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reply from a shard: the outcome of the request and the balance of the account afterwards.
+ */
+public class ShardResponse {
+
+    // Size of the binary form: status, balance
+    public static final int ENCODED_BYTES = 1 + 8;
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final TransactionStatus status;
+    private final long balanceMinor;
+
+    public ShardResponse(@NotNull TransactionStatus status, long balanceMinor) {
+        this.status = status;
+        this.balanceMinor = balanceMinor;
+    }
+
+    public TransactionStatus getStatus() {
+        return status;
+    }
+
+    // Balance of the request's account after it was handled, in minor units; 0 if the account is unknown
+    public long getBalanceMinor() {
+        return balanceMinor;
+    }
+
+    /**
+     * Writes the response in its binary form at the buffer's position.
+     *
+     * @param out Buffer with at least ENCODED_BYTES remaining.
+     */
+    public void encode(@NotNull ByteBuffer out) {
+        out.put((byte) status.ordinal()).putLong(balanceMinor);
+    }
+
+    /**
+     * Reads a response written by encode() from the buffer's position.
+     *
+     * @param in Buffer holding an encoded response.
+     * @return The decoded response.
+     */
+    public static ShardResponse decode(@NotNull ByteBuffer in) {
+        byte status = in.get();
+        if (status < 0 || status >= STATUSES.length) {
+            throw new IllegalArgumentException("Unknown transaction status: " + status);
+        }
+        return new ShardResponse(STATUSES[status], in.getLong());
+    }
+}
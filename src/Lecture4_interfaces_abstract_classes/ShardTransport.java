@@ -0,0 +1,28 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Carries requests from a ShardedLedger to the shards and brings back their responses.
+ * Implementations decide where shards live: LoopbackTransport runs them all in this process,
+ * a network transport would send the encoded requests to other processes.
+ * Requests to one shard must be handled in the order they were sent.
+ */
+public interface ShardTransport extends AutoCloseable {
+
+    // Number of shards reachable through this transport, numbered from 0
+    int getShardCount();
+
+    /**
+     * Sends a request to a shard.
+     *
+     * @param shard   Shard number, from 0 to getShardCount() - 1.
+     * @param request Request to handle.
+     * @return Future completed with the shard's response, or exceptionally if the shard cannot be reached.
+     */
+    CompletableFuture<ShardResponse> send(int shard, ShardRequest request);
+
+    // Stops the transport once the requests already sent have been handled
+    @Override
+    void close();
+}
@@ -0,0 +1,223 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Client view of accounts hash-partitioned across shards. Every account belongs to exactly one
+ * shard, chosen from its account number, and every request for it goes to that shard through the
+ * ShardTransport.
+ *
+ * A transfer between two shards is a saga built from ordinary transactions: a withdrawal on the
+ * source shard, then a deposit on the destination shard, and if the deposit fails, a reversal of
+ * the withdrawal. Every request that changes a balance carries its own idempotency key, so a shard
+ * never applies it twice. A request that completes exceptionally, e.g. after a timeout, may still
+ * have been applied; the saga then sends a CHECK to that shard, which says whether the key was applied
+ * and fences it if not, and compensates only a withdrawal known to have been applied and a deposit
+ * known not to have been. The money is briefly in neither account while the saga runs, but it is never
+ * created or lost. A transfer within one shard is a single request and is atomic.
+ */
+public class ShardedLedger {
+
+    private final ShardTransport transport;
+    private final int shardCount;
+    private final TransactionIdGenerator ids;
+
+    /**
+     * Constructor for ShardedLedger, drawing idempotency keys from the default TransactionIdGenerator.
+     *
+     * @param transport Transport to the shards.
+     */
+    public ShardedLedger(@NotNull ShardTransport transport) {
+        this(transport, TransactionIdGenerator.getDefault());
+    }
+
+    /**
+     * Constructor for ShardedLedger.
+     *
+     * @param transport Transport to the shards.
+     * @param ids       Source of idempotency keys; each client process of the same shards needs its own node.
+     */
+    public ShardedLedger(@NotNull ShardTransport transport, @NotNull TransactionIdGenerator ids) {
+        this.transport = transport;
+        this.shardCount = transport.getShardCount();
+        this.ids = ids;
+    }
+
+    /**
+     * Returns the shard that owns an account.
+     *
+     * @param accountId Account number.
+     * @return Shard number, from 0 to the shard count - 1.
+     */
+    public int shardOf(long accountId) {
+        // Account numbers are often sequential, so mix all their bits before reducing
+        long mixed = accountId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(mixed ^ (mixed >>> 32), (long) shardCount);
+    }
+
+    /**
+     * Creates an account on its shard.
+     *
+     * @param accountId           Account number.
+     * @param openingBalanceMinor Opening balance in minor units.
+     * @return Future completed with APPLIED, or DUPLICATE if the account exists.
+     */
+    public CompletableFuture<TransactionStatus> open(long accountId, long openingBalanceMinor) {
+        return transport.send(shardOf(accountId), ShardRequest.open(accountId, openingBalanceMinor))
+                .thenApply(ShardResponse::getStatus);
+    }
+
+    /**
+     * Applies a deposit or withdrawal on the shard that owns the account. The transaction ID is the
+     * idempotency key, so posting the same transaction again is answered DUPLICATE.
+     *
+     * @param accountId Account number.
+     * @param t         Transaction to apply; its type, amount, date and ID are sent.
+     * @return Future completed with the outcome, NOT_APPLIED if the account does not exist.
+     */
+    public CompletableFuture<TransactionStatus> post(long accountId, @NotNull BaseTransaction t) {
+        return post(accountId, TransactionType.of(t), t.getAmount(), t.getEpochMillis(), t.getNumericID());
+    }
+
+    /**
+     * Applies a transaction on the shard that owns the account.
+     *
+     * @param accountId   Account number.
+     * @param type        DEPOSIT or WITHDRAWAL.
+     * @param amountMinor Amount in minor units.
+     * @param epochMillis Transaction date in epoch milliseconds.
+     * @return Future completed with the outcome, NOT_APPLIED if the account does not exist.
+     */
+    public CompletableFuture<TransactionStatus> post(long accountId, @NotNull TransactionType type, long amountMinor,
+                                                     long epochMillis) {
+        return post(accountId, type, amountMinor, epochMillis, ids.nextId());
+    }
+
+    /**
+     * Applies a transaction on the shard that owns the account, at most once per idempotency key.
+     * A post that completed exceptionally can safely be resent with the same key, or looked up with check().
+     *
+     * @param accountId   Account number.
+     * @param type        DEPOSIT or WITHDRAWAL.
+     * @param amountMinor Amount in minor units.
+     * @param epochMillis Transaction date in epoch milliseconds.
+     * @param requestId   Idempotency key, unique to this transaction.
+     * @return Future completed with the outcome; NOT_APPLIED if the account does not exist, DUPLICATE if the
+     *         key was applied before or fenced by check().
+     */
+    public CompletableFuture<TransactionStatus> post(long accountId, @NotNull TransactionType type, long amountMinor,
+                                                     long epochMillis, long requestId) {
+        return transport.send(shardOf(accountId), ShardRequest.apply(accountId, type, amountMinor, epochMillis,
+                requestId)).thenApply(ShardResponse::getStatus);
+    }
+
+    /**
+     * Asks the shard that owns an account whether a post with the given idempotency key was applied.
+     * If it was not, the key is fenced: the post can no longer be applied, even if it is still on its way.
+     *
+     * @param accountId Account number the post was for.
+     * @param requestId Idempotency key of the post.
+     * @return Future completed with true if the post was applied, false if it was not and never will be.
+     */
+    public CompletableFuture<Boolean> check(long accountId, long requestId) {
+        return transport.send(shardOf(accountId), ShardRequest.check(accountId, requestId))
+                .thenApply(response -> response.getStatus() == TransactionStatus.APPLIED);
+    }
+
+    /**
+     * Returns the balance of an account.
+     *
+     * @param accountId Account number.
+     * @return Future completed with the balance in minor units, or exceptionally if the account does not exist.
+     */
+    public CompletableFuture<Long> balance(long accountId) {
+        return transport.send(shardOf(accountId), ShardRequest.balance(accountId)).thenApply(response -> {
+            if (response.getStatus() != TransactionStatus.APPLIED) {
+                throw new IllegalArgumentException("Unknown account: " + accountId);
+            }
+            return response.getBalanceMinor();
+        });
+    }
+
+    /**
+     * Moves money from one account to another.
+     *
+     * @param fromAccountId Account to debit.
+     * @param toAccountId   Account to credit.
+     * @param amountMinor   Amount in minor units, must be non-negative.
+     * @param epochMillis   Transaction date in epoch milliseconds.
+     * @return Future completed with APPLIED if the money moved; otherwise INVALID_AMOUNT,
+     *         INSUFFICIENT_FUNDS, or NOT_APPLIED if either account does not exist. In every case
+     *         other than APPLIED both balances end as they started. Completes exceptionally if the
+     *         withdrawal or the deposit failed with an exception and was then found not to have been
+     *         applied; any applied withdrawal has then been reversed. Only if a check or the reversal
+     *         itself fails is the money possibly left out of both accounts.
+     */
+    public CompletableFuture<TransactionStatus> transfer(long fromAccountId, long toAccountId, long amountMinor,
+                                                         long epochMillis) {
+        if (!DepositTransaction.checkDepositAmount(amountMinor)) {
+            return CompletableFuture.completedFuture(TransactionStatus.INVALID_AMOUNT);
+        }
+        int fromShard = shardOf(fromAccountId);
+        int toShard = shardOf(toAccountId);
+        if (fromShard == toShard) {
+            return transport.send(fromShard,
+                    ShardRequest.transferLocal(fromAccountId, toAccountId, amountMinor, epochMillis, ids.nextId()))
+                    .thenApply(ShardResponse::getStatus);
+        }
+        long debitId = ids.nextId();
+        long creditId = ids.nextId();
+        return post(fromAccountId, TransactionType.WITHDRAWAL, amountMinor, epochMillis, debitId).handle(
+                (debit, debitFailure) -> {
+                    if (debitFailure != null) {
+                        // The withdrawal may have been applied before it failed; give the money back if so
+                        return check(fromAccountId, debitId).thenCompose(applied -> applied
+                                ? reverse(fromAccountId, amountMinor, epochMillis).thenApply(r -> rethrow(debitFailure))
+                                : CompletableFuture.<TransactionStatus>failedFuture(debitFailure));
+                    }
+                    if (debit != TransactionStatus.APPLIED) {
+                        return CompletableFuture.completedFuture(debit);
+                    }
+                    return deposit(fromAccountId, toAccountId, amountMinor, epochMillis, creditId);
+                }).thenCompose(outcome -> outcome);
+    }
+
+    // Second step of a transfer: the deposit, and the reversal of the withdrawal if the deposit did not happen
+    private CompletableFuture<TransactionStatus> deposit(long fromAccountId, long toAccountId, long amountMinor,
+                                                         long epochMillis, long creditId) {
+        return post(toAccountId, TransactionType.DEPOSIT, amountMinor, epochMillis, creditId).handle(
+                (credit, failure) -> {
+                    if (failure == null) {
+                        if (credit == TransactionStatus.APPLIED) {
+                            return CompletableFuture.completedFuture(credit);
+                        }
+                        // The shard refused the deposit, so it certainly did not happen
+                        return reverse(fromAccountId, amountMinor, epochMillis).thenApply(r -> credit);
+                    }
+                    // The deposit may have been applied before it failed: then the transfer is complete, and
+                    // reversing the withdrawal would create money. Otherwise check() has fenced it for good.
+                    return check(toAccountId, creditId).thenCompose(applied -> applied
+                            ? CompletableFuture.completedFuture(TransactionStatus.APPLIED)
+                            : reverse(fromAccountId, amountMinor, epochMillis).thenApply(r -> rethrow(failure)));
+                }).thenCompose(outcome -> outcome);
+    }
+
+    // Compensation step of a transfer: credits a withdrawal back to its account
+    private CompletableFuture<TransactionStatus> reverse(long accountId, long amountMinor, long epochMillis) {
+        return post(accountId, TransactionType.REVERSAL, amountMinor, epochMillis).thenApply(reversal -> {
+            if (reversal != TransactionStatus.APPLIED) {
+                throw new IllegalStateException("Withdrawal from account " + accountId
+                        + " could not be reversed: " + reversal);
+            }
+            return reversal;
+        });
+    }
+
+    // Completes a stage with the failure of an earlier one
+    private static TransactionStatus rethrow(Throwable failure) {
+        throw failure instanceof CompletionException c ? c : new CompletionException(failure);
+    }
+}
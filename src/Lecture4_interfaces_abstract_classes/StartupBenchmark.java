@@ -0,0 +1,65 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Measures startup time of a JournaledLedger as the history grows.
+ * For each history size the ledger posts that many transactions, writes a snapshot shortly before
+ * the end, and is reopened; the time to the first posted transaction after reopening is compared
+ * with rebuilding the balances by replaying the whole journal.
+ * Runs in temporary directories that are deleted afterwards.
+ *
+ * Settings (system properties):
+ *   bench.sizes     comma-separated history sizes (default 1000000,10000000; add 100000000 given the disk space)
+ *   bench.accounts  number of accounts (default 100,000)
+ *   bench.tail      transactions posted after the last snapshot (default 100,000)
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        String[] sizes = System.getProperty("bench.sizes", "1000000,10000000").split(",");
+        int accounts = Integer.getInteger("bench.accounts", 100_000);
+        int tail = Integer.getInteger("bench.tail", 100_000);
+        Instant date = Instant.now();
+
+        for (String size : sizes) {
+            long history = Long.parseLong(size.trim());
+            Path directory = Files.createTempDirectory("startup-bench");
+            try {
+                try (JournaledLedger ledger = JournaledLedger.open(directory)) {
+                    for (long i = 0; i < history; i++) {
+                        if (i == history - tail) {
+                            ledger.snapshot();
+                        }
+                        ledger.post(i % accounts, new DepositTransaction(date, 100));
+                    }
+                    ledger.sync();
+                }
+
+                long start = System.nanoTime();
+                try (JournaledLedger ledger = JournaledLedger.open(directory)) {
+                    ledger.post(0, new DepositTransaction(date, 100));
+                    long snapshotNanos = System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    TransactionJournal.recoverBalances(directory);
+                    long fullReplayNanos = System.nanoTime() - start;
+
+                    System.out.printf("%,d transactions: first transaction after %.1f ms with snapshot, "
+                                    + "full replay takes %.1f ms (%d accounts)%n",
+                            history, snapshotNanos / 1e6, fullReplayNanos / 1e6, ledger.getAccountCount());
+                }
+            } finally {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Statement of one account for one calendar month: opening and closing balance, the total of each
+ * transaction type and the number of transactions. Amounts are in minor units. Balances are relative
+ * to the account's recorded history, i.e. the sum of every recorded transaction before the period.
+ * Immutable; StatementCache replaces a cached statement with an updated copy when history changes.
+ */
+public final class Statement {
+
+    private final long accountId;
+    private final int month;
+    private final long openingBalance;
+    private final long closingBalance;
+    private final long[] totals; // Indexed by type code
+    private final int count;
+
+    Statement(long accountId, int month, long openingBalance, long closingBalance, long[] totals, int count) {
+        this.accountId = accountId;
+        this.month = month;
+        this.openingBalance = openingBalance;
+        this.closingBalance = closingBalance;
+        this.totals = totals;
+        this.count = count;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    // Month index, year * 12 + (month - 1); see StatementCache.monthOf()
+    public int getMonth() {
+        return month;
+    }
+
+    public int getYear() {
+        return Math.floorDiv(month, 12);
+    }
+
+    // Calendar month, 1 to 12
+    public int getMonthOfYear() {
+        return Math.floorMod(month, 12) + 1;
+    }
+
+    public long getFromMillis() {
+        return StatementCache.monthStartMillis(month);
+    }
+
+    // End of the period, exclusive
+    public long getToMillis() {
+        return StatementCache.monthStartMillis(month + 1);
+    }
+
+    public long getOpeningBalance() {
+        return openingBalance;
+    }
+
+    public long getClosingBalance() {
+        return closingBalance;
+    }
+
+    /**
+     * Returns the total of one transaction type in the period.
+     *
+     * @param type Transaction type.
+     * @return Sum of the amounts of that type, in minor units.
+     */
+    public long getTotal(@NotNull TransactionType type) {
+        return totals[type.getCode()];
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns a copy with one more transaction in the period.
+     *
+     * @param type   Transaction type.
+     * @param amount Transaction amount in minor units.
+     * @return The updated statement.
+     */
+    Statement plus(TransactionType type, long amount) {
+        long[] updated = totals.clone();
+        updated[type.getCode()] = Money.add(updated[type.getCode()], amount);
+        return new Statement(accountId, month, openingBalance,
+                Money.add(closingBalance, type.balanceDelta(amount)), updated, count + 1);
+    }
+
+    /**
+     * Returns a copy whose balances are moved by a transaction recorded in an earlier period.
+     *
+     * @param delta Signed balance change in minor units.
+     * @return The updated statement.
+     */
+    Statement shiftedBy(long delta) {
+        return new Statement(accountId, month, Money.add(openingBalance, delta),
+                Money.add(closingBalance, delta), totals, count);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Statement %d %04d-%02d: opening %s, deposits %s, withdrawals %s, reversals %s, closing %s, %d transactions",
+                accountId, getYear(), getMonthOfYear(), Money.format(openingBalance),
+                Money.format(getTotal(TransactionType.DEPOSIT)), Money.format(getTotal(TransactionType.WITHDRAWAL)),
+                Money.format(getTotal(TransactionType.REVERSAL)), Money.format(closingBalance), count);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Statement s && accountId == s.accountId && month == s.month
+                && openingBalance == s.openingBalance && closingBalance == s.closingBalance
+                && count == s.count && Arrays.equals(totals, s.totals);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(accountId) * 31 + month;
+    }
+}
@@ -0,0 +1,425 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.YearMonth;
+
+/**
+ * Size-bounded cache of monthly account statements computed from a TransactionHistoryIndex.
+ *
+ * A miss walks the account's rows for the month through an index cursor. The opening balance is taken
+ * from the cached statement of the previous month when there is one, and otherwise summed from the
+ * account's earlier rows. Transactions are recorded through this cache, which keeps cached statements
+ * current instead of dropping them: a transaction updates the statement of its own month and moves the
+ * balances of the account's cached later months, so a back-dated transaction never leaves a stale entry.
+ *
+ * Eviction is either plain LRU or W-TinyLFU: new statements enter a small LRU window, and a statement
+ * leaving the window only displaces the main area's least recently used statement if it has been asked
+ * for more often, by the estimate of a count-min sketch that is halved periodically so old popularity fades.
+ * That keeps one-off requests, such as a batch export, from flushing the statements asked for every day.
+ *
+ * Every method runs under the cache's monitor, which also guards the index: do not add rows to the
+ * index except through this cache. Hits and misses are counted; miss latency is recorded for every miss,
+ * hit latency for one hit in HIT_SAMPLE_INTERVAL, as reading the clock costs about as much as a hit.
+ */
+public class StatementCache {
+
+    /**
+     * Eviction policy.
+     */
+    public enum Policy {
+        LRU,
+        WINDOW_TINY_LFU
+    }
+
+    public static final int HIT_SAMPLE_INTERVAL = 16;
+
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final int TYPE_COUNT = TransactionType.values().length;
+
+    // Share of the capacity given to the admission window under WINDOW_TINY_LFU
+    private static final int WINDOW_PERCENT = 1;
+
+    // One cached statement; linked into a hash chain and into the window or main LRU list
+    private static final class Entry {
+        final long accountId;
+        final int month;
+        Statement statement;
+        Entry prev;
+        Entry next;
+        Entry chain;
+        boolean inMain;
+
+        Entry(long accountId, int month, Statement statement) {
+            this.accountId = accountId;
+            this.month = month;
+            this.statement = statement;
+        }
+    }
+
+    // Count-min sketch of request frequency: four rows of saturating 4-bit counters, halved every sampleSize increments
+    private static final class FrequencySketch {
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] rows = new byte[4][];
+        private final int mask;
+        private final int sampleSize;
+        private int increments;
+
+        FrequencySketch(int maxEntries) {
+            int width = Integer.highestOneBit(Math.max(maxEntries, 8) - 1) << 1;
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = new byte[width];
+            }
+            mask = width - 1;
+            sampleSize = (int) Math.min(10L * width, Integer.MAX_VALUE);
+        }
+
+        void increment(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < rows.length; i++) {
+                int slot = (h1 + i * h2) & mask;
+                if (rows[i][slot] < MAX_COUNT) {
+                    rows[i][slot]++;
+                }
+            }
+            if (++increments == sampleSize) {
+                age();
+            }
+        }
+
+        int frequency(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            int min = MAX_COUNT;
+            for (int i = 0; i < rows.length; i++) {
+                min = Math.min(min, rows[i][(h1 + i * h2) & mask]);
+            }
+            return min;
+        }
+
+        private void age() {
+            for (byte[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            increments = sampleSize / 2;
+        }
+    }
+
+    private final TransactionHistoryIndex index;
+    private final TransactionHistoryIndex.Cursor cursor;
+    private final Entry[] table;
+    private final int tableMask;
+    private final Entry window = new Entry(0, 0, null); // Sentinels of the circular LRU lists, most recent first
+    private final Entry main = new Entry(0, 0, null);
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final FrequencySketch sketch; // null under LRU
+    private int windowSize;
+    private int mainSize;
+    private int latestMonth = Integer.MIN_VALUE; // Latest month ever cached; later months need no update
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long updates;
+    private int hitTicks;
+    private final LatencyHistogram hitLatency = new LatencyHistogram();
+    private final LatencyHistogram missLatency = new LatencyHistogram();
+
+    /**
+     * Constructor for StatementCache with W-TinyLFU eviction.
+     *
+     * @param index      Index the statements are computed from; add rows only through this cache.
+     * @param maxEntries Maximum number of statements kept.
+     */
+    public StatementCache(@NotNull TransactionHistoryIndex index, int maxEntries) {
+        this(index, maxEntries, Policy.WINDOW_TINY_LFU);
+    }
+
+    /**
+     * Constructor for StatementCache.
+     *
+     * @param index      Index the statements are computed from; add rows only through this cache.
+     * @param maxEntries Maximum number of statements kept; must be positive.
+     * @param policy     Eviction policy.
+     */
+    public StatementCache(@NotNull TransactionHistoryIndex index, int maxEntries, @NotNull Policy policy) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+        }
+        this.index = index;
+        this.cursor = index.newCursor();
+        int buckets = Integer.highestOneBit(Math.max(maxEntries + maxEntries / 3, 2) - 1) << 1;
+        this.table = new Entry[buckets];
+        this.tableMask = buckets - 1;
+        if (policy == Policy.LRU) {
+            this.windowCapacity = maxEntries;
+            this.sketch = null;
+        } else {
+            this.windowCapacity = Math.max(1, maxEntries * WINDOW_PERCENT / 100);
+            this.sketch = new FrequencySketch(maxEntries);
+        }
+        this.mainCapacity = maxEntries - windowCapacity;
+        window.prev = window.next = window;
+        main.prev = main.next = main;
+    }
+
+    /**
+     * Returns the statement of an account for a month, computing and caching it on a miss.
+     *
+     * @param accountId Account number.
+     * @param month     Calendar month, in UTC.
+     * @return The statement.
+     */
+    public Statement get(long accountId, @NotNull YearMonth month) {
+        return get(accountId, month.getYear() * 12 + month.getMonthValue() - 1);
+    }
+
+    /**
+     * Returns the statement of an account for a month, computing and caching it on a miss.
+     *
+     * @param accountId Account number.
+     * @param month     Month index, year * 12 + (month - 1); see monthOf().
+     * @return The statement.
+     */
+    public synchronized Statement get(long accountId, int month) {
+        boolean sampled = (++hitTicks & (HIT_SAMPLE_INTERVAL - 1)) == 0;
+        long start = sampled ? System.nanoTime() : 0;
+        long hash = hash(accountId, month);
+        if (sketch != null) {
+            sketch.increment(hash);
+        }
+        Entry e = find(hash, accountId, month);
+        if (e != null) {
+            hits++;
+            moveToFront(e, e.inMain ? main : window);
+            if (sampled) {
+                hitLatency.record(System.nanoTime() - start);
+            }
+            return e.statement;
+        }
+        misses++;
+        if (!sampled) {
+            start = System.nanoTime();
+        }
+        Statement statement = compute(accountId, month);
+        insert(hash, new Entry(accountId, month, statement));
+        missLatency.record(System.nanoTime() - start);
+        return statement;
+    }
+
+    /**
+     * Applies a transaction to an account and, if it was applied, records it in the history.
+     *
+     * @param account     Account to post to; its account number keys the statements.
+     * @param transaction Deposit or withdrawal to apply.
+     * @return The outcome of the transaction.
+     * @throws IllegalArgumentException if the transaction is neither a deposit nor a withdrawal; nothing is applied.
+     */
+    public TransactionStatus apply(@NotNull BankAccount account, @NotNull BaseTransaction transaction) {
+        TransactionType type = TransactionType.of(transaction); // Before applying, as only these types are recorded
+        TransactionStatus status = transaction.tryApply(account);
+        if (status == TransactionStatus.APPLIED) {
+            record(account.getAccountId(), type, transaction.getAmount(), transaction.getEpochMillis(),
+                    transaction.getNumericID());
+        }
+        return status;
+    }
+
+    /**
+     * Adds a transaction to the history and brings the account's cached statements up to date:
+     * the statement of the transaction's month is updated, and later months' balances are moved.
+     *
+     * @param accountId   Account the transaction belongs to.
+     * @param type        Transaction type.
+     * @param amount      Transaction amount in minor units.
+     * @param epochMillis Transaction date in epoch milliseconds.
+     * @param id          Numeric transaction ID.
+     * @return Index of the new row in the store.
+     */
+    public synchronized int record(long accountId, @NotNull TransactionType type, long amount, long epochMillis, long id) {
+        int row = index.add(accountId, type, amount, epochMillis, id);
+        int month = monthOf(epochMillis);
+        long delta = type.balanceDelta(amount);
+        // One probe per month up to the latest cached one; a transaction in the current month costs one
+        for (int m = month; m <= latestMonth; m++) {
+            Entry e = find(hash(accountId, m), accountId, m);
+            if (e != null) {
+                e.statement = m == month ? e.statement.plus(type, amount) : e.statement.shiftedBy(delta);
+                updates++;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Returns the month index of a date, year * 12 + (month - 1), in UTC.
+     *
+     * @param epochMillis Date in epoch milliseconds.
+     * @return The month index.
+     */
+    public static int monthOf(long epochMillis) {
+        // Inverse of TransactionImporter.epochDay(), see http://howardhinnant.github.io/date_algorithms.html
+        long z = Math.floorDiv(epochMillis, DAY_MILLIS) + 719_468;
+        long era = Math.floorDiv(z, 146_097);
+        long dayOfEra = z - era * 146_097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153; // March = 0
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+        return Math.toIntExact(year * 12 + month - 1);
+    }
+
+    // First millisecond of a month index, in UTC
+    static long monthStartMillis(int month) {
+        return TransactionImporter.epochDay(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1, 1) * DAY_MILLIS;
+    }
+
+    public synchronized int size() {
+        return windowSize + mainSize;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    // Share of get() calls answered from the cache, 0 before the first call
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    // Number of cached statements brought up to date by record()
+    public synchronized long getUpdateCount() {
+        return updates;
+    }
+
+    public LatencyHistogram getHitLatency() {
+        return hitLatency;
+    }
+
+    public LatencyHistogram getMissLatency() {
+        return missLatency;
+    }
+
+    private Statement compute(long accountId, int month) {
+        long from = monthStartMillis(month);
+        long opening = 0;
+        Entry previous = find(hash(accountId, month - 1), accountId, month - 1);
+        if (previous != null) {
+            opening = previous.statement.getClosingBalance();
+        } else {
+            index.range(accountId, Long.MIN_VALUE, from, cursor);
+            while (cursor.next()) {
+                TransactionStore.View view = cursor.current();
+                opening = Money.add(opening, view.getType().balanceDelta(view.getAmount()));
+            }
+        }
+        long[] totals = new long[TYPE_COUNT];
+        long closing = opening;
+        int count = 0;
+        index.range(accountId, from, monthStartMillis(month + 1), cursor);
+        while (cursor.next()) {
+            TransactionStore.View view = cursor.current();
+            TransactionType type = view.getType();
+            long amount = view.getAmount();
+            totals[type.getCode()] = Money.add(totals[type.getCode()], amount);
+            closing = Money.add(closing, type.balanceDelta(amount));
+            count++;
+        }
+        return new Statement(accountId, month, opening, closing, totals, count);
+    }
+
+    private void insert(long hash, Entry e) {
+        int bucket = (int) hash & tableMask;
+        e.chain = table[bucket];
+        table[bucket] = e;
+        linkFirst(e, window);
+        windowSize++;
+        latestMonth = Math.max(latestMonth, e.month);
+        if (windowSize <= windowCapacity) {
+            return;
+        }
+        Entry candidate = window.prev;
+        unlink(candidate);
+        windowSize--;
+        if (mainSize < mainCapacity) {
+            candidate.inMain = true;
+            linkFirst(candidate, main);
+            mainSize++;
+            return;
+        }
+        Entry victim = main.prev;
+        if (victim != main && sketch.frequency(hash(candidate.accountId, candidate.month))
+                > sketch.frequency(hash(victim.accountId, victim.month))) {
+            unlink(victim);
+            remove(victim);
+            candidate.inMain = true;
+            linkFirst(candidate, main);
+        } else {
+            remove(candidate);
+        }
+        evictions++;
+    }
+
+    private Entry find(long hash, long accountId, int month) {
+        for (Entry e = table[(int) hash & tableMask]; e != null; e = e.chain) {
+            if (e.accountId == accountId && e.month == month) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    // Removes an entry from its hash chain
+    private void remove(Entry e) {
+        int bucket = (int) hash(e.accountId, e.month) & tableMask;
+        if (table[bucket] == e) {
+            table[bucket] = e.chain;
+            return;
+        }
+        for (Entry p = table[bucket]; p != null; p = p.chain) {
+            if (p.chain == e) {
+                p.chain = e.chain;
+                return;
+            }
+        }
+    }
+
+    private static void moveToFront(Entry e, Entry head) {
+        if (head.next != e) {
+            unlink(e);
+            linkFirst(e, head);
+        }
+    }
+
+    private static void linkFirst(Entry e, Entry head) {
+        e.prev = head;
+        e.next = head.next;
+        head.next.prev = e;
+        head.next = e;
+    }
+
+    private static void unlink(Entry e) {
+        e.prev.next = e.next;
+        e.next.prev = e.prev;
+    }
+
+    private static long hash(long accountId, int month) {
+        long h = (accountId * 31 + month) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,107 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Measures StatementCache on a skewed request mix: statements are requested by (account, month) with
+ * Zipf-distributed popularity, as when a few customers and dashboards ask for the same statements
+ * over and over. Compares LRU and W-TinyLFU at several cache sizes with computing every statement.
+ *
+ * Settings (system properties):
+ *   bench.rows      transactions in the history (default 5,000,000)
+ *   bench.accounts  number of accounts (default 100,000)
+ *   bench.zipf      Zipf exponent of the request mix (default 0.99)
+ */
+public class StatementCacheBenchmark {
+
+    private static final int MONTHS = 12;
+    private static final int TRACE_LENGTH = 1 << 22;
+
+    public static void main(String[] args) {
+        int rowCount = Integer.getInteger("bench.rows", 5_000_000);
+        int accountCount = Integer.getInteger("bench.accounts", 100_000);
+        double exponent = Double.parseDouble(System.getProperty("bench.zipf", "0.99"));
+        int firstMonth = StatementCache.monthOf(TransactionIdGenerator.EPOCH_MILLIS);
+        long start = StatementCache.monthStartMillis(firstMonth);
+        long span = StatementCache.monthStartMillis(firstMonth + MONTHS) - start;
+
+        TransactionStore store = new TransactionStore(rowCount);
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < rowCount; i++) {
+            TransactionType type = i % 4 == 3 ? TransactionType.WITHDRAWAL : TransactionType.DEPOSIT;
+            store.add(random.nextInt(accountCount), type, 100 + random.nextInt(10_000), start + span * i / rowCount, i);
+        }
+        TransactionHistoryIndex index = new TransactionHistoryIndex(store);
+
+        // Request trace over every (account, month) key; rank r is requested with weight 1 / (r + 1)^exponent
+        int keyCount = accountCount * MONTHS;
+        int[] trace = zipfTrace(keyCount, exponent, random);
+        long[] traceAccounts = new long[TRACE_LENGTH];
+        int[] traceMonths = new int[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            traceAccounts[i] = trace[i] / MONTHS;
+            traceMonths[i] = firstMonth + trace[i] % MONTHS;
+        }
+        System.out.printf("%,d transactions, %,d accounts, %,d statement keys, Zipf exponent %.2f%n%n",
+                rowCount, accountCount, keyCount, exponent);
+
+        Bench.printHeader();
+        StatementCache uncached = new StatementCache(index, 1, StatementCache.Policy.LRU);
+        Bench.run("computed on every request", i -> {
+            int t = i & (TRACE_LENGTH - 1);
+            return uncached.get(traceAccounts[t], traceMonths[t]).getClosingBalance();
+        });
+        for (double share : new double[] {0.001, 0.01, 0.05}) {
+            int size = Math.max(1, (int) (keyCount * share));
+            for (StatementCache.Policy policy : StatementCache.Policy.values()) {
+                StatementCache cache = new StatementCache(index, size, policy);
+                Bench.run(policy + ", " + size + " entries", i -> {
+                    int t = i & (TRACE_LENGTH - 1);
+                    return cache.get(traceAccounts[t], traceMonths[t]).getClosingBalance();
+                });
+                System.out.printf("    hit ratio %.3f, %d evictions, hit p50/p99 %d/%d ns, miss p50/p99 %d/%d ns%n",
+                        cache.getHitRatio(), cache.getEvictionCount(),
+                        cache.getHitLatency().getValueAtPercentile(50), cache.getHitLatency().getValueAtPercentile(99),
+                        cache.getMissLatency().getValueAtPercentile(50), cache.getMissLatency().getValueAtPercentile(99));
+            }
+        }
+
+        // Recording keeps cached statements current; a back-dated transaction also moves later months
+        StatementCache cache = new StatementCache(index, keyCount / 20);
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            cache.get(traceAccounts[i], traceMonths[i]);
+        }
+        long lastMonth = StatementCache.monthStartMillis(firstMonth + MONTHS - 1);
+        int[] nextId = {rowCount};
+        Bench.run("record, current month", 100_000, i -> cache.record(trace[i & (TRACE_LENGTH - 1)] / MONTHS,
+                TransactionType.DEPOSIT, 100, lastMonth, nextId[0]++));
+        Bench.run("record, back-dated 11 months", 100_000, i -> cache.record(trace[i & (TRACE_LENGTH - 1)] / MONTHS,
+                TransactionType.DEPOSIT, 100, start, nextId[0]++));
+        System.out.printf("    %d cached statements updated%n", cache.getUpdateCount());
+    }
+
+    // Draws TRACE_LENGTH keys; ranks are assigned to keys in random order so hot keys are scattered
+    private static int[] zipfTrace(int keyCount, double exponent, SplittableRandom random) {
+        double[] cumulative = new double[keyCount];
+        double sum = 0;
+        for (int r = 0; r < keyCount; r++) {
+            sum += 1 / Math.pow(r + 1, exponent);
+            cumulative[r] = sum;
+        }
+        int[] keyOfRank = new int[keyCount];
+        for (int r = 0; r < keyCount; r++) {
+            int j = random.nextInt(r + 1);
+            keyOfRank[r] = keyOfRank[j];
+            keyOfRank[j] = r;
+        }
+        int[] trace = new int[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            trace[i] = keyOfRank[rank < 0 ? -rank - 1 : rank];
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,78 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * LatencyHistogram split into stripes so that threads recording at the same time rarely touch the
+ * same counters. Each thread records into the stripe picked by its thread ID; reads merge all stripes.
+ * Recording never allocates.
+ */
+public class StripedLatencyHistogram {
+
+    private final LatencyHistogram[] stripes;
+    private final int mask;
+
+    // Constructor for StripedLatencyHistogram with one stripe per processor, rounded up to a power of two
+    public StripedLatencyHistogram() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor for StripedLatencyHistogram.
+     *
+     * @param stripeCount Number of stripes, rounded up to a power of two; must be positive.
+     */
+    public StripedLatencyHistogram(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive: " + stripeCount);
+        }
+        int size = Integer.highestOneBit(stripeCount - 1) << 1;
+        stripes = new LatencyHistogram[Math.max(size, 1)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new LatencyHistogram();
+        }
+        mask = stripes.length - 1;
+    }
+
+    /**
+     * Records one value in the calling thread's stripe.
+     *
+     * @param nanos Latency in nanoseconds; negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        // Thread IDs are sequential, so consecutive threads land in different stripes
+        stripes[(int) Thread.currentThread().threadId() & mask].record(nanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LatencyHistogram stripe : stripes) {
+            count += stripe.getCount();
+        }
+        return count;
+    }
+
+    public long getMax() {
+        long max = 0;
+        for (LatencyHistogram stripe : stripes) {
+            max = Math.max(max, stripe.getMax());
+        }
+        return max;
+    }
+
+    /**
+     * Returns the value at a percentile over all stripes.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return Upper bound of the bucket holding that percentile, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        long total = 0;
+        long max = 0;
+        for (LatencyHistogram stripe : stripes) {
+            total += stripe.getCount();
+            max = Math.max(max, stripe.getMax());
+            stripe.addCountsTo(counts);
+        }
+        return LatencyHistogram.valueAtPercentile(counts, total, max, percentile);
+    }
+}
@@ -0,0 +1,65 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Benchmarks for the Lecture 4 transaction classes: construction, the deposit and
+ * withdrawal apply paths, ID generation and the columnar store.
+ * Events go to TransactionEventSink.NO_OP so console output is not measured.
+ */
+public class TransactionBenchmarks {
+
+    public static void main(String[] args) {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        Calendar date = new GregorianCalendar(2024, Calendar.JANUARY, 3);
+        BankAccount account = new BankAccount(0);
+        DepositTransaction deposit = new DepositTransaction(100, date);
+        WithdrawalTransaction withdrawal = new WithdrawalTransaction(100, date);
+        WithdrawalTransaction overdraft = new WithdrawalTransaction(Integer.MAX_VALUE, date);
+        TransactionIdGenerator ids = TransactionIdGenerator.getDefault();
+
+        Bench.printHeader();
+
+        // Object construction
+        Bench.run("DepositTransaction.new", i -> new DepositTransaction(i, date).getNumericID());
+        Bench.run("WithdrawalTransaction.new", i -> new WithdrawalTransaction(i, date).getNumericID());
+
+        // Date getters: Calendar adapter against the zero-copy accessors
+        Bench.run("BaseTransaction.getDate (Calendar)", i -> deposit.getDate().get(Calendar.MONTH));
+        Bench.run("BaseTransaction.getInstant", i -> deposit.getInstant().getEpochSecond());
+        Bench.run("BaseTransaction.getEpochMillis", i -> deposit.getEpochMillis());
+
+        // Apply paths
+        Bench.run("DepositTransaction.apply", i -> {
+            deposit.apply(account);
+            return account.getBalanceMinor();
+        });
+        Bench.run("Deposit+Withdrawal.apply", i -> {
+            deposit.apply(account);
+            withdrawal.apply(account);
+            return account.getBalanceMinor();
+        });
+        Bench.run("WithdrawalTransaction.apply (insufficient)", i -> {
+            overdraft.apply(account);
+            return account.getBalanceMinor();
+        });
+
+        // Transaction IDs: previous Calendar.toString() + random scheme against the generator
+        Bench.run("ID legacy date.toString()+random", i -> (date.toString() + (int) (Math.random() * 10000)).length());
+        Bench.run("ID TransactionIdGenerator.nextId", i -> ids.nextId());
+        Bench.run("ID TransactionIdGenerator.encode", i -> TransactionIdGenerator.encode(ids.nextId()).length());
+
+        // Columnar store: amortised bytes per appended row
+        TransactionStore[] store = {new TransactionStore()};
+        Bench.run("TransactionStore.add", i -> {
+            if (store[0].size() == 1 << 20) {
+                store[0] = new TransactionStore();
+            }
+            return store[0].add(i & 1023, TransactionType.DEPOSIT, i, 0L, i);
+        });
+        System.out.println("TransactionStore bytes per row: " + TransactionStore.BYTES_PER_ROW);
+    }
+}
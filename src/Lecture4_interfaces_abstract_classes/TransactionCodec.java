@@ -0,0 +1,257 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * Compact binary form for batches of deposits, withdrawals and reversals, for moving them between
+ * processes or onto disk.
+ *
+ * A batch is a version byte, the records, and an end tag. Each record is a type tag followed by four
+ * varints (7 bits per byte, low bits first): the account number, the amount (zigzag, so a negative
+ * amount stays short), and the date and ID as zigzag differences from the previous record of the batch.
+ * IDs from TransactionIdGenerator and dates within a batch are close together, so a typical record
+ * takes 10 to 15 bytes instead of the 34 of a fixed-width encoding.
+ *
+ * Encoder and Decoder write and read ByteBuffers directly, heap or direct, and keep only the previous
+ * date and ID between records, so neither allocates per record. Transfers are not encoded, as their
+ * destination is an account object rather than a value.
+ */
+public final class TransactionCodec {
+
+    // Format version written at the start of every batch; decoders reject any other
+    public static final byte VERSION = 1;
+
+    // Largest encoded record: a tag and four varints of up to 10 bytes
+    public static final int MAX_RECORD_BYTES = 1 + 4 * 10;
+
+    // Tag after the last record of a batch; record tags are type codes
+    private static final byte END = (byte) 0xFF;
+
+    private TransactionCodec() {
+    }
+
+    /**
+     * Writes batches. Reuse one Encoder for any number of batches, one at a time.
+     */
+    public static final class Encoder {
+
+        private long previousMillis;
+        private long previousId;
+
+        /**
+         * Starts a batch at the buffer's position.
+         *
+         * @param out Buffer to write to.
+         */
+        public void begin(@NotNull ByteBuffer out) {
+            out.put(VERSION);
+            previousMillis = 0;
+            previousId = 0;
+        }
+
+        /**
+         * Writes one record.
+         *
+         * @param out         Buffer with at least MAX_RECORD_BYTES remaining.
+         * @param accountId   Account the transaction belongs to.
+         * @param type        Transaction type.
+         * @param amount      Transaction amount in minor units.
+         * @param epochMillis Transaction date in epoch milliseconds.
+         * @param id          Numeric transaction ID.
+         */
+        public void encode(@NotNull ByteBuffer out, long accountId, @NotNull TransactionType type, long amount,
+                           long epochMillis, long id) {
+            out.put(type.getCode());
+            putVarLong(out, accountId);
+            putVarLong(out, zigzag(amount));
+            putVarLong(out, zigzag(epochMillis - previousMillis));
+            putVarLong(out, zigzag(id - previousId));
+            previousMillis = epochMillis;
+            previousId = id;
+        }
+
+        /**
+         * Writes one transaction object.
+         *
+         * @param out       Buffer with at least MAX_RECORD_BYTES remaining.
+         * @param accountId Account the transaction belongs to.
+         * @param t         Deposit or withdrawal.
+         * @throws IllegalArgumentException for a transfer; nothing is written.
+         */
+        public void encode(@NotNull ByteBuffer out, long accountId, @NotNull BaseTransaction t) {
+            encode(out, accountId, TransactionType.of(t), t.getAmount(), t.getEpochMillis(), t.getNumericID());
+        }
+
+        /**
+         * Writes one transaction record.
+         *
+         * @param out       Buffer with at least MAX_RECORD_BYTES remaining.
+         * @param accountId Account the transaction belongs to.
+         * @param t         Deposit, withdrawal or reversal.
+         * @throws IllegalArgumentException for a transfer; nothing is written.
+         */
+        public void encode(@NotNull ByteBuffer out, long accountId, @NotNull TransactionRecord t) {
+            TransactionType type = switch (t) {
+                case TransactionRecord.Deposit d -> TransactionType.DEPOSIT;
+                case TransactionRecord.Withdrawal w -> TransactionType.WITHDRAWAL;
+                case TransactionRecord.Reversal r -> TransactionType.REVERSAL;
+                case TransactionRecord.Transfer x -> throw new IllegalArgumentException("A transfer posts to two accounts");
+            };
+            encode(out, accountId, type, t.amount(), t.epochMillis(), t.id());
+        }
+
+        /**
+         * Ends the batch.
+         *
+         * @param out Buffer with at least one byte remaining.
+         */
+        public void end(@NotNull ByteBuffer out) {
+            out.put(END);
+        }
+    }
+
+    /**
+     * Reads batches written by an Encoder. Reuse one Decoder for any number of batches, one at a time.
+     */
+    public static final class Decoder {
+
+        // Fields of the last record read; its date and ID are the base for the next record's differences
+        private long accountId;
+        private long amount;
+        private long epochMillis;
+        private long id;
+
+        /**
+         * Starts reading a batch at the buffer's position.
+         *
+         * @param in Buffer holding an encoded batch.
+         * @throws IllegalArgumentException if the buffer is empty or the batch was written in another format version.
+         */
+        public void begin(@NotNull ByteBuffer in) {
+            if (!in.hasRemaining()) {
+                throw new IllegalArgumentException("Truncated transaction batch: no version byte");
+            }
+            byte version = in.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported transaction batch version: " + version);
+            }
+            epochMillis = 0;
+            id = 0;
+        }
+
+        /**
+         * Reads the next record into a reusable carrier, without allocating.
+         *
+         * @param in   Buffer positioned on a record or the end tag.
+         * @param into Carrier to overwrite.
+         * @return true if a record was read, false at the end of the batch.
+         * @throws IllegalArgumentException if the record is malformed or the batch is truncated.
+         */
+        public boolean decode(@NotNull ByteBuffer in, @NotNull MutableTransaction into) {
+            TransactionType type = next(in);
+            if (type == null) {
+                return false;
+            }
+            into.set(accountId, type, amount, epochMillis, id);
+            return true;
+        }
+
+        /**
+         * Reads the next record as a transaction record.
+         *
+         * @param in Buffer positioned on a record or the end tag.
+         * @return The record, or null at the end of the batch.
+         * @throws IllegalArgumentException if the record is malformed or the batch is truncated.
+         */
+        public TransactionRecord decodeRecord(@NotNull ByteBuffer in) {
+            TransactionType type = next(in);
+            if (type == null) {
+                return null;
+            }
+            return switch (type) {
+                case DEPOSIT -> new TransactionRecord.Deposit(amount, epochMillis, id);
+                case WITHDRAWAL -> new TransactionRecord.Withdrawal(amount, epochMillis, id);
+                case REVERSAL -> new TransactionRecord.Reversal(amount, epochMillis, id);
+            };
+        }
+
+        /**
+         * Reads the next record as a transaction object with its original ID.
+         *
+         * @param in Buffer positioned on a record or the end tag.
+         * @return The deposit or withdrawal, or null at the end of the batch.
+         * @throws IllegalArgumentException if the record is malformed, the batch is truncated, or the record is a
+         *                                  reversal, which has no class.
+         */
+        public BaseTransaction decodeTransaction(@NotNull ByteBuffer in) {
+            TransactionType type = next(in);
+            if (type == null) {
+                return null;
+            }
+            Instant date = Instant.ofEpochMilli(epochMillis);
+            return switch (type) {
+                case DEPOSIT -> new DepositTransaction(date, amount, id);
+                case WITHDRAWAL -> new WithdrawalTransaction(date, amount, id);
+                case REVERSAL -> throw new IllegalArgumentException("A reversal has no transaction class; use decodeRecord()");
+            };
+        }
+
+        // Account number of the last record read
+        public long getAccountId() {
+            return accountId;
+        }
+
+        // Reads one record into the decoder's fields; returns its type, or null at the end tag
+        private TransactionType next(ByteBuffer in) {
+            try {
+                byte tag = in.get();
+                if (tag == END) {
+                    return null;
+                }
+                TransactionType type = TransactionType.fromCode(tag);
+                accountId = getVarLong(in);
+                amount = unzigzag(getVarLong(in));
+                epochMillis += unzigzag(getVarLong(in));
+                id += unzigzag(getVarLong(in));
+                return type;
+            } catch (BufferUnderflowException e) {
+                // Checking each byte would slow every read; running off the end is caught here instead
+                throw new IllegalArgumentException("Truncated transaction batch", e);
+            }
+        }
+    }
+
+    // Writes an unsigned varint: 7 bits per byte, low bits first, high bit set on all but the last byte
+    static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint: longer than 10 bytes");
+    }
+
+    // Maps signed to unsigned so that values near zero, of either sign, get short varints
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,205 @@
+package Lecture4_interfaces_abstract_classes;
+
+import benchmarks.Bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.SplittableRandom;
+
+/**
+ * Round-trip fuzz test of TransactionCodec, then encode and decode throughput compared with Java
+ * serialization of the same fields. Every operation is one batch of BATCH records.
+ *
+ * Settings (system properties):
+ *   bench.fuzzBatches  random batches round-tripped before timing (default 20,000)
+ */
+public class TransactionCodecBenchmark {
+
+    private static final int BATCH = 1_000;
+
+    // The fields of one transaction, as Java serialization would carry them
+    private record SerializedTransaction(long accountId, byte type, long amount, long epochMillis, long id)
+            implements Serializable {
+    }
+
+    public static void main(String[] args) {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        fuzz(Integer.getInteger("bench.fuzzBatches", 20_000));
+
+        // A realistic batch: time-ordered IDs and dates, amounts up to 10,000.00
+        SplittableRandom random = new SplittableRandom(9);
+        long[] accountIds = new long[BATCH];
+        TransactionType[] types = new TransactionType[BATCH];
+        long[] amounts = new long[BATCH];
+        long[] dates = new long[BATCH];
+        long[] ids = new long[BATCH];
+        SerializedTransaction[] serialized = new SerializedTransaction[BATCH];
+        long date = Instant.parse("2024-06-01T09:00:00Z").toEpochMilli();
+        long id = 1L << 40;
+        for (int i = 0; i < BATCH; i++) {
+            accountIds[i] = random.nextInt(1_000_000);
+            types[i] = TransactionType.fromCode((byte) random.nextInt(3));
+            amounts[i] = random.nextLong(1_000_000);
+            dates[i] = date += random.nextInt(5_000);
+            ids[i] = id += 1 + random.nextInt(1 << 12);
+            serialized[i] = new SerializedTransaction(accountIds[i], types[i].getCode(), amounts[i], dates[i], ids[i]);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH * TransactionCodec.MAX_RECORD_BYTES + 2);
+        TransactionCodec.Encoder encoder = new TransactionCodec.Encoder();
+        TransactionCodec.Decoder decoder = new TransactionCodec.Decoder();
+        MutableTransaction carrier = new MutableTransaction();
+        encodeBatch(encoder, buffer, accountIds, types, amounts, dates, ids);
+        int codecBytes = buffer.position();
+        byte[] javaBytes = serialize(serialized);
+        System.out.printf("Batch of %,d: codec %,d bytes (%.1f per record), ObjectOutputStream %,d bytes (%.1f per record)%n%n",
+                BATCH, codecBytes, (double) codecBytes / BATCH, javaBytes.length, (double) javaBytes.length / BATCH);
+
+        Bench.printHeader();
+        Bench.run("codec encode, batch of " + BATCH, 20_000,
+                i -> encodeBatch(encoder, buffer, accountIds, types, amounts, dates, ids));
+        Bench.run("codec decode to carrier, batch of " + BATCH, 20_000, i -> {
+            buffer.position(0);
+            decoder.begin(buffer);
+            long sum = 0;
+            while (decoder.decode(buffer, carrier)) {
+                sum += carrier.getAmount();
+            }
+            return sum;
+        });
+        Bench.run("codec decode to records, batch of " + BATCH, 20_000, i -> {
+            buffer.position(0);
+            decoder.begin(buffer);
+            long sum = 0;
+            for (TransactionRecord r = decoder.decodeRecord(buffer); r != null; r = decoder.decodeRecord(buffer)) {
+                sum += r.amount();
+            }
+            return sum;
+        });
+        Bench.run("ObjectOutputStream, batch of " + BATCH, 2_000, i -> serialize(serialized).length);
+        Bench.run("ObjectInputStream, batch of " + BATCH, 2_000, i -> deserialize(javaBytes).length);
+    }
+
+    private static long encodeBatch(TransactionCodec.Encoder encoder, ByteBuffer out, long[] accountIds,
+                                    TransactionType[] types, long[] amounts, long[] dates, long[] ids) {
+        out.clear();
+        encoder.begin(out);
+        for (int r = 0; r < accountIds.length; r++) {
+            encoder.encode(out, accountIds[r], types[r], amounts[r], dates[r], ids[r]);
+        }
+        encoder.end(out);
+        return out.position();
+    }
+
+    private static byte[] serialize(SerializedTransaction[] batch) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(batch);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SerializedTransaction[] deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (SerializedTransaction[]) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Round-trips random batches, with extreme values mixed in, through heap and direct buffers
+    private static void fuzz(int batches) {
+        SplittableRandom random = new SplittableRandom(2024);
+        long[] extremes = {0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, 1L << 35};
+        TransactionCodec.Encoder encoder = new TransactionCodec.Encoder();
+        TransactionCodec.Decoder decoder = new TransactionCodec.Decoder();
+        MutableTransaction carrier = new MutableTransaction();
+        long records = 0;
+        for (int b = 0; b < batches; b++) {
+            int size = random.nextInt(200);
+            long[] accountIds = new long[size];
+            TransactionType[] types = new TransactionType[size];
+            long[] amounts = new long[size];
+            long[] dates = new long[size];
+            long[] ids = new long[size];
+            for (int i = 0; i < size; i++) {
+                accountIds[i] = random.nextInt(8) == 0 ? extremes[random.nextInt(extremes.length)] : random.nextLong();
+                types[i] = TransactionType.fromCode((byte) random.nextInt(3));
+                amounts[i] = random.nextInt(8) == 0 ? extremes[random.nextInt(extremes.length)] : random.nextLong(-1_000, 1L << 40);
+                dates[i] = random.nextInt(8) == 0 ? extremes[random.nextInt(extremes.length)] : random.nextLong();
+                ids[i] = random.nextInt(8) == 0 ? extremes[random.nextInt(extremes.length)] : random.nextLong();
+            }
+            ByteBuffer buffer = b % 2 == 0 ? ByteBuffer.allocate(size * TransactionCodec.MAX_RECORD_BYTES + 2)
+                    : ByteBuffer.allocateDirect(size * TransactionCodec.MAX_RECORD_BYTES + 2);
+            encodeBatch(encoder, buffer, accountIds, types, amounts, dates, ids);
+            int length = buffer.position();
+
+            buffer.flip();
+            decoder.begin(buffer);
+            for (int i = 0; i < size; i++) {
+                if (!decoder.decode(buffer, carrier) || carrier.getAccountId() != accountIds[i]
+                        || carrier.getType() != types[i] || carrier.getAmount() != amounts[i]
+                        || carrier.getEpochMillis() != dates[i] || carrier.getNumericID() != ids[i]) {
+                    throw new AssertionError("Batch " + b + ", record " + i + " did not round-trip");
+                }
+            }
+            if (decoder.decode(buffer, carrier) || buffer.hasRemaining()) {
+                throw new AssertionError("Batch " + b + " did not end where it was written");
+            }
+
+            // Objects keep their subclass and original ID
+            buffer.position(0);
+            decoder.begin(buffer);
+            for (int i = 0; i < size; i++) {
+                if (types[i] == TransactionType.REVERSAL) {
+                    TransactionRecord r = decoder.decodeRecord(buffer);
+                    if (!(r instanceof TransactionRecord.Reversal) || r.amount() != amounts[i] || r.id() != ids[i]) {
+                        throw new AssertionError("Batch " + b + ", reversal " + i + " did not round-trip");
+                    }
+                    continue;
+                }
+                BaseTransaction t = decoder.decodeTransaction(buffer);
+                if (TransactionType.of(t) != types[i] || t.getAmount() != amounts[i]
+                        || t.getEpochMillis() != dates[i] || t.getNumericID() != ids[i]) {
+                    throw new AssertionError("Batch " + b + ", transaction " + i + " did not round-trip");
+                }
+            }
+
+            // A cut-off batch must fail, not return made-up records
+            if (length > 2) {
+                ByteBuffer truncated = buffer.duplicate().position(0).limit(random.nextInt(1, length - 1));
+                try {
+                    decoder.begin(truncated);
+                    while (decoder.decode(truncated, carrier)) {
+                        // Keep reading until the data runs out
+                    }
+                    throw new AssertionError("Batch " + b + " decoded past its truncation");
+                } catch (IllegalArgumentException expected) {
+                    // The truncated batch ran out of bytes
+                }
+            }
+            records += size;
+        }
+        ByteBuffer wrongVersion = ByteBuffer.wrap(new byte[] {(byte) (TransactionCodec.VERSION + 1), (byte) 0xFF});
+        try {
+            decoder.begin(wrongVersion);
+            throw new AssertionError("Unknown version accepted");
+        } catch (IllegalArgumentException expected) {
+            // Rejected as it should be
+        }
+        System.out.printf("Fuzz: %,d batches, %,d records round-tripped through heap and direct buffers%n", batches, records);
+    }
+}
@@ -0,0 +1,18 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Receives transaction events.
+ * When registered with an AsyncTransactionEventSink, events are delivered on the sink's
+ * background thread, so any formatting or I/O done here stays off the apply path.
+ */
+public interface TransactionEventListener {
+
+    /**
+     * Handles one event.
+     *
+     * @param type         Kind of event.
+     * @param transaction  Transaction the event is about.
+     * @param balanceMinor Account balance in minor units right after the event, or 0 if not applicable.
+     */
+    void onEvent(TransactionEventType type, TransactionInterface transaction, long balanceMinor);
+}
@@ -0,0 +1,27 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Destination for events published from the transaction hot path.
+ * Implementations must make publish() cheap: no formatting and no blocking I/O.
+ */
+public interface TransactionEventSink {
+
+    // Sink that discards every event, for benchmarks
+    TransactionEventSink NO_OP = (type, transaction, balanceMinor) -> { };
+
+    /**
+     * Publishes one event.
+     *
+     * @param type         Kind of event.
+     * @param transaction  Transaction the event is about.
+     * @param balanceMinor Account balance in minor units right after the event, or 0 if not applicable.
+     */
+    void publish(TransactionEventType type, TransactionInterface transaction, long balanceMinor);
+
+    /**
+     * Waits until every event published so far has been handled.
+     * The default does nothing, which is right for synchronous sinks.
+     */
+    default void flush() {
+    }
+}
@@ -0,0 +1,23 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Kinds of events raised while transactions are applied, reversed or inspected.
+ */
+public enum TransactionEventType {
+    DEPOSIT_APPLIED,
+    DEPOSIT_INVALID_AMOUNT,
+    WITHDRAWAL_APPLIED,
+    WITHDRAWAL_INVALID_AMOUNT,
+    WITHDRAWAL_INSUFFICIENT_FUNDS,
+    WITHDRAWAL_REVERSED,
+    DEPOSIT_REVERSED,
+    DUPLICATE_REJECTED,
+    TRANSFER_APPLIED,
+    TRANSFER_INVALID_AMOUNT,
+    TRANSFER_INSUFFICIENT_FUNDS,
+    PROCESSING_COMPLETE,
+    TRANSACTION_DETAILS,
+    DEPOSIT_DETAILS,
+    WITHDRAWAL_DETAILS,
+    TRANSFER_DETAILS
+}
@@ -0,0 +1,39 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Holds the sink that all transactions publish their events to.
+ * By default events are printed to the console from a background thread;
+ * benchmarks can install TransactionEventSink.NO_OP instead.
+ */
+public final class TransactionEvents {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+
+    private static volatile TransactionEventSink sink = createDefaultSink();
+
+    private TransactionEvents() {
+    }
+
+    public static TransactionEventSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Replaces the sink. Events already published to the previous sink stay there.
+     *
+     * @param newSink Sink to publish to from now on, must not be null.
+     */
+    public static void setSink(@NotNull TransactionEventSink newSink) {
+        sink = newSink;
+    }
+
+    // Asynchronous console sink that is flushed when the JVM exits
+    private static TransactionEventSink createDefaultSink() {
+        AsyncTransactionEventSink console =
+                new AsyncTransactionEventSink(DEFAULT_CAPACITY, new ConsoleTransactionEventListener());
+        Runtime.getRuntime().addShutdownHook(new Thread(console::flush, "transaction-event-flush"));
+        return console;
+    }
+}
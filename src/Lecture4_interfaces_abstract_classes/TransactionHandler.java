@@ -0,0 +1,18 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Consumes the transactions published to a TransactionRing, on the ring's consumer thread.
+ */
+@FunctionalInterface
+public interface TransactionHandler {
+
+    /**
+     * Handles one transaction. The carrier is reused once this returns, so it must not be kept.
+     *
+     * @param transaction Carrier holding the transaction.
+     * @param sequence    Position of the transaction in the ring, counting from 0.
+     * @param endOfBatch  true if no further transaction was available when this batch was read,
+     *                    a good point to flush any work the handler has buffered.
+     */
+    void onTransaction(MutableTransaction transaction, long sequence, boolean endOfBatch);
+}
@@ -0,0 +1,239 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory indexes over a TransactionStore for statement and audit queries.
+ * Keeps, per account, the rows of that account sorted by date in primitive arrays, and a hash
+ * index from transaction ID to row. A date-range query is a binary search followed by a walk
+ * over the account's rows; an ID lookup is one hash probe. Neither scans the whole history.
+ * Results are read through a reusable Cursor, so queries do not allocate per row.
+ * Not thread-safe: add rows from one thread, or guard the index externally.
+ */
+public class TransactionHistoryIndex {
+
+    // Rows of one account, sorted by date (ties keep insertion order)
+    private static final class AccountRows {
+        long[] dates = new long[8];
+        int[] rows = new int[8];
+        int size;
+
+        void insert(long date, int row) {
+            if (size == dates.length) {
+                dates = Arrays.copyOf(dates, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            int pos = size;
+            if (size > 0 && dates[size - 1] > date) {
+                pos = upperBound(date); // Out-of-order date: shift later rows up
+                System.arraycopy(dates, pos, dates, pos + 1, size - pos);
+                System.arraycopy(rows, pos, rows, pos + 1, size - pos);
+            }
+            dates[pos] = date;
+            rows[pos] = row;
+            size++;
+        }
+
+        // First position whose date is >= date
+        int lowerBound(long date) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (dates[mid] < date) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // First position whose date is > date
+        int upperBound(long date) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (dates[mid] <= date) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private final TransactionStore store;
+    private final LongIntHashMap rowById;
+    private final LongIntHashMap accountSlots;
+    private final List<AccountRows> accounts = new ArrayList<>();
+
+    /**
+     * Constructor for TransactionHistoryIndex. Indexes every row already in the store.
+     *
+     * @param store Store whose rows are indexed; add further rows through this index.
+     */
+    public TransactionHistoryIndex(@NotNull TransactionStore store) {
+        this.store = store;
+        this.rowById = new LongIntHashMap(Math.max(store.size(), 1024));
+        this.accountSlots = new LongIntHashMap(1024);
+        for (int row = 0; row < store.size(); row++) {
+            index(row);
+        }
+    }
+
+    /**
+     * Appends a row to the store and indexes it.
+     *
+     * @param accountId   Account the transaction belongs to.
+     * @param type        Transaction type.
+     * @param amount      Transaction amount in minor units.
+     * @param epochMillis Transaction date in epoch milliseconds.
+     * @param id          Numeric transaction ID.
+     * @return Index of the new row.
+     */
+    public int add(long accountId, @NotNull TransactionType type, long amount, long epochMillis, long id) {
+        int row = store.add(accountId, type, amount, epochMillis, id);
+        index(row);
+        return row;
+    }
+
+    /**
+     * Appends a transaction object to the store and indexes it.
+     *
+     * @param accountId Account the transaction belongs to.
+     * @param t         Deposit or withdrawal.
+     * @return Index of the new row.
+     */
+    public int add(long accountId, @NotNull BaseTransaction t) {
+        int row = store.add(accountId, t);
+        index(row);
+        return row;
+    }
+
+    public TransactionStore getStore() {
+        return store;
+    }
+
+    /**
+     * Looks up a transaction by its numeric ID.
+     *
+     * @param id Numeric transaction ID.
+     * @return The row of the transaction, or -1 if it is not in the store.
+     */
+    public int findById(long id) {
+        return rowById.get(id);
+    }
+
+    /**
+     * Counts the transactions of an account in a date range, without visiting them.
+     *
+     * @param accountId  Account number.
+     * @param fromMillis Start of the range, inclusive, in epoch milliseconds.
+     * @param toMillis   End of the range, exclusive, in epoch milliseconds.
+     * @return Number of matching transactions.
+     */
+    public int count(long accountId, long fromMillis, long toMillis) {
+        AccountRows rows = rowsOf(accountId);
+        if (rows == null || fromMillis >= toMillis) {
+            return 0;
+        }
+        return rows.lowerBound(toMillis) - rows.lowerBound(fromMillis);
+    }
+
+    /**
+     * Creates a cursor for range queries. One cursor can be reused for any number of queries.
+     *
+     * @return A new, empty cursor.
+     */
+    public Cursor newCursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Positions a cursor before the first transaction of an account in a date range, in date order.
+     *
+     * @param accountId  Account number.
+     * @param fromMillis Start of the range, inclusive, in epoch milliseconds.
+     * @param toMillis   End of the range, exclusive, in epoch milliseconds.
+     * @param cursor     Cursor to reuse.
+     * @return The cursor, for chaining.
+     */
+    public Cursor range(long accountId, long fromMillis, long toMillis, @NotNull Cursor cursor) {
+        AccountRows rows = rowsOf(accountId);
+        if (rows == null || fromMillis >= toMillis) {
+            cursor.reset(null, 0, 0);
+        } else {
+            cursor.reset(rows, rows.lowerBound(fromMillis), rows.lowerBound(toMillis));
+        }
+        return cursor;
+    }
+
+    private AccountRows rowsOf(long accountId) {
+        int slot = accountSlots.get(accountId);
+        return slot == LongIntHashMap.MISSING ? null : accounts.get(slot);
+    }
+
+    private void index(int row) {
+        long accountId = store.getAccountId(row);
+        int slot = accountSlots.get(accountId);
+        if (slot == LongIntHashMap.MISSING) {
+            slot = accounts.size();
+            accounts.add(new AccountRows());
+            accountSlots.put(accountId, slot);
+        }
+        accounts.get(slot).insert(store.getEpochMillis(row), row);
+        rowById.put(store.getId(row), row);
+    }
+
+    /**
+     * Iterates over the result of a range query. Call next() before reading each transaction.
+     */
+    public class Cursor {
+
+        private final TransactionStore.View view = store.view();
+        private AccountRows rows;
+        private int position;
+        private int end;
+
+        void reset(AccountRows rows, int start, int end) {
+            this.rows = rows;
+            this.position = start - 1;
+            this.end = end;
+        }
+
+        /**
+         * Advances to the next transaction in the range.
+         *
+         * @return true if there is one, false when the range is exhausted.
+         */
+        public boolean next() {
+            if (rows == null || position + 1 >= end) {
+                return false;
+            }
+            position++;
+            view.moveTo(rows.rows[position]);
+            return true;
+        }
+
+        /**
+         * Returns the current transaction. The view is reused and moves on the next call to next().
+         *
+         * @return View of the current row.
+         */
+        public TransactionStore.View current() {
+            return view;
+        }
+
+        // Number of transactions left after the current one
+        public int remaining() {
+            return rows == null ? 0 : end - position - 1;
+        }
+    }
+}
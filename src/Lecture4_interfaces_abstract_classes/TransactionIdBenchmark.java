@@ -0,0 +1,107 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.util.Arrays;
+
+/**
+ * Checks TransactionIdGenerator at volume and measures its multi-threaded throughput.
+ * Threads draw IDs from generators of several nodes, including the highest node number, as fast as
+ * they can, so every millisecond's sequence space runs out and the next millisecond is borrowed.
+ * Every ID must be positive, carry its generator's node number, increase within its thread, and be
+ * unique across all threads of the node. IDs of different nodes cannot collide once their node bits
+ * are intact. 100M IDs take 800 MB of heap (-Xmx2g).
+ *
+ * Settings (system properties):
+ *   bench.ids      IDs drawn in total (default 100,000,000)
+ *   bench.threads  threads drawing IDs (default 8)
+ */
+public class TransactionIdBenchmark {
+
+    private static final int[] NODES = {5, 6, TransactionIdGenerator.MAX_NODE - 1, TransactionIdGenerator.MAX_NODE};
+
+    public static void main(String[] args) throws InterruptedException {
+        int total = Integer.getInteger("bench.ids", 100_000_000);
+        int threadCount = Integer.getInteger("bench.threads", 8);
+        int perThread = total / threadCount;
+
+        TransactionIdGenerator[] generators = new TransactionIdGenerator[NODES.length];
+        for (int n = 0; n < NODES.length; n++) {
+            generators[n] = new TransactionIdGenerator(NODES[n]);
+        }
+        long[][] ids = new long[threadCount][perThread];
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            long[] slice = ids[t];
+            TransactionIdGenerator generator = generators[t % NODES.length];
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < slice.length; i++) {
+                    slice[i] = generator.nextId();
+                }
+            });
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long nanos = System.nanoTime() - start;
+
+        for (int t = 0; t < threadCount; t++) {
+            checkThread(ids[t], NODES[t % NODES.length], t);
+        }
+        for (int n = 0; n < NODES.length; n++) {
+            checkUnique(ids, n);
+        }
+        System.out.printf("%,d IDs from %d threads on nodes %s: unique, increasing per thread, node bits intact; "
+                        + "%.1f M IDs/s%n", (long) perThread * threadCount, threadCount, Arrays.toString(NODES),
+                (double) perThread * threadCount * 1e3 / nanos);
+    }
+
+    // Every ID of one thread is positive, carries the thread's node and is above the one before it
+    private static void checkThread(long[] slice, int node, int thread) {
+        long previous = 0;
+        for (int i = 0; i < slice.length; i++) {
+            long id = slice[i];
+            if (TransactionIdGenerator.nodeOf(id) != node) {
+                throw new AssertionError("Thread " + thread + ": ID " + id + " at " + i + " has node "
+                        + TransactionIdGenerator.nodeOf(id) + " instead of " + node);
+            }
+            if (id <= previous) {
+                throw new AssertionError("Thread " + thread + ": ID " + id + " at " + i + " is not above " + previous);
+            }
+            previous = id;
+        }
+    }
+
+    // Merges the already increasing slices of one node's threads and checks that no ID repeats
+    private static void checkUnique(long[][] ids, int node) {
+        int slices = 0;
+        for (int t = node; t < ids.length; t += NODES.length) {
+            slices++;
+        }
+        long[][] merged = new long[slices][];
+        int[] positions = new int[slices];
+        for (int t = node, s = 0; t < ids.length; t += NODES.length, s++) {
+            merged[s] = ids[t];
+        }
+        long previous = 0;
+        while (true) {
+            int smallest = -1;
+            for (int s = 0; s < slices; s++) {
+                if (positions[s] < merged[s].length
+                        && (smallest < 0 || merged[s][positions[s]] < merged[smallest][positions[smallest]])) {
+                    smallest = s;
+                }
+            }
+            if (smallest < 0) {
+                return;
+            }
+            long id = merged[smallest][positions[smallest]++];
+            if (id == previous) {
+                throw new AssertionError("Node " + NODES[node] + ": ID " + id + " was handed out twice");
+            }
+            previous = id;
+        }
+    }
+}
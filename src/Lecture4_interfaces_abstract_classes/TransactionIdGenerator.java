@@ -0,0 +1,166 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates unique, time-ordered 64-bit transaction IDs.
+ * Layout, from the most significant bit:
+ *   1 bit  unused (IDs are always positive)
+ *   41 bits milliseconds since 2024-01-01T00:00:00Z
+ *   10 bits node number
+ *   12 bits sequence within the millisecond
+ * Threads reserve blocks of sequence numbers with one compare-and-set and then hand
+ * out IDs from their block without touching shared state.
+ * IDs from one thread always increase; IDs from different threads are ordered by block.
+ */
+public final class TransactionIdGenerator {
+
+    // 2024-01-01T00:00:00Z
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L;
+
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final int NODE_SHIFT = SEQUENCE_BITS;
+    private static final int TIME_SHIFT = SEQUENCE_BITS + NODE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // Number of IDs a thread reserves at a time; must divide 2^SEQUENCE_BITS
+    private static final int BLOCK_SIZE = 64;
+
+    // Crockford base-32 alphabet used by encode()/decode()
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+
+    private static final TransactionIdGenerator DEFAULT =
+            new TransactionIdGenerator(Integer.getInteger("transaction.node.id", 0));
+
+    // Current block of one thread: next ID to hand out and the end of the block
+    private static final class Block {
+        long next;
+        long end;
+    }
+
+    private final long nodeBits;
+    private final AtomicLong lastReserved = new AtomicLong();
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    /**
+     * Constructor for TransactionIdGenerator.
+     *
+     * @param nodeId Number of this node, between 0 and MAX_NODE. Each process that
+     *               generates IDs for the same ledger needs its own node number.
+     */
+    public TransactionIdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE + ": " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << NODE_SHIFT;
+    }
+
+    /**
+     * Returns the generator shared by all transactions in this process.
+     * Its node number comes from the system property transaction.node.id (default 0).
+     *
+     * @return The default generator.
+     */
+    public static TransactionIdGenerator getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the next unique ID.
+     *
+     * @return A positive 64-bit ID.
+     */
+    public long nextId() {
+        Block block = blocks.get();
+        if (block.next == block.end) {
+            block.next = reserveBlock();
+            block.end = block.next + BLOCK_SIZE;
+        }
+        return block.next++;
+    }
+
+    // Reserves BLOCK_SIZE consecutive IDs that no other thread will receive
+    private long reserveBlock() {
+        while (true) {
+            long last = lastReserved.get();
+            long now = (System.currentTimeMillis() - EPOCH_MILLIS) << TIME_SHIFT | nodeBits;
+            long start = Math.max(last, now);
+            long end = start + BLOCK_SIZE;
+            if ((end & SEQUENCE_MASK) == 0) {
+                // This block uses up the millisecond's sequence space: the next one borrows the next
+                // millisecond, rather than carrying into the node bits
+                end = ((start >>> TIME_SHIFT) + 1) << TIME_SHIFT | nodeBits;
+            }
+            if (lastReserved.compareAndSet(last, end)) {
+                return start;
+            }
+        }
+    }
+
+    /**
+     * Returns the time part of an ID.
+     *
+     * @param id ID produced by nextId().
+     * @return Milliseconds since the Unix epoch at which the ID's block was reserved.
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIME_SHIFT) + EPOCH_MILLIS;
+    }
+
+    /**
+     * Returns the node part of an ID.
+     *
+     * @param id ID produced by nextId().
+     * @return Node number of the generator that produced the ID.
+     */
+    public static int nodeOf(long id) {
+        return (int) (id >>> NODE_SHIFT) & MAX_NODE;
+    }
+
+    /**
+     * Encodes an ID as a 13-character Crockford base-32 string.
+     * Encoded IDs sort in the same order as the numbers.
+     *
+     * @param id ID to encode.
+     * @return The encoded ID.
+     */
+    public static String encode(long id) {
+        char[] chars = new char[ENCODED_LENGTH];
+        for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) (id & 31)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Decodes a string produced by encode().
+     *
+     * @param encoded Encoded ID, case-insensitive.
+     * @return The numeric ID.
+     */
+    public static long decode(String encoded) {
+        if (encoded.length() != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("Encoded ID must have " + ENCODED_LENGTH + " characters: " + encoded);
+        }
+        long id = 0;
+        for (int i = 0; i < ENCODED_LENGTH; i++) {
+            id = id << 5 | digitOf(encoded.charAt(i));
+        }
+        return id;
+    }
+
+    private static int digitOf(char c) {
+        char upper = Character.toUpperCase(c);
+        for (int d = 0; d < ALPHABET.length; d++) {
+            if (ALPHABET[d] == upper) {
+                return d;
+            }
+        }
+        throw new IllegalArgumentException("Invalid character in encoded ID: " + c);
+    }
+}
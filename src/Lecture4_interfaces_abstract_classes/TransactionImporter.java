@@ -0,0 +1,364 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Streams transactions from a CSV file into the accounts without building a String or Calendar per line;
+ * the only object per line is the TransactionRecord the apply stage posts.
+ *
+ * Each line has the form {@code accountId,type,amount,date}, for example {@code 1042,D,125.50,2024-01-03}:
+ *   type   D (deposit), W (withdrawal) or R (reversal)
+ *   amount decimal with at most two fraction digits, optionally signed
+ *   date   yyyy-MM-dd, taken as midnight UTC
+ * Empty lines and lines starting with '#' are skipped.
+ *
+ * The import is a pipeline. The calling thread reads the input into a direct buffer, parses each line
+ * straight from its bytes into a reusable ImportBatch and validates the batch; a second thread runs the
+ * apply stage. Full batches are handed over through a bounded queue and recycled, so memory use is fixed
+ * and a slow apply stage holds back the parser. Lines that cannot be parsed go to the ImportErrorListener
+ * and the import carries on.
+ */
+public class TransactionImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    // Batches in flight between the two stages; one more is always being filled by the parser
+    private static final int BATCHES_IN_FLIGHT = 4;
+
+    private final int batchSize;
+    private final int bufferSize;
+    private final ImportErrorListener errors;
+
+    // Counters for the last import, written by the parsing thread
+    private long lineCount;
+    private long recordCount;
+    private long malformedCount;
+
+    /**
+     * Constructor for TransactionImporter with the default batch and buffer sizes.
+     *
+     * @param errors Receives the lines that cannot be parsed.
+     */
+    public TransactionImporter(@NotNull ImportErrorListener errors) {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_BUFFER_SIZE, errors);
+    }
+
+    /**
+     * Constructor for TransactionImporter.
+     *
+     * @param batchSize  Records per batch handed to the apply stage, must be positive.
+     * @param bufferSize Size of the read buffer in bytes; also the longest line accepted.
+     * @param errors     Receives the lines that cannot be parsed.
+     */
+    public TransactionImporter(int batchSize, int bufferSize, @NotNull ImportErrorListener errors) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if (bufferSize < 64) {
+            throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+        }
+        this.batchSize = batchSize;
+        this.bufferSize = bufferSize;
+        this.errors = errors;
+    }
+
+    /**
+     * Imports a CSV file.
+     *
+     * @param file       File to read.
+     * @param applyStage Applies one validated batch; runs on the importer's apply thread.
+     * @return Number of records parsed and passed to the apply stage.
+     * @throws IOException if the file cannot be read, or the apply stage failed.
+     */
+    public long importFile(@NotNull Path file, @NotNull Consumer<ImportBatch> applyStage) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return importFrom(channel, applyStage);
+        }
+    }
+
+    /**
+     * Imports CSV data from a channel. The channel is read to its end but not closed.
+     *
+     * @param channel    Source of the CSV data.
+     * @param applyStage Applies one validated batch; runs on the importer's apply thread.
+     * @return Number of records parsed and passed to the apply stage.
+     * @throws IOException if the channel cannot be read, or the apply stage failed.
+     */
+    public long importFrom(@NotNull ReadableByteChannel channel, @NotNull Consumer<ImportBatch> applyStage)
+            throws IOException {
+        lineCount = 0;
+        recordCount = 0;
+        malformedCount = 0;
+
+        BlockingQueue<ImportBatch> full = new ArrayBlockingQueue<>(BATCHES_IN_FLIGHT + 1);
+        BlockingQueue<ImportBatch> free = new ArrayBlockingQueue<>(BATCHES_IN_FLIGHT + 1);
+        for (int i = 0; i < BATCHES_IN_FLIGHT + 1; i++) {
+            free.add(new ImportBatch(batchSize));
+        }
+        ImportBatch end = new ImportBatch(0); // Marks the end of the input for the apply thread
+        Throwable[] applyFailure = new Throwable[1];
+
+        Thread applier = new Thread(() -> {
+            try {
+                for (ImportBatch batch = full.take(); batch != end; batch = full.take()) {
+                    if (applyFailure[0] == null) {
+                        try {
+                            applyStage.accept(batch);
+                        } catch (Throwable e) {
+                            applyFailure[0] = e; // Keep draining so the parser never blocks forever
+                        }
+                    }
+                    batch.clear();
+                    free.put(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "transaction-import-apply");
+        applier.setDaemon(true);
+        applier.start();
+
+        boolean completed = false;
+        try {
+            ImportBatch batch = free.take();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(buffer) < 0;
+                buffer.flip();
+                int limit = buffer.limit();
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (buffer.get(i) == '\n') {
+                        parseLine(buffer, lineStart, i, batch);
+                        lineStart = i + 1;
+                        if (batch.isFull()) {
+                            batch.validate();
+                            full.put(batch);
+                            batch = free.take();
+                        }
+                    }
+                }
+                if (eof && lineStart < limit) {
+                    parseLine(buffer, lineStart, limit, batch); // Last line without a terminator
+                    lineStart = limit;
+                } else if (lineStart == 0 && limit == buffer.capacity()) {
+                    // The buffer holds part of one line only; report it and skip to the next line
+                    lineCount++;
+                    malformed(buffer, 0, Math.min(limit, 80), "line longer than " + bufferSize + " bytes");
+                    lineStart = skipToNextLine(channel, buffer);
+                    limit = buffer.limit();
+                }
+                buffer.position(lineStart);
+                buffer.limit(limit);
+                buffer.compact();
+            }
+            if (batch.size() > 0) {
+                batch.validate();
+                full.put(batch);
+            }
+            full.put(end);
+            applier.join();
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } finally {
+            if (!completed) {
+                applier.interrupt(); // A read or parse failure must not leave it waiting for batches
+            }
+        }
+
+        if (applyFailure[0] != null) {
+            throw new IOException("Apply stage failed", applyFailure[0]);
+        }
+        return recordCount;
+    }
+
+    // Number of lines read by the last import, including skipped and malformed ones
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    // Number of records the last import passed to the apply stage
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    // Number of lines the last import reported as malformed
+    public long getMalformedCount() {
+        return malformedCount;
+    }
+
+    /**
+     * Parses the line in buffer[from, to) into the batch, or reports it as malformed.
+     */
+    private void parseLine(ByteBuffer buffer, int from, int to, ImportBatch batch) {
+        long lineNumber = ++lineCount;
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--;
+        }
+        if (from == to || buffer.get(from) == '#') {
+            return;
+        }
+
+        // Account number
+        int p = from;
+        long accountId = 0;
+        int digitsStart = p;
+        while (p < to && isDigit(buffer.get(p))) {
+            if (accountId > (Long.MAX_VALUE - 9) / 10) {
+                malformed(buffer, from, to, "account number too large");
+                return;
+            }
+            accountId = accountId * 10 + (buffer.get(p++) - '0');
+        }
+        if (p == digitsStart || p == to || buffer.get(p++) != ',') {
+            malformed(buffer, from, to, "bad account number");
+            return;
+        }
+
+        // Type
+        if (p + 1 >= to || buffer.get(p + 1) != ',') {
+            malformed(buffer, from, to, "bad transaction type");
+            return;
+        }
+        byte type;
+        switch (buffer.get(p)) {
+            case 'D' -> type = TransactionType.DEPOSIT.getCode();
+            case 'W' -> type = TransactionType.WITHDRAWAL.getCode();
+            case 'R' -> type = TransactionType.REVERSAL.getCode();
+            default -> {
+                malformed(buffer, from, to, "bad transaction type");
+                return;
+            }
+        }
+        p += 2;
+
+        // Amount, in minor units
+        boolean negative = false;
+        if (p < to && (buffer.get(p) == '-' || buffer.get(p) == '+')) {
+            negative = buffer.get(p++) == '-';
+        }
+        long major = 0;
+        digitsStart = p;
+        while (p < to && isDigit(buffer.get(p))) {
+            if (major > (Long.MAX_VALUE / Money.MINOR_PER_MAJOR - 9) / 10) {
+                malformed(buffer, from, to, "amount too large");
+                return;
+            }
+            major = major * 10 + (buffer.get(p++) - '0');
+        }
+        if (p == digitsStart) {
+            malformed(buffer, from, to, "bad amount");
+            return;
+        }
+        long minor = 0;
+        if (p < to && buffer.get(p) == '.') {
+            p++;
+            int fractionDigits = 0;
+            while (p < to && isDigit(buffer.get(p))) {
+                if (++fractionDigits > Money.SCALE) {
+                    malformed(buffer, from, to, "more than " + Money.SCALE + " fraction digits");
+                    return;
+                }
+                minor = minor * 10 + (buffer.get(p++) - '0');
+            }
+            for (; fractionDigits < Money.SCALE; fractionDigits++) {
+                minor *= 10;
+            }
+        }
+        if (p == to || buffer.get(p++) != ',') {
+            malformed(buffer, from, to, "bad amount");
+            return;
+        }
+        long amount = major * Money.MINOR_PER_MAJOR + minor;
+
+        // Date, yyyy-MM-dd
+        if (to - p != 10 || buffer.get(p + 4) != '-' || buffer.get(p + 7) != '-') {
+            malformed(buffer, from, to, "bad date");
+            return;
+        }
+        int year = digits(buffer, p, 4);
+        int month = digits(buffer, p + 5, 2);
+        int day = digits(buffer, p + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            malformed(buffer, from, to, "bad date");
+            return;
+        }
+
+        batch.add(accountId, type, negative ? -amount : amount, epochDay(year, month, day) * 86_400_000L, lineNumber);
+        recordCount++;
+    }
+
+    private void malformed(ByteBuffer buffer, int from, int to, String reason) {
+        malformedCount++;
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        errors.onMalformedLine(lineCount, new String(bytes, StandardCharsets.UTF_8), reason);
+    }
+
+    // Reads and discards input up to the end of the current line; returns the start of the next line in buffer
+    private static int skipToNextLine(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return 0;
+            }
+            buffer.flip();
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    return i + 1;
+                }
+            }
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    // Parses a fixed number of decimal digits, or returns -1 if any byte is not a digit
+    private static int digits(ByteBuffer buffer, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            byte b = buffer.get(i);
+            if (!isDigit(b)) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar, as LocalDate.toEpochDay() computes them
+    static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097 + dayOfEra - 719_468;
+    }
+}
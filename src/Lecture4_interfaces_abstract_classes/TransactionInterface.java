@@ -1,4 +1,5 @@
 package Lecture4_interfaces_abstract_classes;
+import java.time.Instant;
 import java.util.Calendar;
 
 /**
@@ -7,12 +8,22 @@ import java.util.Calendar;
  */
 public interface TransactionInterface {
 
-    // Method to get the transaction amount
-    double getAmount();
+    // Method to get the transaction amount in minor units (see Money)
+    long getAmount();
 
-    // Method to get the transaction date
+    // Method to get the transaction date; zone-lossy: only the instant is kept, returned in the default time zone
     Calendar getDate();
 
+    // Canonical date accessor: the transaction date as an immutable Instant; implementations should avoid copying
+    default Instant getInstant() {
+        return getDate().toInstant();
+    }
+
+    // Canonical date accessor: the transaction date as milliseconds since the epoch
+    default long getEpochMillis() {
+        return getDate().getTimeInMillis();
+    }
+
     // Method to get a unique identifier for the transaction
     String getTransactionID();
 
@@ -0,0 +1,429 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal of applied transactions.
+ * Every record has a fixed size and is written into a memory-mapped segment file; when a segment
+ * is full the journal rolls over to a new one. Each record gets a log sequence number (LSN),
+ * starting at 1 and increasing by one per record.
+ *
+ * Appending only copies the record into the mapped segment. Durability is requested with sync(lsn):
+ * a background thread forces the segment to disk, and every caller waiting at that moment is released
+ * by the same force (group commit). A transaction should be acknowledged only after its sync returns.
+ * If a force fails, the flusher stops, and every waiting and later sync() throws that failure.
+ *
+ * Record layout (48 bytes, big-endian):
+ *   0  lsn            8  accountId      16 transactionId
+ *   24 amountMinor    32 epochMillis    40 type code, 3 bytes padding
+ *   44 CRC32C of bytes 0-43
+ */
+public class TransactionJournal implements AutoCloseable {
+
+    public static final int RECORD_SIZE = 48;
+
+    // Records per segment file by default (48 MiB segments)
+    public static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    // Longest time an appended record waits to be forced when nobody calls sync()
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+    private static final int CHECKSUM_OFFSET = 44;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * Receives journal records during replay.
+     */
+    public interface RecordVisitor {
+        void visit(long lsn, long accountId, TransactionType type, long amountMinor, long epochMillis,
+                   long transactionId);
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long flushIntervalMillis;
+    private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32C checksum = new CRC32C();
+
+    // Current segment; guarded by this
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int position;
+    private int flushedPosition;
+    private long nextLsn;
+
+    // Group commit state; guarded by flushLock
+    private final Object flushLock = new Object();
+    private long requestedLsn;
+    private volatile long durableLsn;
+    private volatile boolean closed;
+    private volatile Throwable flushFailure;
+    private final Thread flusher;
+
+    /**
+     * Opens or creates a journal with default settings.
+     *
+     * @param directory Directory holding the segment files.
+     * @throws IOException if the directory or the last segment cannot be opened.
+     */
+    public TransactionJournal(@NotNull Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_RECORDS, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens or creates a journal. An existing journal is recovered first: appending continues after
+     * its last valid record, and anything after that record (e.g. a torn write) is erased.
+     *
+     * @param directory           Directory holding the segment files.
+     * @param segmentRecords      Number of records per segment file.
+     * @param flushIntervalMillis Longest time an unsynced record waits to be forced.
+     * @throws IOException if the directory or the last segment cannot be opened.
+     */
+    public TransactionJournal(@NotNull Path directory, int segmentRecords, long flushIntervalMillis) throws IOException {
+        if (segmentRecords < 1 || flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Segment records and flush interval must be positive");
+        }
+        this.directory = directory;
+        this.segmentBytes = Math.multiplyExact(segmentRecords, RECORD_SIZE);
+        this.flushIntervalMillis = flushIntervalMillis;
+        Files.createDirectories(directory);
+
+        List<Path> segments = listSegments(directory);
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            recoverLastSegment(segments.get(segments.size() - 1));
+        }
+        durableLsn = nextLsn - 1;
+
+        flusher = new Thread(this::flushLoop, "transaction-journal-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Appends one record. The record is not durable until sync() has returned for its LSN.
+     *
+     * @param accountId     Account the transaction was applied to.
+     * @param type          Transaction type.
+     * @param amountMinor   Transaction amount in minor units.
+     * @param epochMillis   Transaction date in epoch milliseconds.
+     * @param transactionId Numeric transaction ID.
+     * @return The LSN of the record.
+     * @throws IOException if a new segment cannot be created.
+     */
+    public synchronized long append(long accountId, @NotNull TransactionType type, long amountMinor,
+                                    long epochMillis, long transactionId) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        if (position == segmentBytes) {
+            rollOver();
+        }
+        long lsn = nextLsn++;
+        scratch.putLong(0, lsn)
+                .putLong(8, accountId)
+                .putLong(16, transactionId)
+                .putLong(24, amountMinor)
+                .putLong(32, epochMillis)
+                .putInt(40, type.getCode() << 24);
+        checksum.reset();
+        checksum.update(scratch.array(), 0, CHECKSUM_OFFSET);
+        scratch.putInt(CHECKSUM_OFFSET, (int) checksum.getValue());
+        segment.put(position, scratch.array());
+        position += RECORD_SIZE;
+        return lsn;
+    }
+
+    /**
+     * Appends a record for a transaction that has been applied to an account.
+     *
+     * @param account     Account the transaction was applied to.
+     * @param transaction The applied transaction.
+     * @return The LSN of the record.
+     * @throws IOException if a new segment cannot be created.
+     */
+    public long append(@NotNull BankAccount account, @NotNull BaseTransaction transaction) throws IOException {
+        return append(account.getAccountId(), TransactionType.of(transaction), transaction.getAmount(),
+                transaction.getEpochMillis(), transaction.getNumericID());
+    }
+
+    /**
+     * Blocks until the record with the given LSN, and every record before it, is on disk.
+     *
+     * @param lsn LSN returned by append().
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws UncheckedIOException if forcing the journal to disk failed; the record may not be durable.
+     */
+    public void sync(long lsn) throws InterruptedException {
+        if (durableLsn >= lsn) {
+            return;
+        }
+        synchronized (flushLock) {
+            requestedLsn = Math.max(requestedLsn, lsn);
+            flushLock.notifyAll();
+            while (durableLsn < lsn) {
+                Throwable failure = flushFailure;
+                if (failure != null) {
+                    throw new UncheckedIOException("Journal could not be forced to disk before LSN " + lsn,
+                            failure instanceof UncheckedIOException io ? io.getCause() : new IOException(failure));
+                }
+                if (closed && !flusher.isAlive()) {
+                    throw new IllegalStateException("Journal closed before LSN " + lsn + " was made durable");
+                }
+                flushLock.wait();
+            }
+        }
+    }
+
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+
+    public synchronized long getLastLsn() {
+        return nextLsn - 1;
+    }
+
+    /**
+     * Forces every appended record to disk and closes the journal.
+     *
+     * @throws IOException if the segment cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            segment.force();
+            channel.close();
+        }
+    }
+
+    /**
+     * Replays every valid record of a journal in LSN order.
+     * Replay stops at the first record that is missing, out of sequence or fails its checksum.
+     *
+     * @param directory Directory holding the segment files.
+     * @param fromLsn   First LSN to deliver; earlier records are skipped, and whole segments before it are not read.
+     * @param visitor   Receives the records.
+     * @return The LSN of the last valid record, or fromLsn - 1 if there is none from fromLsn on.
+     * @throws IOException if a segment cannot be read.
+     */
+    public static long replay(@NotNull Path directory, long fromLsn, @NotNull RecordVisitor visitor) throws IOException {
+        List<Path> segments = listSegments(directory);
+        long expected = -1;
+        long last = fromLsn - 1;
+        byte[] record = new byte[RECORD_SIZE];
+        CRC32C crc = new CRC32C();
+        for (int s = 0; s < segments.size(); s++) {
+            if (s + 1 < segments.size() && firstLsnOf(segments.get(s + 1)) <= fromLsn) {
+                continue; // Every record of this segment is before fromLsn
+            }
+            long first = firstLsnOf(segments.get(s));
+            if (expected != -1 && first != expected) {
+                break; // Gap between segments
+            }
+            expected = first;
+            try (FileChannel ch = FileChannel.open(segments.get(s), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                int end = buffer.capacity() - RECORD_SIZE;
+                for (int pos = 0; pos <= end; pos += RECORD_SIZE) {
+                    buffer.get(pos, record);
+                    if (!isValid(record, expected, crc)) {
+                        return last;
+                    }
+                    if (expected >= fromLsn) {
+                        ByteBuffer r = ByteBuffer.wrap(record);
+                        visitor.visit(expected, r.getLong(8), TransactionType.fromCode(record[40]), r.getLong(24),
+                                r.getLong(32), r.getLong(16));
+                        last = expected;
+                    }
+                    expected++;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Rebuilds account balances by replaying a whole journal.
+     * Accounts are assumed to start at zero, so opening balances must be journaled as deposits.
+     *
+     * @param directory Directory holding the segment files.
+     * @return Recovered accounts by account number.
+     * @throws IOException if a segment cannot be read.
+     */
+    public static Map<Long, BankAccount> recoverBalances(@NotNull Path directory) throws IOException {
+        Map<Long, long[]> balances = new HashMap<>();
+        replay(directory, 1, (lsn, accountId, type, amountMinor, epochMillis, transactionId) -> {
+            long[] balance = balances.computeIfAbsent(accountId, id -> new long[1]);
+            balance[0] = Money.add(balance[0], type.balanceDelta(amountMinor));
+        });
+        Map<Long, BankAccount> accounts = new HashMap<>(balances.size() * 2);
+        balances.forEach((id, balance) -> accounts.put(id, BankAccount.withMinorBalance(id, balance[0])));
+        return accounts;
+    }
+
+    // Forces the full segment, then maps a new one starting at nextLsn
+    private void rollOver() throws IOException {
+        segment.force();
+        channel.close();
+        markDurable(nextLsn - 1);
+        openSegment(nextLsn);
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        position = 0;
+        flushedPosition = 0;
+        nextLsn = firstLsn;
+    }
+
+    // Finds the end of the last segment and erases whatever follows its last valid record
+    private void recoverLastSegment(Path file) throws IOException {
+        long firstLsn = firstLsnOf(file);
+        openSegment(firstLsn);
+        byte[] record = new byte[RECORD_SIZE];
+        CRC32C crc = new CRC32C();
+        int end = Math.min(segmentBytes, segment.capacity());
+        while (position < end) {
+            segment.get(position, record);
+            if (!isValid(record, nextLsn, crc)) {
+                break;
+            }
+            position += RECORD_SIZE;
+            nextLsn++;
+        }
+        flushedPosition = position;
+        byte[] zeros = new byte[RECORD_SIZE];
+        boolean erased = false;
+        for (int pos = position; pos < end; pos += RECORD_SIZE) {
+            if (!isZero(segment, pos)) {
+                segment.put(pos, zeros); // Leftover of an interrupted write
+                erased = true;
+            }
+        }
+        if (erased) {
+            segment.force();
+        }
+    }
+
+    private static boolean isZero(ByteBuffer buffer, int pos) {
+        for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+            if (buffer.getLong(pos + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValid(byte[] record, long expectedLsn, CRC32C crc) {
+        ByteBuffer r = ByteBuffer.wrap(record);
+        if (r.getLong(0) != expectedLsn) {
+            return false;
+        }
+        crc.reset();
+        crc.update(record, 0, CHECKSUM_OFFSET);
+        return r.getInt(CHECKSUM_OFFSET) == (int) crc.getValue();
+    }
+
+    // Background thread: forces the current segment when asked to, or at least every flush interval.
+    // A failed force ends the thread; the failure is kept for sync() and every waiter is woken to see it.
+    private void flushLoop() {
+        try {
+            while (true) {
+                synchronized (flushLock) {
+                    if (!closed && requestedLsn <= durableLsn) {
+                        flushLock.wait(flushIntervalMillis);
+                    }
+                }
+                flush();
+                if (closed) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+            synchronized (flushLock) {
+                flushFailure = e;
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    private void flush() {
+        MappedByteBuffer toForce;
+        int from;
+        int to;
+        long lsn;
+        synchronized (this) {
+            toForce = segment;
+            from = flushedPosition;
+            to = position;
+            lsn = nextLsn - 1;
+        }
+        if (to > from) {
+            toForce.force(from, to - from);
+        }
+        synchronized (this) {
+            if (toForce == segment && to > flushedPosition) {
+                flushedPosition = to;
+            }
+        }
+        markDurable(lsn);
+    }
+
+    private void markDurable(long lsn) {
+        synchronized (flushLock) {
+            if (lsn > durableLsn) {
+                durableLsn = lsn;
+            }
+            flushLock.notifyAll();
+        }
+    }
+
+    private static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().forEach(segments::add);
+        }
+        return segments;
+    }
+
+    private static long firstLsnOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
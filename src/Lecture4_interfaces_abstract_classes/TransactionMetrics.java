@@ -0,0 +1,198 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the transaction hot path.
+ * Transactions record into the metrics installed here, as they publish into the sink installed in
+ * TransactionEvents. Metrics are off by default: the disabled instance records nothing and does not
+ * read the clock, so instrumented code costs one volatile read and a branch.
+ *
+ * Counters are LongAdders and histograms are striped, so concurrent recording does not contend
+ * on a shared cache line, and recording never allocates. Counters are exact. Reading the clock costs
+ * more than the rest of an apply, so only one operation in sampleInterval per thread stripe is timed;
+ * the histograms hold that sample.
+ */
+public class TransactionMetrics {
+
+    /**
+     * What happened to a transaction.
+     */
+    public enum Outcome {
+        APPLIED,
+        REJECTED_INVALID,
+        REJECTED_INSUFFICIENT_FUNDS,
+        REVERSED
+    }
+
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+    // Sample ticks are spaced this many ints apart so stripes do not share a cache line
+    private static final int TICK_PADDING = 16;
+
+    private static final TransactionMetrics DISABLED = new TransactionMetrics(false, 1);
+
+    private static volatile TransactionMetrics current = DISABLED;
+
+    private final boolean enabled;
+    private final LongAdder[] counters; // Indexed by type code * OUTCOMES.length + outcome ordinal
+    private final StripedLatencyHistogram applyLatency;
+    private final StripedLatencyHistogram reverseLatency;
+    private final int sampleMask;
+    private final int stripeMask;
+    private final int[] sampleTicks; // Per stripe; unsynchronized, as a lost tick only shifts the sample
+
+    private TransactionMetrics(boolean enabled, int sampleInterval) {
+        this.enabled = enabled;
+        this.sampleMask = sampleInterval - 1;
+        int stripes = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors() - 1, 1)) << 1;
+        this.stripeMask = stripes - 1;
+        this.sampleTicks = new int[stripes * TICK_PADDING];
+        this.counters = new LongAdder[TYPES.length * OUTCOMES.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        this.applyLatency = new StripedLatencyHistogram();
+        this.reverseLatency = new StripedLatencyHistogram();
+    }
+
+    /**
+     * Returns the metrics transactions currently record into.
+     *
+     * @return The installed metrics, or a disabled instance if metrics are off.
+     */
+    public static TransactionMetrics get() {
+        return current;
+    }
+
+    /**
+     * Turns metrics on with fresh counters and histograms, timing one operation in DEFAULT_SAMPLE_INTERVAL.
+     *
+     * @return The metrics now being recorded into.
+     */
+    public static TransactionMetrics enable() {
+        return enable(DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Turns metrics on with fresh counters and histograms.
+     *
+     * @param sampleInterval Time one operation in this many; a power of two, 1 to time every operation.
+     * @return The metrics now being recorded into.
+     */
+    public static TransactionMetrics enable(int sampleInterval) {
+        if (sampleInterval <= 0 || Integer.bitCount(sampleInterval) != 1) {
+            throw new IllegalArgumentException("Sample interval must be a power of two: " + sampleInterval);
+        }
+        TransactionMetrics metrics = new TransactionMetrics(true, sampleInterval);
+        current = metrics;
+        return metrics;
+    }
+
+    // Turns metrics off; the instance returned by enable() keeps the values recorded so far
+    public static void disable() {
+        current = DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing an operation, if it is one of the sampled ones.
+     *
+     * @return The start time to pass to recordApply() or recordReverse(); 0 when disabled or not sampled.
+     */
+    long startTimer() {
+        if (!enabled) {
+            return 0;
+        }
+        int tick = ((int) Thread.currentThread().threadId() & stripeMask) * TICK_PADDING;
+        if ((++sampleTicks[tick] & sampleMask) != 0) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the outcome and latency of applying a transaction.
+     *
+     * @param type   Type of the transaction.
+     * @param status Outcome returned by tryApply(); outcomes other than the three counted are only timed.
+     * @param start  Value returned by startTimer().
+     */
+    void recordApply(TransactionType type, TransactionStatus status, long start) {
+        if (!enabled) {
+            return;
+        }
+        if (start != 0) {
+            applyLatency.record(System.nanoTime() - start);
+        }
+        switch (status) {
+            case APPLIED -> count(type, Outcome.APPLIED);
+            case INVALID_AMOUNT -> count(type, Outcome.REJECTED_INVALID);
+            case INSUFFICIENT_FUNDS -> count(type, Outcome.REJECTED_INSUFFICIENT_FUNDS);
+            case UNSUPPORTED, DUPLICATE, NOT_APPLIED -> { }
+        }
+    }
+
+    /**
+     * Records the latency of reversing a transaction.
+     *
+     * @param type  Type of the transaction reversed.
+     * @param start Value returned by startTimer().
+     */
+    void recordReverse(TransactionType type, long start) {
+        if (!enabled) {
+            return;
+        }
+        if (start != 0) {
+            reverseLatency.record(System.nanoTime() - start);
+        }
+        count(type, Outcome.REVERSED);
+    }
+
+    private void count(TransactionType type, Outcome outcome) {
+        counters[type.getCode() * OUTCOMES.length + outcome.ordinal()].increment();
+    }
+
+    /**
+     * Returns a counter.
+     *
+     * @param type    Transaction type.
+     * @param outcome Outcome counted.
+     * @return Number of transactions of that type with that outcome.
+     */
+    public long getCount(@NotNull TransactionType type, @NotNull Outcome outcome) {
+        return counters[type.getCode() * OUTCOMES.length + outcome.ordinal()].sum();
+    }
+
+    public StripedLatencyHistogram getApplyLatency() {
+        return applyLatency;
+    }
+
+    public StripedLatencyHistogram getReverseLatency() {
+        return reverseLatency;
+    }
+
+    /**
+     * Captures the current values for export.
+     *
+     * @return A snapshot of all counters and latency percentiles.
+     */
+    public MetricsSnapshot snapshot() {
+        long[][] counts = new long[TYPES.length][OUTCOMES.length];
+        for (TransactionType type : TYPES) {
+            for (Outcome outcome : OUTCOMES) {
+                counts[type.getCode()][outcome.ordinal()] = getCount(type, outcome);
+            }
+        }
+        return new MetricsSnapshot(System.currentTimeMillis(), counts,
+                MetricsSnapshot.Latency.of(applyLatency), MetricsSnapshot.Latency.of(reverseLatency));
+    }
+}
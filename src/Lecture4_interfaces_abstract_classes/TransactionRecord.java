@@ -0,0 +1,122 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Transactions as immutable records in a sealed hierarchy.
+ * apply() is one static method with one switch over the permitted records, so a call site that sees
+ * every kind of transaction still has a single target the JIT can inline, instead of the megamorphic
+ * virtual call of BaseTransaction.tryApply(); DispatchBenchmark, with each variant in its own JVM, measures
+ * the two within a few percent of each other. The compiler checks that the switch covers every record.
+ *
+ * The rules live in TransactionRules, which the matching BaseTransaction subclasses delegate to as well,
+ * so both models produce the same outcomes, events and metrics. Records are immutable, so they can be
+ * handed to the asynchronous event sink.
+ */
+public sealed interface TransactionRecord extends TransactionInterface {
+
+    // Transaction amount in minor units, see Money
+    long amount();
+
+    // Transaction date in epoch milliseconds
+    long epochMillis();
+
+    // Transaction ID, as produced by TransactionIdGenerator
+    long id();
+
+    /**
+     * Deposit of an amount into the account.
+     */
+    record Deposit(long amount, long epochMillis, long id) implements TransactionRecord {
+    }
+
+    /**
+     * Withdrawal of an amount from the account, if the funds are available.
+     */
+    record Withdrawal(long amount, long epochMillis, long id) implements TransactionRecord {
+    }
+
+    /**
+     * Reversal of an earlier withdrawal, which credits the amount back.
+     */
+    record Reversal(long amount, long epochMillis, long id) implements TransactionRecord {
+    }
+
+    /**
+     * Transfer of an amount from the account to a destination account.
+     */
+    record Transfer(long amount, long epochMillis, long id, @NotNull BankAccount destination)
+            implements TransactionRecord {
+    }
+
+    /**
+     * Converts a transaction object into its record.
+     *
+     * @param t Transaction to convert.
+     * @return A record with the same amount, date and ID.
+     */
+    static TransactionRecord of(@NotNull BaseTransaction t) {
+        return switch (t) {
+            case DepositTransaction d -> new Deposit(d.getAmount(), d.getEpochMillis(), d.getNumericID());
+            case WithdrawalTransaction w -> new Withdrawal(w.getAmount(), w.getEpochMillis(), w.getNumericID());
+            case TransferTransaction x -> new Transfer(x.getAmount(), x.getEpochMillis(), x.getNumericID(),
+                    x.getDestination());
+        };
+    }
+
+    /**
+     * Applies a transaction to an account.
+     * This is a static method on purpose: a default method shared by every record would still be
+     * called through the receiver's type profile, which goes megamorphic once three record classes
+     * have been seen, and DispatchBenchmark measured it slower than the virtual call it replaces.
+     *
+     * @param t  Transaction to apply.
+     * @param ba Account to apply the transaction to; for a transfer, the account debited.
+     * @return The outcome: APPLIED, INVALID_AMOUNT or INSUFFICIENT_FUNDS.
+     */
+    static TransactionStatus apply(@NotNull TransactionRecord t, @NotNull BankAccount ba) {
+        return switch (t) {
+            case Deposit d -> TransactionRules.deposit(d, d.amount(), ba);
+            case Withdrawal w -> TransactionRules.withdraw(w, w.amount(), ba);
+            case Reversal r -> TransactionRules.reverseWithdrawal(r, r.amount(), ba);
+            case Transfer x -> TransactionRules.transfer(x, x.amount(), ba, x.destination());
+        };
+    }
+
+    @Override
+    default long getAmount() {
+        return amount();
+    }
+
+    /**
+     * Returns the transaction date as a new Calendar in the JVM default time zone; zone-lossy, so prefer the
+     * canonical getEpochMillis() or getInstant().
+     *
+     * @return A new Calendar set to the transaction date.
+     */
+    @Override
+    default Calendar getDate() {
+        Calendar calendar = new GregorianCalendar();
+        calendar.setTimeInMillis(epochMillis());
+        return calendar;
+    }
+
+    @Override
+    default Instant getInstant() {
+        return Instant.ofEpochMilli(epochMillis());
+    }
+
+    @Override
+    default long getEpochMillis() {
+        return epochMillis();
+    }
+
+    @Override
+    default String getTransactionID() {
+        return TransactionIdGenerator.encode(id());
+    }
+}
@@ -0,0 +1,190 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Ring of preallocated MutableTransaction slots between one producer thread and one consumer thread,
+ * in the style of the LMAX Disruptor. The producer claims a slot, fills the carrier in place and
+ * publishes it; the consumer thread hands every published carrier to a TransactionHandler, in batches.
+ * Nothing is allocated per transaction, so sustained ingestion produces no garbage.
+ *
+ * Only one thread may publish. When the ring is full the producer waits for the consumer.
+ */
+public class TransactionRing implements AutoCloseable {
+
+    // How long the consumer sleeps when the ring is empty, and the producer when it is full
+    private static final long IDLE_PARK_NANOS = 50_000;
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    private final MutableTransaction[] slots;
+    private final int mask;
+    private final TransactionHandler handler;
+    private final TransactionIdGenerator ids = TransactionIdGenerator.getDefault();
+    private final AtomicLong published = new AtomicLong(-1); // Last sequence the consumer may read
+    private final AtomicLong consumed = new AtomicLong(-1);  // Last sequence the handler has finished
+    private final Thread consumerThread;
+    private volatile boolean running = true;
+    private volatile Throwable failure;
+
+    // Producer-only state
+    private long claimed = -1;
+    private long cachedConsumed = -1;
+
+    /**
+     * Constructor for TransactionRing. Starts the consumer thread.
+     *
+     * @param capacity Number of slots, rounded up to a power of two.
+     * @param handler  Handler that receives the transactions on the consumer thread.
+     */
+    public TransactionRing(int capacity, @NotNull TransactionHandler handler) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new MutableTransaction[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new MutableTransaction();
+        }
+        this.mask = size - 1;
+        this.handler = handler;
+        this.consumerThread = new Thread(this::consumeLoop, "transaction-ring-consumer");
+        this.consumerThread.setDaemon(true);
+        this.consumerThread.start();
+    }
+
+    /**
+     * Returns a handler that applies every transaction to its account.
+     *
+     * @param accounts Looks up the account for an account number.
+     * @return The handler.
+     */
+    public static TransactionHandler applyingTo(@NotNull LongFunction<BankAccount> accounts) {
+        return (transaction, sequence, endOfBatch) -> transaction.applyTo(accounts.apply(transaction.getAccountId()));
+    }
+
+    /**
+     * Claims the next slot, waiting while the ring is full. Fill get(sequence) and then call publish(sequence).
+     *
+     * @return Sequence of the claimed slot.
+     */
+    public long next() {
+        long sequence = ++claimed;
+        long wrapPoint = sequence - slots.length;
+        if (wrapPoint > cachedConsumed) {
+            int spins = 0;
+            while (wrapPoint > (cachedConsumed = consumed.get())) {
+                checkConsumer();
+                if (++spins < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * Returns the carrier in a claimed slot.
+     *
+     * @param sequence Sequence returned by next().
+     * @return The carrier to fill.
+     */
+    public MutableTransaction get(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    /**
+     * Makes a filled slot, and all slots claimed before it, visible to the consumer.
+     *
+     * @param sequence Sequence returned by next().
+     */
+    public void publish(long sequence) {
+        published.setRelease(sequence);
+    }
+
+    /**
+     * Claims a slot, fills it with a new transaction and publishes it.
+     *
+     * @param accountId   Account to post to.
+     * @param type        Kind of transaction.
+     * @param amountMinor Amount in minor units.
+     * @param epochMillis Transaction date in epoch milliseconds.
+     * @return Sequence of the published transaction.
+     */
+    public long publish(long accountId, TransactionType type, long amountMinor, long epochMillis) {
+        long sequence = next();
+        get(sequence).set(accountId, type, amountMinor, epochMillis, ids.nextId());
+        publish(sequence);
+        return sequence;
+    }
+
+    /**
+     * Waits until the handler has processed every transaction published before this call.
+     *
+     * @throws IllegalStateException if the handler failed.
+     */
+    public void flush() {
+        long target = published.get();
+        while (consumed.get() < target) {
+            checkConsumer();
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Processes the remaining transactions and stops the consumer thread.
+     */
+    @Override
+    public void close() {
+        flush();
+        running = false;
+        LockSupport.unpark(consumerThread);
+        try {
+            consumerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkConsumer() {
+        if (failure != null) {
+            throw new IllegalStateException("Transaction handler failed", failure);
+        }
+    }
+
+    private void consumeLoop() {
+        long next = 0;
+        int idleSpins = 0;
+        try {
+            while (true) {
+                long available = published.getAcquire();
+                if (available < next) {
+                    if (!running) {
+                        return;
+                    }
+                    if (++idleSpins < SPINS_BEFORE_PARK) {
+                        Thread.onSpinWait();
+                    } else {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    continue;
+                }
+                idleSpins = 0;
+                for (; next <= available; next++) {
+                    handler.onTransaction(slots[(int) (next & mask)], next, next == available);
+                }
+                consumed.setRelease(available); // Frees the batch for the producer
+            }
+        } catch (Throwable e) {
+            failure = e;
+        }
+    }
+}
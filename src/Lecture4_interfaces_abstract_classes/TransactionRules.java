@@ -0,0 +1,118 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * The rules for applying each kind of transaction, written once. TransactionRecord.apply() and the
+ * tryApply() methods of the BaseTransaction subclasses both delegate here, so the two models of a
+ * transaction validate, change the balance, publish events and record metrics in the same way.
+ * Every rule takes the transaction to name in its events as a parameter, so a transaction object is
+ * reported as itself and no record is created for it.
+ */
+final class TransactionRules {
+
+    private TransactionRules() {
+    }
+
+    /**
+     * Deposits an amount into an account.
+     *
+     * @param t           Transaction named in the events.
+     * @param amountMinor Amount in minor units.
+     * @param ba          Account to credit.
+     * @return APPLIED, or INVALID_AMOUNT if the amount is negative.
+     */
+    static TransactionStatus deposit(TransactionInterface t, long amountMinor, BankAccount ba) {
+        TransactionMetrics metrics = TransactionMetrics.get();
+        long start = metrics.startTimer();
+        TransactionStatus status;
+        if (!Money.isValidAmount(amountMinor)) {
+            TransactionEvents.getSink().publish(TransactionEventType.DEPOSIT_INVALID_AMOUNT, t, ba.getBalanceMinor());
+            status = TransactionStatus.INVALID_AMOUNT;
+        } else {
+            // The message is formatted later, off this thread
+            TransactionEvents.getSink().publish(TransactionEventType.DEPOSIT_APPLIED, t, ba.credit(amountMinor));
+            status = TransactionStatus.APPLIED;
+        }
+        metrics.recordApply(TransactionType.DEPOSIT, status, start);
+        return status;
+    }
+
+    /**
+     * Withdraws an amount from an account if the funds are there. The funds check and the debit are
+     * one atomic step, so racing withdrawals cannot overdraw. PROCESSING_COMPLETE is published last,
+     * whatever the outcome.
+     *
+     * @param t           Transaction named in the events.
+     * @param amountMinor Amount in minor units.
+     * @param ba          Account to debit.
+     * @return APPLIED, INVALID_AMOUNT if the amount is negative, or INSUFFICIENT_FUNDS.
+     */
+    static TransactionStatus withdraw(TransactionInterface t, long amountMinor, BankAccount ba) {
+        TransactionEventSink sink = TransactionEvents.getSink();
+        TransactionMetrics metrics = TransactionMetrics.get();
+        long start = metrics.startTimer();
+        TransactionStatus status = TransactionStatus.INVALID_AMOUNT;
+        try {
+            if (!Money.isValidAmount(amountMinor)) {
+                sink.publish(TransactionEventType.WITHDRAWAL_INVALID_AMOUNT, t, ba.getBalanceMinor());
+                return status;
+            }
+            status = TransactionStatus.INSUFFICIENT_FUNDS;
+            long newBalanceMinor = ba.tryDebit(amountMinor);
+            if (newBalanceMinor < 0) {
+                sink.publish(TransactionEventType.WITHDRAWAL_INSUFFICIENT_FUNDS, t, ba.getBalanceMinor());
+                return status;
+            }
+            sink.publish(TransactionEventType.WITHDRAWAL_APPLIED, t, newBalanceMinor);
+            status = TransactionStatus.APPLIED;
+            return status;
+        } finally {
+            sink.publish(TransactionEventType.PROCESSING_COMPLETE, t, 0);
+            metrics.recordApply(TransactionType.WITHDRAWAL, status, start);
+        }
+    }
+
+    /**
+     * Reverses a withdrawal by crediting its amount back. No check is made that the withdrawal was
+     * applied, or not already reversed; ReversalEngine makes those checks.
+     *
+     * @param t           Withdrawal named in the events.
+     * @param amountMinor Amount in minor units.
+     * @param ba          Account to credit.
+     * @return APPLIED, or INVALID_AMOUNT if the amount is negative.
+     */
+    static TransactionStatus reverseWithdrawal(TransactionInterface t, long amountMinor, BankAccount ba) {
+        if (!Money.isValidAmount(amountMinor)) {
+            TransactionEvents.getSink().publish(TransactionEventType.WITHDRAWAL_INVALID_AMOUNT, t, ba.getBalanceMinor());
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+        TransactionMetrics metrics = TransactionMetrics.get();
+        long start = metrics.startTimer();
+        TransactionEvents.getSink().publish(TransactionEventType.WITHDRAWAL_REVERSED, t, ba.credit(amountMinor));
+        metrics.recordReverse(TransactionType.WITHDRAWAL, start);
+        return TransactionStatus.APPLIED;
+    }
+
+    /**
+     * Moves an amount from one account to another, atomically; see TransferTransaction.transfer().
+     *
+     * @param t           Transaction named in the events.
+     * @param amountMinor Amount in minor units.
+     * @param from        Account to debit.
+     * @param to          Account to credit.
+     * @return APPLIED, INVALID_AMOUNT for a negative amount, or INSUFFICIENT_FUNDS; nothing changes unless APPLIED.
+     */
+    static TransactionStatus transfer(TransactionInterface t, long amountMinor, BankAccount from, BankAccount to) {
+        TransactionEventSink sink = TransactionEvents.getSink();
+        if (!Money.isValidAmount(amountMinor)) {
+            sink.publish(TransactionEventType.TRANSFER_INVALID_AMOUNT, t, from.getBalanceMinor());
+            return TransactionStatus.INVALID_AMOUNT;
+        }
+        long newBalanceMinor = TransferTransaction.transfer(from, to, amountMinor);
+        if (newBalanceMinor < 0) {
+            sink.publish(TransactionEventType.TRANSFER_INSUFFICIENT_FUNDS, t, from.getBalanceMinor());
+            return TransactionStatus.INSUFFICIENT_FUNDS;
+        }
+        sink.publish(TransactionEventType.TRANSFER_APPLIED, t, newBalanceMinor);
+        return TransactionStatus.APPLIED;
+    }
+}
@@ -0,0 +1,25 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Outcome of applying a single transaction to a bank account.
+ */
+public enum TransactionStatus {
+
+    // The transaction changed the balance
+    APPLIED,
+
+    // The amount failed validation (e.g. a negative deposit)
+    INVALID_AMOUNT,
+
+    // A withdrawal was larger than the balance available at that point
+    INSUFFICIENT_FUNDS,
+
+    // The transaction type is not handled by the engine
+    UNSUPPORTED,
+
+    // The transaction ID was already applied or reversed, or is being processed right now
+    DUPLICATE,
+
+    // A reversal named a transaction that was never applied, or has aged out of the idempotency cache
+    NOT_APPLIED
+}
@@ -0,0 +1,215 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Columnar store for large transaction histories.
+ * Each transaction is one row spread over parallel primitive arrays (account number, amount in
+ * minor units, epoch millis, type code and numeric ID), so a row costs 33 bytes instead of a full
+ * object with its own Calendar and String ID.
+ * Rows are read through reusable View objects that implement TransactionInterface.
+ */
+public class TransactionStore {
+
+    // Bytes used by one row across all columns
+    public static final int BYTES_PER_ROW = Long.BYTES + Long.BYTES + Long.BYTES + Byte.BYTES + Long.BYTES;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private long[] accountIds;
+    private long[] amounts;
+    private long[] epochMillis;
+    private byte[] types;
+    private long[] ids;
+    private int size;
+
+    public TransactionStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor for TransactionStore.
+     *
+     * @param initialCapacity Number of rows to allocate up front.
+     */
+    public TransactionStore(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        accountIds = new long[capacity];
+        amounts = new long[capacity];
+        epochMillis = new long[capacity];
+        types = new byte[capacity];
+        ids = new long[capacity];
+    }
+
+    /**
+     * Appends one row.
+     *
+     * @param accountId   Account the transaction belongs to.
+     * @param type        Transaction type.
+     * @param amount      Transaction amount in minor units.
+     * @param epochMillis Transaction date as milliseconds since the epoch.
+     * @param id          Numeric transaction ID.
+     * @return Index of the new row.
+     */
+    public int add(long accountId, @NotNull TransactionType type, long amount, long epochMillis, long id) {
+        if (size == amounts.length) {
+            grow();
+        }
+        int row = size++;
+        this.accountIds[row] = accountId;
+        this.amounts[row] = amount;
+        this.epochMillis[row] = epochMillis;
+        this.types[row] = type.getCode();
+        this.ids[row] = id;
+        return row;
+    }
+
+    /**
+     * Appends a transaction object, copying out its fields.
+     *
+     * @param accountId Account the transaction belongs to.
+     * @param t         Transaction to copy, must be a deposit or a withdrawal.
+     * @return Index of the new row.
+     */
+    public int add(long accountId, @NotNull BaseTransaction t) {
+        return add(accountId, TransactionType.of(t), t.getAmount(), t.getEpochMillis(), t.getNumericID());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getAccountId(int row) {
+        checkRow(row);
+        return accountIds[row];
+    }
+
+    public long getAmount(int row) {
+        checkRow(row);
+        return amounts[row];
+    }
+
+    public long getEpochMillis(int row) {
+        checkRow(row);
+        return epochMillis[row];
+    }
+
+    public TransactionType getType(int row) {
+        checkRow(row);
+        return TransactionType.fromCode(types[row]);
+    }
+
+    public long getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    /**
+     * Returns the number of bytes currently allocated for the columns.
+     *
+     * @return Allocated column bytes, including unused capacity.
+     */
+    public long allocatedBytes() {
+        return (long) amounts.length * BYTES_PER_ROW;
+    }
+
+    /**
+     * Creates a cursor over this store. One View can be moved across any number of rows
+     * without allocating, so a scan needs a single View rather than one object per row.
+     *
+     * @return A new View positioned on row 0.
+     */
+    public View view() {
+        return new View();
+    }
+
+    // Doubles the capacity of every column
+    private void grow() {
+        int capacity = amounts.length * 2;
+        accountIds = Arrays.copyOf(accountIds, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        epochMillis = Arrays.copyOf(epochMillis, capacity);
+        types = Arrays.copyOf(types, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " outside store of size " + size);
+        }
+    }
+
+    /**
+     * Flyweight view of one row. Reads go straight to the columns of the store.
+     */
+    public class View implements TransactionInterface {
+
+        private int row;
+
+        /**
+         * Moves the view to another row.
+         *
+         * @param row Index of the row to view.
+         * @return This view, for chaining.
+         */
+        public View moveTo(int row) {
+            checkRow(row);
+            this.row = row;
+            return this;
+        }
+
+        public int getRow() {
+            return row;
+        }
+
+        public long getAccountId() {
+            return accountIds[row];
+        }
+
+        public TransactionType getType() {
+            return TransactionType.fromCode(types[row]);
+        }
+
+        @Override
+        public long getEpochMillis() {
+            return epochMillis[row];
+        }
+
+        @Override
+        public Instant getInstant() {
+            return Instant.ofEpochMilli(epochMillis[row]);
+        }
+
+        public long getId() {
+            return ids[row];
+        }
+
+        @Override
+        public long getAmount() {
+            return amounts[row];
+        }
+
+        /**
+         * Returns the transaction date. A new Calendar in the JVM default time zone is built on each call and
+         * only the instant is stored, so prefer the canonical getEpochMillis() or getInstant(), above all in loops.
+         *
+         * @return The row's date as a Calendar object.
+         */
+        @Override
+        public Calendar getDate() {
+            Calendar date = new GregorianCalendar();
+            date.setTimeInMillis(epochMillis[row]);
+            return date;
+        }
+
+        @Override
+        public String getTransactionID() {
+            return TransactionIdGenerator.encode(ids[row]);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package Lecture4_interfaces_abstract_classes;
+
+/**
+ * Kinds of transaction, with a one-byte code for compact storage.
+ */
+public enum TransactionType {
+    DEPOSIT((byte) 0),
+    WITHDRAWAL((byte) 1),
+    // Reversal of an applied withdrawal, which credits the amount back
+    REVERSAL((byte) 2);
+
+    private static final TransactionType[] BY_CODE = values();
+
+    private final byte code;
+
+    TransactionType(byte code) {
+        this.code = code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    /**
+     * Returns the change a transaction of this type makes to the balance.
+     *
+     * @param amountMinor Transaction amount in minor units.
+     * @return The signed balance change in minor units.
+     */
+    public long balanceDelta(long amountMinor) {
+        return this == WITHDRAWAL ? -amountMinor : amountMinor;
+    }
+
+    /**
+     * Returns the type stored under a code.
+     *
+     * @param code Code returned by getCode().
+     * @return The matching TransactionType.
+     */
+    public static TransactionType fromCode(byte code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown transaction type code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * Returns the type of a transaction object.
+     *
+     * @param t Transaction to classify.
+     * @return The matching TransactionType.
+     * @throws IllegalArgumentException for a transfer, which has no single-account type.
+     */
+    public static TransactionType of(BaseTransaction t) {
+        return switch (t) {
+            case DepositTransaction d -> DEPOSIT;
+            case WithdrawalTransaction w -> WITHDRAWAL;
+            case TransferTransaction x -> throw new IllegalArgumentException("A transfer posts to two accounts");
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package Lecture4_interfaces_abstract_classes;
+
+import java.time.Instant;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention benchmark for TransferTransaction: many threads transfer random amounts between random
+ * pairs of a small set of hot accounts. Each configuration runs with TransferTransaction's ordered
+ * per-account locks and, as a baseline, with every transfer serialised on one global lock.
+ * A run that does not finish within a minute is reported as stuck, which would indicate a deadlock;
+ * after each run the balances are summed to check that no money was created or lost.
+ *
+ * Settings (system properties):
+ *   bench.transfers transfers per thread (default 500,000)
+ */
+public class TransferBenchmark {
+
+    private static final Object GLOBAL_LOCK = new Object();
+
+    public static void main(String[] args) throws InterruptedException {
+        TransactionEvents.setSink(TransactionEventSink.NO_OP);
+        int transfers = Integer.getInteger("bench.transfers", 500_000);
+        int maxThreads = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+
+        for (int accounts : new int[] {2, 8, 64}) {
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                run("ordered locks", accounts, threads, transfers, false);
+                run("global lock", accounts, threads, transfers, true);
+            }
+            System.out.println();
+        }
+    }
+
+    private static void run(String name, int accountCount, int threads, int transfers, boolean globalLock)
+            throws InterruptedException {
+        long opening = Money.ofMajor(1_000);
+        BankAccount[] accounts = new BankAccount[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            accounts[i] = BankAccount.withMinorBalance(i, opening);
+        }
+        Instant date = Instant.parse("2024-01-03T00:00:00Z");
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            Thread worker = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < transfers; i++) {
+                    BankAccount from = accounts[random.nextInt(accountCount)];
+                    BankAccount to = accounts[random.nextInt(accountCount)];
+                    TransferTransaction transfer = new TransferTransaction(date, 1 + random.nextInt(10_000), to);
+                    if (globalLock) {
+                        synchronized (GLOBAL_LOCK) {
+                            transfer.tryApply(from);
+                        }
+                    } else {
+                        transfer.tryApply(from);
+                    }
+                }
+                done.countDown();
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        if (!done.await(1, TimeUnit.MINUTES)) {
+            System.out.printf("%-13s %2d accounts %2d threads: STUCK after one minute%n", name, accountCount, threads);
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        long total = 0;
+        for (BankAccount account : accounts) {
+            total += account.getBalanceMinor();
+        }
+        System.out.printf("%-13s %2d accounts %2d threads: %.2f M transfers/s, balances %s%n",
+                name, accountCount, threads, (double) threads * transfers * 1e3 / nanos,
+                total == opening * accountCount ? "conserved" : "WRONG");
+    }
+}
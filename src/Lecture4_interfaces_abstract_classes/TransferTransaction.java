@@ -0,0 +1,141 @@
+package Lecture4_interfaces_abstract_classes;
+
+import org.jetbrains.annotations.NotNull;
+import java.time.Instant;
+import java.util.Calendar;
+
+/**
+ * Class representing a transfer from one bank account to another.
+ * Extends the BaseTransaction class: the account passed to tryApply() is debited and the
+ * destination account given at construction is credited.
+ *
+ * Both accounts are locked for the duration of the transfer, so anything else that locks an
+ * account (another transfer, or JournaledLedger.post()) sees either none or all of it. Locks are
+ * always taken in order of account number, so two transfers in opposite directions cannot deadlock.
+ * Unlocked single-account operations stay safe: the debit and the credit are each atomic and the
+ * funds check cannot be bypassed.
+ */
+public final class TransferTransaction extends BaseTransaction {
+
+    // Taken in addition to both accounts in the rare case that their lock order cannot be decided
+    private static final Object TIE_LOCK = new Object();
+
+    private final BankAccount destination;
+
+    /**
+     * Constructor for TransferTransaction.
+     *
+     * @param amount      Transaction amount (must be non-negative).
+     * @param date        Transaction date, must not be null and should be a Calendar object.
+     * @param destination Account to credit, must not be null.
+     */
+    public TransferTransaction(int amount, @NotNull Calendar date, @NotNull BankAccount destination) {
+        super(amount, date);
+        this.destination = destination;
+    }
+
+    /**
+     * Constructor for TransferTransaction.
+     *
+     * @param amount      Transaction amount (must be non-negative).
+     * @param date        Transaction date, must not be null.
+     * @param destination Account to credit, must not be null.
+     */
+    public TransferTransaction(int amount, @NotNull Instant date, @NotNull BankAccount destination) {
+        super(amount, date);
+        this.destination = destination;
+    }
+
+    /**
+     * Constructor for TransferTransaction with an exact amount.
+     *
+     * @param date        Transaction date, must not be null.
+     * @param amountMinor Transaction amount in minor units (must be non-negative).
+     * @param destination Account to credit, must not be null.
+     */
+    public TransferTransaction(@NotNull Instant date, long amountMinor, @NotNull BankAccount destination) {
+        super(date, amountMinor);
+        this.destination = destination;
+    }
+
+    public BankAccount getDestination() {
+        return destination;
+    }
+
+    /**
+     * Moves the amount from the given account to the destination account, atomically.
+     *
+     * @param ba The BankAccount to debit.
+     * @return APPLIED, INVALID_AMOUNT for a negative amount, or INSUFFICIENT_FUNDS; nothing changes unless APPLIED.
+     */
+    @Override
+    public TransactionStatus tryApply(BankAccount ba) {
+        return TransactionRules.transfer(this, getAmount(), ba, destination);
+    }
+
+    /**
+     * Moves an amount between two accounts while holding both account locks, taken in a fixed order.
+     * A transfer from an account to itself moves nothing but still needs the funds.
+     *
+     * @param from        Account to debit.
+     * @param to          Account to credit.
+     * @param amountMinor Amount in minor units, must be non-negative.
+     * @return The new balance of from in minor units, or -1 if the funds were insufficient.
+     */
+    static long transfer(BankAccount from, BankAccount to, long amountMinor) {
+        if (from == to) {
+            long balanceMinor = from.getBalanceMinor();
+            return balanceMinor >= amountMinor ? balanceMinor : -1;
+        }
+        BankAccount first = from;
+        BankAccount second = to;
+        int order = compareLockOrder(from, to);
+        if (order > 0) {
+            first = to;
+            second = from;
+        }
+        if (order == 0) {
+            synchronized (TIE_LOCK) {
+                synchronized (first) {
+                    synchronized (second) {
+                        return move(from, to, amountMinor);
+                    }
+                }
+            }
+        }
+        synchronized (first) {
+            synchronized (second) {
+                return move(from, to, amountMinor);
+            }
+        }
+    }
+
+    // Debits from and credits to; called with both accounts locked. Returns from's new balance, or -1
+    private static long move(BankAccount from, BankAccount to, long amountMinor) {
+        long newBalanceMinor = from.tryDebit(amountMinor);
+        if (newBalanceMinor >= 0) {
+            try {
+                to.credit(amountMinor);
+            } catch (ArithmeticException e) {
+                from.credit(amountMinor); // Destination would overflow: undo the debit
+                throw e;
+            }
+        }
+        return newBalanceMinor;
+    }
+
+    // Orders accounts by account number, then identity hash; 0 only if both are equal
+    private static int compareLockOrder(BankAccount a, BankAccount b) {
+        int order = Long.compare(a.getAccountId(), b.getAccountId());
+        if (order == 0) {
+            order = Integer.compare(System.identityHashCode(a), System.identityHashCode(b));
+        }
+        return order;
+    }
+
+    // Print transaction details
+    @Override
+    public void printTransactionDetails() {
+        TransactionEvents.getSink().publish(TransactionEventType.TRANSFER_DETAILS, this, 0);
+    }
+}
@@ -0,0 +1,174 @@
+package Lecture4_interfaces_abstract_classes;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The AmountKernels passes written with the Vector API (module jdk.incubator.vector). AmountKernels
+ * calls these only if the module is present, so nothing else may load this class.
+ *
+ * Every pass works on one vector of rows at a time: amounts and dates are loaded as long lanes, and
+ * type codes as bytes that are widened to long lanes, so the type tests become lane masks. The rows
+ * left over after the last whole vector are handed to the scalar loop of AmountKernels.
+ *
+ * The running balance has a dependency from each row to the next, which the JIT does not vectorize
+ * in a plain loop. Here it is a prefix sum within each vector, in log2(lanes) shift-and-add steps,
+ * plus the carry from the previous vector broadcast to every lane.
+ */
+final class VectorAmountKernels {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    // Bytes holding at least one type code per long lane; never smaller than the 64-bit minimum shape
+    private static final VectorSpecies<Byte> BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(Math.max(64, LONGS.length() * Byte.SIZE)));
+
+    // Rows per step, and rows a step may read or write: a byte vector can be longer than a long vector
+    private static final int STEP = LONGS.length();
+    private static final int SPAN = Math.max(STEP, BYTES.length());
+
+    // Moves the last lane into every lane, to carry a vector's closing balance into the next
+    private static final VectorShuffle<Long> LAST = VectorShuffle.fromOp(LONGS, lane -> STEP - 1);
+
+    private static final long DEPOSIT = AmountKernels.DEPOSIT;
+    private static final long WITHDRAWAL = AmountKernels.WITHDRAWAL;
+    private static final long REVERSAL = AmountKernels.REVERSAL;
+
+    private VectorAmountKernels() {
+    }
+
+    // Whether vectors are wider than one long; otherwise the scalar loops are as fast and simpler
+    static boolean isUseful() {
+        return STEP >= 2;
+    }
+
+    // See AmountKernels.validate()
+    static int validate(long[] amounts, long[] epochMillis, int from, int to,
+                        long maxAmount, long fromMillis, long toMillis, byte[] valid) {
+        LongVector zero = LongVector.zero(LONGS);
+        int count = 0;
+        int i = from;
+        for (; i <= to - SPAN; i += STEP) {
+            LongVector amount = LongVector.fromArray(LONGS, amounts, i);
+            LongVector date = LongVector.fromArray(LONGS, epochMillis, i);
+            VectorMask<Long> ok = amount.compare(VectorOperators.GE, 0)
+                    .and(amount.compare(VectorOperators.LE, maxAmount))
+                    .and(date.compare(VectorOperators.GE, fromMillis))
+                    .and(date.compare(VectorOperators.LT, toMillis));
+            // Bytes past the long lanes are zero; the next step or the scalar tail overwrites them
+            zero.blend(1, ok).convertShape(VectorOperators.L2B, BYTES, 0).reinterpretAsBytes().intoArray(valid, i);
+            count += ok.trueCount();
+        }
+        return count + AmountKernels.validateScalar(amounts, epochMillis, i, to, maxAmount, fromMillis, toMillis, valid);
+    }
+
+    // See AmountKernels.summarize()
+    static AmountKernels.Summary summarize(long[] amounts, byte[] types, byte[] valid, int from, int to,
+                                           AmountKernels.Summary into) {
+        LongVector deposits = LongVector.zero(LONGS);
+        LongVector withdrawals = deposits;
+        LongVector reversals = deposits;
+        LongVector min = LongVector.broadcast(LONGS, Long.MAX_VALUE);
+        LongVector max = LongVector.broadcast(LONGS, Long.MIN_VALUE);
+        VectorMask<Long> all = LONGS.maskAll(true);
+        int count = 0;
+        int i = from;
+        for (; i <= to - SPAN; i += STEP) {
+            LongVector amount = LongVector.fromArray(LONGS, amounts, i);
+            LongVector type = widen(types, i);
+            VectorMask<Long> keep = valid == null ? all : widen(valid, i).compare(VectorOperators.NE, 0);
+            deposits = deposits.add(amount, type.eq(DEPOSIT).and(keep));
+            withdrawals = withdrawals.add(amount, type.eq(WITHDRAWAL).and(keep));
+            reversals = reversals.add(amount, type.eq(REVERSAL).and(keep));
+            min = min.lanewise(VectorOperators.MIN, amount, keep);
+            max = max.lanewise(VectorOperators.MAX, amount, keep);
+            count += keep.trueCount();
+        }
+        AmountKernels.summarizeScalar(amounts, types, valid, i, to, into);
+        into.merge(deposits.reduceLanes(VectorOperators.ADD), withdrawals.reduceLanes(VectorOperators.ADD),
+                reversals.reduceLanes(VectorOperators.ADD), min.reduceLanes(VectorOperators.MIN),
+                max.reduceLanes(VectorOperators.MAX), count);
+        return into;
+    }
+
+    // See AmountKernels.balances()
+    static long balances(long opening, long[] amounts, byte[] types, int from, int to, long[] trajectory) {
+        LongVector carry = LongVector.broadcast(LONGS, opening);
+        int i = from;
+        for (; i <= to - SPAN; i += STEP) {
+            LongVector balance = prefixSum(deltas(amounts, types, i)).add(carry);
+            balance.intoArray(trajectory, i);
+            carry = balance.rearrange(LAST);
+        }
+        return AmountKernels.balancesScalar(carry.lane(0), amounts, types, i, to, trajectory);
+    }
+
+    // See AmountKernels.firstOverdraft()
+    static int firstOverdraft(long opening, long[] amounts, byte[] types, int from, int to) {
+        long balance = opening;
+        for (int start = from; start < to; start += AmountKernels.OVERDRAFT_BLOCK) {
+            int end = Math.min(start + AmountKernels.OVERDRAFT_BLOCK, to);
+            LongVector debits = LongVector.zero(LONGS);
+            LongVector net = debits;
+            int i = start;
+            for (; i <= end - SPAN; i += STEP) {
+                LongVector amount = LongVector.fromArray(LONGS, amounts, i);
+                VectorMask<Long> withdrawal = widen(types, i).eq(WITHDRAWAL);
+                debits = debits.add(amount, withdrawal);
+                net = net.add(amount.lanewise(VectorOperators.NEG, withdrawal));
+            }
+            long blockDebits = debits.reduceLanes(VectorOperators.ADD);
+            long blockNet = net.reduceLanes(VectorOperators.ADD);
+            for (; i < end; i++) {
+                blockDebits += amounts[i] & AmountKernels.typeMask(types[i], AmountKernels.WITHDRAWAL);
+                blockNet += AmountKernels.delta(amounts[i], types[i]);
+            }
+            if (balance - blockDebits >= 0) {
+                balance += blockNet;
+                continue;
+            }
+            // Some prefix of this block may overdraw; walk it a vector of running balances at a time
+            LongVector carry = LongVector.broadcast(LONGS, balance);
+            for (i = start; i <= end - SPAN; i += STEP) {
+                LongVector running = prefixSum(deltas(amounts, types, i)).add(carry);
+                VectorMask<Long> overdrawn = running.compare(VectorOperators.LT, 0);
+                if (overdrawn.anyTrue()) {
+                    return i + overdrawn.firstTrue();
+                }
+                carry = running.rearrange(LAST);
+            }
+            balance = carry.lane(0);
+            for (; i < end; i++) {
+                balance += AmountKernels.delta(amounts[i], types[i]);
+                if (balance < 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Signed balance change of each row of a vector: withdrawals negated
+    private static LongVector deltas(long[] amounts, byte[] types, int i) {
+        LongVector amount = LongVector.fromArray(LONGS, amounts, i);
+        return amount.lanewise(VectorOperators.NEG, widen(types, i).eq(WITHDRAWAL));
+    }
+
+    // Running total across the lanes: lane k becomes the sum of lanes 0 to k
+    private static LongVector prefixSum(LongVector v) {
+        for (int shift = 1; shift < STEP; shift <<= 1) {
+            v = v.add(v.unslice(shift));
+        }
+        return v;
+    }
+
+    // Loads one long lane's worth of bytes starting at i, sign-extended to longs
+    private static LongVector widen(byte[] bytes, int i) {
+        return (LongVector) ByteVector.fromArray(BYTES, bytes, i).convertShape(VectorOperators.B2L, LONGS, 0);
+    }
+}
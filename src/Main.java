@@ -1,5 +1,11 @@
 package Lecture1_adt;
 
+import Lecture2_adt_specification.PaymentSchedule;
+import Lecture4_interfaces_abstract_classes.BankAccount;
+import Lecture4_interfaces_abstract_classes.DepositTransaction;
+import Lecture4_interfaces_abstract_classes.WithdrawalTransaction;
+
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
@@ -113,22 +119,41 @@ public class Main {
         }
     }
 
+    /**
+     * Tests the lazy PaymentSchedule, which replaces building a list of payments up front.
+     */
+    public static void testPaymentSchedule() {
+        PaymentSchedule yearOf2024 = PaymentSchedule.monthly(1200, LocalDate.of(2024, 1, 3), 12);
+        yearOf2024.payments().forEach(t -> {
+            System.out.println("\nTransaction5 Details:");
+            System.out.println("Amount: \t" + t.getAmount());
+            System.out.println("Date: \t" + t.getLocalDate());
+        });
+
+        // A 30-year mortgage: aggregates are computed without materialising the 360 payments
+        PaymentSchedule mortgage = PaymentSchedule.monthly(1500, LocalDate.of(2024, 1, 31), 360);
+        System.out.println("\nPaid before 2030: \t" + mortgage.totalDueBefore(LocalDate.of(2030, 1, 1)));
+        System.out.println("Last payment: \t" + mortgage.occurrence(mortgage.getCount() - 1));
+    }
+
     /**
      * Tests the DepositTransaction class.
      */
     public static void testDepositTransaction() {
+        BankAccount account = new BankAccount(0);
         DepositTransaction deposit = new DepositTransaction(500, new GregorianCalendar(2024, Calendar.JANUARY, 1));
-        deposit.apply();
-        System.out.println("Deposit applied: " + deposit.toString());
+        deposit.apply(account);
+        System.out.println("Deposit applied: " + deposit.getTransactionID() + ", balance " + account.getBalance());
     }
 
     /**
      * Tests the WithdrawalTransaction class.
      */
     public static void testWithdrawalTransaction() {
+        BankAccount account = new BankAccount(500);
         WithdrawalTransaction withdrawal = new WithdrawalTransaction(200, new GregorianCalendar(2024, Calendar.FEBRUARY, 15));
-        withdrawal.apply();
-        System.out.println("Withdrawal applied: " + withdrawal.toString());
+        withdrawal.apply(account);
+        System.out.println("Withdrawal applied: " + withdrawal.getTransactionID() + ", balance " + account.getBalance());
     }
 
     /**
@@ -142,6 +167,7 @@ public class Main {
         testTransaction2();
         testTransaction3();
         testTransaction4();
+        testPaymentSchedule();
         testDepositTransaction();
         testWithdrawalTransaction();
     }
@@ -0,0 +1,62 @@
+package benchmarks;
+
+import Lecture1_adt.Main;
+import Lecture1_adt.Transaction1;
+import Lecture1_adt.Transaction2;
+import Lecture1_adt.Transaction3;
+import Lecture1_adt.Transaction4;
+
+import Lecture2_adt_specification.PaymentSchedule;
+import Lecture2_adt_specification.Transaction5;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Benchmarks for the transaction ADTs of Lectures 1 and 2:
+ * construction and defensive copying of each TransactionN class, and the
+ * year-of-payments helpers in Main.
+ */
+public class AdtBenchmarks {
+
+    public static void main(String[] args) {
+        Calendar date = new GregorianCalendar(2024, Calendar.JANUARY, 3);
+        Transaction2 t2 = new Transaction2(1000, date);
+        Transaction3 t3 = new Transaction3(1000, date);
+        Transaction4 t4 = new Transaction4(1000, date);
+        Lecture2_adt_specification.Transaction4 spec4 = new Lecture2_adt_specification.Transaction4(1000, date);
+        LocalDate localDate = LocalDate.of(2024, 1, 3);
+        Transaction5 t5 = new Transaction5(1000, localDate);
+
+        Bench.printHeader();
+
+        // Construction: Transaction1 and Transaction4 clone the Calendar, Transaction2/3 keep the reference
+        Bench.run("Transaction1.new", i -> new Transaction1(i, date).amount);
+        Bench.run("Transaction2.new", i -> new Transaction2(i, date).getAmount());
+        Bench.run("Transaction3.new", i -> new Transaction3(i, date).getAmount());
+        Bench.run("Transaction4.new", i -> new Transaction4(i, date).getAmount());
+        Bench.run("Lecture2.Transaction4.new", i -> new Lecture2_adt_specification.Transaction4(i, date).getAmount());
+        Bench.run("Transaction5.new", i -> new Transaction5(i, localDate).getAmount());
+
+        // Defensive copying on the produces interface
+        Bench.run("Transaction2.getDate", i -> t2.getDate().get(Calendar.MONTH));
+        Bench.run("Transaction3.getDate", i -> t3.getDate().get(Calendar.MONTH));
+        Bench.run("Transaction4.getDate", i -> t4.getDate().get(Calendar.MONTH));
+        Bench.run("Lecture2.Transaction4.getDate", i -> spec4.getDate().get(Calendar.MONTH));
+        Bench.run("Transaction5.getLocalDate", i -> t5.getLocalDate().getMonthValue());
+        Bench.run("Transaction5.getDate (Calendar adapter)", i -> t5.getDate().get(Calendar.MONTH));
+
+        // Twelve-payment schedules
+        int scheduleOps = Bench.defaultOps() / 12;
+        Bench.run("Main.makeYearOfPayments", scheduleOps, i -> Main.makeYearOfPayments(i).size());
+        Bench.run("Main.makeYearOfPaymentsFinal", scheduleOps, i -> Main.makeYearOfPaymentsFinal(i).size());
+        Bench.run("PaymentSchedule.payments (12)", scheduleOps,
+                i -> PaymentSchedule.monthly(i, localDate, 12).payments().mapToLong(Transaction5::getAmount).sum());
+
+        // Aggregate over a 30-year schedule without building the payments
+        PaymentSchedule mortgage = PaymentSchedule.monthly(1500, localDate, 360);
+        LocalDate cutoff = LocalDate.of(2040, 6, 1);
+        Bench.run("PaymentSchedule.totalDueBefore (360)", i -> mortgage.totalDueBefore(cutoff));
+    }
+}
@@ -0,0 +1,218 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal benchmark harness used by the benchmark classes in this project.
+ * Each benchmark is warmed up, then measured over several rounds on the calling thread.
+ * Reports the mean time per operation and the bytes allocated per operation,
+ * read from the JVM's per-thread allocation counter.
+ *
+ * Benchmarks must not share a measuring loop: the JIT profiles the op.run() call in it, and once
+ * several operations have passed through one call site it is megamorphic and every later benchmark
+ * pays for a virtual call the earlier ones did not. JMH solves this by generating code and forking;
+ * this project has no build tool to run JMH, so Bench does the same two things itself:
+ *   - every benchmark gets its own copy of the loop, defined as a new hidden class of BenchLoop;
+ *   - by default every benchmark also runs in its own JVM. The benchmark class is started again
+ *     with the same JVM options and classpath; that JVM skips every other benchmark, measures this
+ *     one, and reports its line and whatever the class prints from then until its next benchmark.
+ *     The parent prints only that, so each benchmark's output carries the state its own run left.
+ *     A forked benchmark must therefore not rely on state an earlier benchmark built.
+ *
+ * Settings (system properties):
+ *   bench.ops     operations per round (default 1,000,000)
+ *   bench.warmup  warm-up rounds (default 5)
+ *   bench.rounds  measured rounds (default 5)
+ *   bench.fork    run each benchmark in its own JVM (default true); false measures all in this JVM
+ */
+public final class Bench {
+
+    /**
+     * One benchmarked operation. The returned value is consumed so the JIT cannot drop the work.
+     */
+    public interface Op {
+        long run(int i);
+    }
+
+    private static final int OPS = Integer.getInteger("bench.ops", 1_000_000);
+    private static final int WARMUP_ROUNDS = Integer.getInteger("bench.warmup", 5);
+    private static final int ROUNDS = Integer.getInteger("bench.rounds", 5);
+    private static final boolean FORK = Boolean.parseBoolean(System.getProperty("bench.fork", "true"));
+
+    // Set only in a forked JVM: the index of the one benchmark it measures
+    private static final int FORKED_INDEX = Integer.getInteger("bench.forkedIndex", -1);
+
+    // Printed by a forked JVM before its output; the parent relays what follows
+    private static final String FORK_MARKER = "--- bench fork output ---";
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final MethodType ROUND_TYPE = MethodType.methodType(long.class, int.class, Op.class);
+
+    // Benchmarks started so far in this JVM; run() calls are numbered in order
+    private static int runCount;
+
+    // Real standard output of a parent that forks; its own output is discarded once forking starts
+    private static PrintStream forkOut;
+
+    private Bench() {
+    }
+
+    public static int defaultOps() {
+        return OPS;
+    }
+
+    /**
+     * Prints the column headers for run().
+     */
+    public static void printHeader() {
+        System.out.printf("%-48s %12s %12s%n", "Benchmark", "ns/op", "B/op");
+    }
+
+    /**
+     * Runs one benchmark with the default number of operations and prints its line.
+     *
+     * @param name Benchmark name.
+     * @param op   Operation to measure.
+     */
+    public static void run(String name, Op op) {
+        run(name, OPS, op);
+    }
+
+    /**
+     * Runs one benchmark and prints its line; in a forked JVM of its own unless bench.fork is false.
+     *
+     * @param name Benchmark name.
+     * @param ops  Operations per round.
+     * @param op   Operation to measure.
+     * @throws IllegalStateException if the forked JVM fails.
+     */
+    public static void run(String name, int ops, Op op) {
+        int index = runCount++;
+        if (FORKED_INDEX >= 0) {
+            if (index < FORKED_INDEX) {
+                return;
+            }
+            if (index > FORKED_INDEX) {
+                System.out.flush();
+                System.exit(0); // Everything this JVM had to report has been printed
+            }
+            System.out.println(FORK_MARKER);
+            measure(name, ops, op);
+            return;
+        }
+        String[] command = FORK ? mainCommand() : null;
+        if (command == null) {
+            measure(name, ops, op);
+        } else {
+            fork(name, index, command);
+        }
+    }
+
+    // Warms up and measures one benchmark in this JVM, through its own copy of the loop
+    private static void measure(String name, int ops, Op op) {
+        MethodHandle round = newLoop();
+        for (int r = 0; r < WARMUP_ROUNDS; r++) {
+            round(round, ops, op);
+        }
+        long threadId = Thread.currentThread().threadId();
+        long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+        long nanos = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            nanos += round(round, ops, op);
+        }
+        long bytes = THREADS.getThreadAllocatedBytes(threadId) - bytesBefore;
+        double totalOps = (double) ops * ROUNDS;
+        System.out.printf("%-48s %12.2f %12.1f%n", name, nanos / totalOps, bytes / totalOps);
+    }
+
+    // Defines a new hidden copy of BenchLoop and returns its round method
+    private static MethodHandle newLoop() {
+        try (InputStream in = Bench.class.getResourceAsStream("BenchLoop.class")) {
+            if (in == null) {
+                throw new IllegalStateException("BenchLoop.class not found next to Bench.class");
+            }
+            MethodHandles.Lookup loop = MethodHandles.lookup().defineHiddenClass(in.readAllBytes(), true);
+            return loop.findStatic(loop.lookupClass(), "round", ROUND_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot define a copy of BenchLoop", e);
+        }
+    }
+
+    // Runs one round through a loop copy and returns the elapsed nanoseconds
+    private static long round(MethodHandle round, int ops, Op op) {
+        try {
+            return (long) round.invokeExact(ops, op);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e); // round() declares no checked exception
+        }
+    }
+
+    // Main class and arguments this JVM was started with, or null if the launcher did not record them
+    private static String[] mainCommand() {
+        String command = System.getProperty("sun.java.command", "").trim();
+        if (command.isEmpty()) {
+            System.err.println("bench.fork: main class unknown, measuring in this JVM");
+            return null;
+        }
+        return command.split("\\s+"); // Arguments containing spaces are not supported
+    }
+
+    // Measures benchmark index in a new JVM running the same main class, and prints what it reports
+    private static void fork(String name, int index, String[] command) {
+        if (forkOut == null) {
+            forkOut = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Forks report for this JVM now
+        }
+        List<String> line = new ArrayList<>();
+        line.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        line.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        line.add("-Dbench.forkedIndex=" + index);
+        line.add("-cp");
+        line.add(System.getProperty("java.class.path"));
+        if (command[0].endsWith(".jar")) {
+            line.add("-jar");
+        }
+        line.addAll(List.of(command));
+        try {
+            Process process = new ProcessBuilder(line).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            boolean relaying = false;
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                for (String text = out.readLine(); text != null; text = out.readLine()) {
+                    if (relaying) {
+                        forkOut.println(text);
+                    } else {
+                        relaying = text.equals(FORK_MARKER);
+                    }
+                }
+            }
+            int exit = process.waitFor();
+            if (exit != 0 || !relaying) {
+                throw new IllegalStateException("Benchmark " + name + " failed in its forked JVM, exit code " + exit);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot fork a JVM for benchmark " + name, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while benchmark " + name + " ran in its forked JVM", e);
+        }
+    }
+}
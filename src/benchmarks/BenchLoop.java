@@ -0,0 +1,27 @@
+package benchmarks;
+
+/**
+ * The measuring loop of Bench. Bench never calls this class directly: it defines a fresh hidden copy
+ * of it for every benchmark, so each benchmark's op.run() call site has its own type profile and the
+ * JIT compiles it for that one operation, instead of one shared call site going megamorphic.
+ */
+final class BenchLoop {
+
+    // Written after every round so results are observably used
+    private static volatile long sink;
+
+    private BenchLoop() {
+    }
+
+    // Runs ops operations and returns the elapsed nanoseconds
+    static long round(int ops, Bench.Op op) {
+        long acc = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            acc += op.run(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink = acc;
+        return elapsed;
+    }
+}